@@ -17,7 +17,6 @@
 package com.google.debugging.sourcemap;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import com.google.debugging.sourcemap.Base64VLQ.CharIterator;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
 import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping.Builder;
@@ -27,7 +26,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Class for parsing version 3 of the SourceMap format, as produced by the
@@ -41,8 +40,19 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
   private String[] sources;
   private String[] names;
   private int lineCount;
-  // Slots in the lines list will be null if the line does not have any entries.
-  private ArrayList<ArrayList<Entry>> lines = null;
+
+  // The entries of all lines, in order, with one array per field. The
+  // source fields are UNMAPPED for unmapped entries, and the name id is
+  // UNMAPPED for entries that have no name.
+  private int[] generatedColumns;
+  private int[] sourceFileIds;
+  private int[] sourceLines;
+  private int[] sourceColumns;
+  private int[] nameIds;
+
+  // The entries of line i are at the indexes from lineStarts[i] up to
+  // lineStarts[i + 1], so the array has one slot more than there are lines.
+  private int[] lineStarts = null;
 
   public SourceMapConsumerV3() {
 
@@ -111,8 +121,6 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
       sources = getJavaStringArray(sourceMapRoot.getJSONArray("sources"));
       names = getJavaStringArray(sourceMapRoot.getJSONArray("names"));
 
-      lines = Lists.newArrayListWithCapacity(lineCount);
-
       new MappingBuilder(lineMap).build();
     } catch (JSONException ex) {
       throw new SourceMapParseException("JSON parse exception: " + ex);
@@ -187,29 +195,32 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
     lineNumber--;
     column--;
 
-    if (lineNumber < 0 || lineNumber >= lines.size()) {
+    if (lineNumber < 0 || lineNumber >= getLineCount()) {
       return null;
     }
 
     Preconditions.checkState(lineNumber >= 0);
     Preconditions.checkState(column >= 0);
 
+    int start = lineStarts[lineNumber];
+    int end = lineStarts[lineNumber + 1];
 
     // If the line is empty return the previous mapping.
-    if (lines.get(lineNumber) == null) {
+    if (start == end || generatedColumns[start] > column) {
       return getPreviousMapping(lineNumber);
     }
 
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    // No empty lists.
-    Preconditions.checkState(entries.size() > 0);
-    if (entries.get(0).getGeneratedColumn() > column) {
-      return getPreviousMapping(lineNumber);
-    }
+    int index = search(column, start, end - 1);
+    Preconditions.checkState(index >= start, "unexpected:" + index);
+    return getOriginalMappingForEntry(index);
+  }
 
-    int index = search(entries, column, 0, entries.size() - 1);
-    Preconditions.checkState(index >= 0, "unexpected:" + index);
-    return getOriginalMappingForEntry(entries.get(index));
+  /**
+   * Returns the number of lines that have been decoded, which are the lines
+   * ended by a ';' in the mappings.
+   */
+  private int getLineCount() {
+    return lineStarts.length - 1;
   }
 
   private String[] getJavaStringArray(JSONArray array) throws JSONException {
@@ -231,29 +242,34 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
     private int previousSrcColumn = 0;
     private int previousNameId = 0;
 
+    // The number of entries decoded so far.
+    private int entryCount = 0;
+
     MappingBuilder(String lineMap) {
       this.content = new StringCharIterator(lineMap);
     }
 
     void build() {
+      // Most entries take at least four characters, so this is usually
+      // enough room.
+      int capacity = content.length / 4 + 1;
+      generatedColumns = new int[capacity];
+      sourceFileIds = new int[capacity];
+      sourceLines = new int[capacity];
+      sourceColumns = new int[capacity];
+      nameIds = new int[capacity];
+      int[] starts = new int[lineCount + 1];
+
       int [] temp = new int[MAX_ENTRY_VALUES];
-      ArrayList<Entry> entries = new ArrayList<Entry>();
       while (content.hasNext()) {
         // ';' denotes a new line.
         if (tryConsumeToken(';')) {
-          // The line is complete, store the result for the line,
-          // null if the line is empty.
-          ArrayList<Entry> result;
-          if (entries.size() > 0) {
-            result = entries;
-            // A new array list for the next line.
-            entries = new ArrayList<Entry>();
-          } else {
-            result = null;
-          }
-          lines.add(result);
-          entries.clear();
+          // The line is complete, the next one starts after its entries.
           line++;
+          if (line == starts.length) {
+            starts = grow(starts);
+          }
+          starts[line] = entryCount;
           previousCol = 0;
         } else {
           // grab the next entry for the current line.
@@ -262,38 +278,54 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
             temp[entryValues] = nextValue();
             entryValues++;
           }
-          Entry entry = decodeEntry(temp, entryValues);
+          decodeEntry(temp, entryValues);
 
-          validateEntry(entry);
-          entries.add(entry);
+          validateEntry(entryCount);
+          entryCount++;
 
           // Consume the separating token, if there is one.
           tryConsumeToken(',');
         }
       }
+
+      // Entries after the last ';' belong to no complete line, and are
+      // dropped.
+      lineStarts = Arrays.copyOf(starts, line + 1);
+      generatedColumns = Arrays.copyOf(generatedColumns, entryCount);
+      sourceFileIds = Arrays.copyOf(sourceFileIds, entryCount);
+      sourceLines = Arrays.copyOf(sourceLines, entryCount);
+      sourceColumns = Arrays.copyOf(sourceColumns, entryCount);
+      nameIds = Arrays.copyOf(nameIds, entryCount);
     }
 
     /**
      * Sanity check the entry.
      */
-    private void validateEntry(Entry entry) {
+    private void validateEntry(int entry) {
       Preconditions.checkState(line < lineCount);
-      Preconditions.checkState(entry.getSourceFileId() == UNMAPPED
-          || entry.getSourceFileId() < sources.length);
-      Preconditions.checkState(entry.getNameId() == UNMAPPED
-          || entry.getNameId() < names.length);
+      Preconditions.checkState(sourceFileIds[entry] == UNMAPPED
+          || sourceFileIds[entry] < sources.length);
+      Preconditions.checkState(nameIds[entry] == UNMAPPED
+          || nameIds[entry] < names.length);
     }
 
     /**
-     * Decodes the next entry, using the previous encountered values to
-     * decode the relative values.
+     * Decodes the next entry into the entry arrays, using the previous
+     * encountered values to decode the relative values.
      *
      * @param vals An array of integers that represent values in the entry.
      * @param entryValues The number of entries in the array.
-     * @return The entry object.
      */
-    private Entry decodeEntry(int[] vals, int entryValues) {
-      Entry entry;
+    private void decodeEntry(int[] vals, int entryValues) {
+      if (entryCount == generatedColumns.length) {
+        generatedColumns = grow(generatedColumns);
+        sourceFileIds = grow(sourceFileIds);
+        sourceLines = grow(sourceLines);
+        sourceColumns = grow(sourceColumns);
+        nameIds = grow(nameIds);
+      }
+
+      int i = entryCount;
       switch (entryValues) {
         // The first values, if present are in the following order:
         //   0: the starting column in the current line of the generated file
@@ -308,42 +340,35 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
 
         case 1:
           // An unmapped section of the generated file.
-          entry = new UnmappedEntry(
-              vals[0] + previousCol);
+          generatedColumns[i] = vals[0] + previousCol;
+          sourceFileIds[i] = UNMAPPED;
+          sourceLines[i] = UNMAPPED;
+          sourceColumns[i] = UNMAPPED;
+          nameIds[i] = UNMAPPED;
           // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          return entry;
+          previousCol = generatedColumns[i];
+          return;
 
         case 4:
-          // A mapped section of the generated file.
-          entry = new UnnamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn);
-          // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          return entry;
-
         case 5:
-          // A mapped section of the generated file, that has an associated
-          // name.
-          entry = new NamedEntry(
-              vals[0] + previousCol,
-              vals[1] + previousSrcId,
-              vals[2] + previousSrcLine,
-              vals[3] + previousSrcColumn,
-              vals[4] + previousNameId);
+          // A mapped section of the generated file, that may have an
+          // associated name.
+          generatedColumns[i] = vals[0] + previousCol;
+          sourceFileIds[i] = vals[1] + previousSrcId;
+          sourceLines[i] = vals[2] + previousSrcLine;
+          sourceColumns[i] = vals[3] + previousSrcColumn;
           // Set the values see for the next entry.
-          previousCol = entry.getGeneratedColumn();
-          previousSrcId = entry.getSourceFileId();
-          previousSrcLine = entry.getSourceLine();
-          previousSrcColumn = entry.getSourceColumn();
-          previousNameId = entry.getNameId();
-          return entry;
+          previousCol = generatedColumns[i];
+          previousSrcId = sourceFileIds[i];
+          previousSrcLine = sourceLines[i];
+          previousSrcColumn = sourceColumns[i];
+          if (entryValues == 5) {
+            nameIds[i] = vals[4] + previousNameId;
+            previousNameId = nameIds[i];
+          } else {
+            nameIds[i] = UNMAPPED;
+          }
+          return;
 
         default:
           throw new IllegalStateException(
@@ -374,14 +399,18 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
     }
   }
 
+  private static int[] grow(int[] array) {
+    return Arrays.copyOf(array, array.length * 2 + 1);
+  }
+
   /**
-   * Perform a binary search on the array to find a section that covers
-   * the target column.
+   * Perform a binary search on the generated columns to find a section that
+   * covers the target column.
    */
-  private int search(ArrayList<Entry> entries, int target, int start, int end) {
+  private int search(int target, int start, int end) {
     while (true) {
       int mid = ((end - start) / 2) + start;
-      int compare = compareEntry(entries, mid, target);
+      int compare = generatedColumns[mid] - target;
       if (compare == 0) {
         return mid;
       } else if (compare < 0) {
@@ -400,41 +429,33 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
     }
   }
 
-  /**
-   * Compare an array entry's column value to the taget column value.
-   */
-  private int compareEntry(ArrayList<Entry> entries, int entry, int target) {
-    return entries.get(entry).getGeneratedColumn() - target;
-  }
-
   /**
    * Returns the mapping entry that proceeds the supplied line or null if no
    * such entry exists.
    */
   private OriginalMapping getPreviousMapping(int lineNumber) {
-    do {
-      if (lineNumber == 0) {
-        return null;
-      }
-      lineNumber--;
-    } while (lines.get(lineNumber) == null);
-    ArrayList<Entry> entries = lines.get(lineNumber);
-    return getOriginalMappingForEntry(entries.get(entries.size() - 1));
+    // The entries are stored in order, so the last entry of the previous
+    // non-empty line is the one just before the line's entries.
+    int entry = lineStarts[lineNumber] - 1;
+    if (entry < 0) {
+      return null;
+    }
+    return getOriginalMappingForEntry(entry);
   }
 
   /**
-   * Creates an "OriginalMapping" object for the given entry object.
+   * Creates an "OriginalMapping" object for the given entry.
    */
-  private OriginalMapping getOriginalMappingForEntry(Entry entry) {
-    if (entry.getSourceFileId() == UNMAPPED) {
+  private OriginalMapping getOriginalMappingForEntry(int entry) {
+    if (sourceFileIds[entry] == UNMAPPED) {
       return null;
     } else {
       Builder x = OriginalMapping.newBuilder()
-        .setOriginalFile(sources[entry.getSourceFileId()])
-        .setLineNumber(entry.getSourceLine())
-        .setColumnPosition(entry.getSourceColumn());
-      if (entry.getNameId() != UNMAPPED) {
-        x.setIdentifier(names[entry.getNameId()]);
+        .setOriginalFile(sources[sourceFileIds[entry]])
+        .setLineNumber(sourceLines[entry])
+        .setColumnPosition(sourceColumns[entry]);
+      if (nameIds[entry] != UNMAPPED) {
+        x.setIdentifier(names[nameIds[entry]]);
       }
       return x.build();
     }
@@ -467,109 +488,6 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
     }
   }
 
-  /**
-   * Represents a mapping entry in the source map.
-   */
-  private interface Entry {
-    int getGeneratedColumn();
-    int getSourceFileId();
-    int getSourceLine();
-    int getSourceColumn();
-    int getNameId();
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is not mapped
-   * to a section in the original source.
-   */
-  private static class UnmappedEntry implements Entry {
-    private final int column;
-
-    UnmappedEntry(int column) {
-      this.column = column;
-    }
-
-    @Override
-    public int getGeneratedColumn() {
-      return column;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return UNMAPPED;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source.
-   */
-  private static class UnnamedEntry extends UnmappedEntry {
-    private final int srcFile;
-    private final int srcLine;
-    private final int srcColumn;
-
-    UnnamedEntry(int column, int srcFile, int srcLine, int srcColumn) {
-      super(column);
-      this.srcFile = srcFile;
-      this.srcLine = srcLine;
-      this.srcColumn = srcColumn;
-    }
-
-    @Override
-    public int getSourceFileId() {
-      return srcFile;
-    }
-
-    @Override
-    public int getSourceLine() {
-      return srcLine;
-    }
-
-    @Override
-    public int getSourceColumn() {
-      return srcColumn;
-    }
-
-    @Override
-    public int getNameId() {
-      return UNMAPPED;
-    }
-  }
-
-  /**
-   * This class represents a portion of the generated file, that is mapped
-   * to a section in the original source, and is associated with a name.
-   */
-  private static class NamedEntry extends UnnamedEntry {
-    private final int name;
-
-    NamedEntry(int column, int srcFile, int srcLine, int srcColumn, int name) {
-      super(column, srcFile, srcLine, srcColumn);
-      this.name = name;
-    }
-
-    @Override
-    public int getNameId() {
-      return name;
-    }
-  }
-
   static interface EntryVisitor {
     void visit(String sourceName,
                String symbolName,
@@ -585,35 +503,31 @@ public class SourceMapConsumerV3 implements SourceMapConsumer {
     FilePosition sourceStartPosition = null;
     FilePosition startPosition = null;
 
-    final int lineCount = lines.size();
+    final int lineCount = getLineCount();
     for (int i = 0; i < lineCount; i++) {
-      ArrayList<Entry> line = lines.get(i);
-      if (line != null) {
-        final int entryCount = line.size();
-        for (int j = 0; j < entryCount; j++) {
-          Entry entry = line.get(j);
-          if (pending) {
-            FilePosition endPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-            visitor.visit(
-                sourceName,
-                symbolName,
-                sourceStartPosition,
-                startPosition,
-                endPosition);
-            pending = false;
-          }
+      final int end = lineStarts[i + 1];
+      for (int entry = lineStarts[i]; entry < end; entry++) {
+        if (pending) {
+          FilePosition endPosition = new FilePosition(
+              i, generatedColumns[entry]);
+          visitor.visit(
+              sourceName,
+              symbolName,
+              sourceStartPosition,
+              startPosition,
+              endPosition);
+          pending = false;
+        }
 
-          if (entry.getSourceFileId() != UNMAPPED) {
-            pending = true;
-            sourceName = sources[entry.getSourceFileId()];
-            symbolName = (entry.getNameId() != UNMAPPED)
-                ? names[entry.getNameId()] : null;
-            sourceStartPosition = new FilePosition(
-                entry.getSourceLine(), entry.getSourceColumn());
-            startPosition = new FilePosition(
-                i, entry.getGeneratedColumn());
-          }
+        if (sourceFileIds[entry] != UNMAPPED) {
+          pending = true;
+          sourceName = sources[sourceFileIds[entry]];
+          symbolName = (nameIds[entry] != UNMAPPED)
+              ? names[nameIds[entry]] : null;
+          sourceStartPosition = new FilePosition(
+              sourceLines[entry], sourceColumns[entry]);
+          startPosition = new FilePosition(
+              i, generatedColumns[entry]);
         }
       }
     }
@@ -17,7 +17,6 @@
 package com.google.debugging.sourcemap;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.debugging.sourcemap.SourceMapConsumerV3.EntryVisitor;
 
@@ -39,35 +38,11 @@ import javax.annotation.Nullable;
  */
 public class SourceMapGeneratorV3 implements SourceMapGenerator {
 
-  private static final int UNMAPPED = -1;
-
-
-  /**
-   * A pre-order traversal ordered list of mappings stored in this map.
-   */
-  private List<Mapping> mappings = Lists.newArrayList();
-
-  /**
-   * A map of source names to source name index
-   */
-  private LinkedHashMap<String, Integer> sourceFileMap =
-      Maps.newLinkedHashMap();
-
-  /**
-   * A map of source names to source name index
-   */
-  private LinkedHashMap<String, Integer> originalNameMap =
-      Maps.newLinkedHashMap();
-
-  /**
-   * Cache of the last mappings source name.
-   */
-  private String lastSourceFile = null;
-
   /**
-   * Cache of the last mappings source name index.
+   * The line mappings of the mappings added so far, encoded as they are
+   * closed so that only the open mappings need to be kept.
    */
-  private int lastSourceFileIndex = -1;
+  private MappingEncoder encoder = new MappingEncoder();
 
   /**
    * For validation store the last mapping added.
@@ -92,12 +67,8 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
    * {@inheritDoc}
    */
   public void reset() {
-    mappings.clear();
+    encoder = new MappingEncoder();
     lastMapping = null;
-    sourceFileMap.clear();
-    originalNameMap.clear();
-    lastSourceFile = null;
-    lastSourceFileIndex = -1;
     offsetPosition = new FilePosition(0, 0);
     prefixPosition = new FilePosition(0, 0);
   }
@@ -217,7 +188,7 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
     }
 
     lastMapping = mapping;
-    mappings.add(mapping);
+    encoder.add(mapping);
   }
 
   class ConsumerEntryVisitor implements EntryVisitor {
@@ -275,7 +246,11 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
    * Line 12: The mappings field.
    */
   public void appendTo(Appendable out, String name) throws IOException {
-    int maxLine = prepMappings();
+    // Close the mappings that are still open on a copy of the encoder, so
+    // that more mappings can be added afterwards.
+    MappingEncoder finished = new MappingEncoder(encoder);
+    finished.finish();
+    int maxLine = finished.maxLine + prefixPosition.getLine();
 
     // Add the header fields.
     out.append("{\n");
@@ -286,21 +261,23 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
     // Add the mappings themselves.
     appendFieldStart(out, "mappings");
     // out.append("[");
-    (new LineMapper(out)).appendLineMappings();
+    out.append('\"');
+    appendLineMappings(out, encoder.out, finished.out);
+    out.append(";\"");
     // out.append("]");
     appendFieldEnd(out);
 
     // Files names
     appendFieldStart(out, "sources");
     out.append("[");
-    addSourceNameMap(out);
+    addNameMap(out, finished.sourceFileMap);
     out.append("]");
     appendFieldEnd(out);
 
     // Files names
     appendFieldStart(out, "names");
     out.append("[");
-    addSymbolNameMap(out);
+    addNameMap(out, finished.originalNameMap);
     out.append("]");
     appendFieldEnd(out);
 
@@ -308,17 +285,53 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
   }
 
   /**
-   * Writes the source name map to 'out'.
+   * Writes the encoded line mappings, which are split between the encoder
+   * and the mappings closed for this output.
+   *
+   * The encoder starts at the first mapping rather than at the start of the
+   * file, as the wrapper prefix is only known once the code is written.
+   * Everything before the first mapping is unmapped, so it is written here
+   * as a single unmapped segment, followed by the first mapped segment whose
+   * column is the only one that is not relative to one after the prefix.
    */
-  private void addSourceNameMap(Appendable out) throws IOException {
-    addNameMap(out, sourceFileMap);
-  }
+  private void appendLineMappings(
+      Appendable out, CharSequence encoded, CharSequence closed)
+      throws IOException {
+    if (encoder.firstPosition == null) {
+      return;
+    }
 
-  /**
-   * Writes the source name map to 'out'.
-   */
-  private void addSymbolNameMap(Appendable out) throws IOException {
-    addNameMap(out, originalNameMap);
+    int firstLine = encoder.firstPosition.getLine() + prefixPosition.getLine();
+    int firstColumn = encoder.firstPosition.getColumn();
+    if (encoder.firstPosition.getLine() == 0) {
+      firstColumn += prefixPosition.getColumn();
+    }
+    boolean hasSegments = encoded.length() + closed.length() > 0;
+
+    if (firstLine != 0 || firstColumn != 0) {
+      out.append('A');
+      for (int i = 0; i < firstLine; i++) {
+        out.append(';');
+      }
+      if (firstLine == 0 && hasSegments) {
+        out.append(',');
+      }
+    }
+    if (!hasSegments) {
+      return;
+    }
+
+    // Replace the column of the first segment.
+    Base64VLQ.encode(out, firstColumn);
+    StringBuilder rawColumn = new StringBuilder();
+    Base64VLQ.encode(rawColumn, encoder.firstPosition.getColumn());
+    int skip = rawColumn.length();
+
+    if (skip < encoded.length()) {
+      out.append(encoded, skip, encoded.length());
+    }
+    skip = Math.max(0, skip - encoded.length());
+    out.append(closed, skip, closed.length());
   }
 
   private void addNameMap(Appendable out, Map<String, Integer> map)
@@ -374,40 +387,11 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
      throws IOException {
   }
 
-  /**
-   * Assigns sequential ids to used mappings, and returns the last line mapped.
-   */
-  private int prepMappings() throws IOException {
-    // Mark any unused mappings.
-    (new MappingTraversal()).traverse(new UsedMappingCheck());
-
-    // Renumber used mappings and keep track of the last line.
-    int id = 0;
-    int maxLine = 0;
-    int sourceId = 0;
-    int nameId = 0;
-    for (Mapping m : mappings) {
-      if (m.used) {
-        m.id = id++;
-        int endPositionLine = m.endPosition.getLine();
-        maxLine = Math.max(maxLine, endPositionLine);
-      }
-    }
-
-    // Adjust for the prefix.
-    return maxLine + prefixPosition.getLine();
-  }
-
   /**
    * A mapping from a given position in an input source file to a given position
    * in the generated code.
    */
   static class Mapping {
-    /**
-     * A unique ID for this mapping for record keeping purposes.
-     */
-    int id = UNMAPPED;
-
     /**
      * The source file index.
      */
@@ -437,167 +421,6 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
      * represented by this mapping (if any).
      */
     String originalName;
-
-    /**
-     * Whether the mapping is actually used by the source map.
-     */
-    boolean used = false;
-  }
-
-  /**
-   * Mark any visited mapping as "used".
-   */
-  private class UsedMappingCheck implements MappingVisitor {
-    /**
-     * @throws IOException
-     */
-    @Override
-    public void visit(Mapping m, int line, int col, int nextLine, int nextCol)
-        throws IOException {
-      if (m != null) {
-        m.used = true;
-      }
-    }
-  }
-
-  private interface MappingVisitor {
-    /**
-     * @param m The mapping for the current code segment. null if the segment
-     *     is unmapped.
-     * @param line The starting line for this code segment.
-     * @param col The starting column for this code segment.
-     * @param endLine The ending line
-     * @param endCol The ending column
-     * @throws IOException
-     */
-    void visit(Mapping m, int line, int col, int endLine, int endCol)
-        throws IOException;
-  }
-
-  /**
-   * Walk the mappings and visit each segment of the mappings, unmapped
-   * segments are visited with a null mapping, unused mapping are not visited.
-   */
-  private class MappingTraversal {
-    // The last line and column written
-    private int line;
-    private int col;
-
-    MappingTraversal() {
-    }
-
-    // Append the line mapping entries.
-    void traverse(MappingVisitor v) throws IOException {
-      // The mapping list is ordered as a pre-order traversal.  The mapping
-      // positions give us enough information to rebuild the stack and this
-      // allows the building of the source map in O(n) time.
-      Deque<Mapping> stack = new ArrayDeque<Mapping>();
-      for (Mapping m : mappings) {
-        // Find the closest ancestor of the current mapping:
-        // An overlapping mapping is an ancestor of the current mapping, any
-        // non-overlapping mappings are siblings (or cousins) and must be
-        // closed in the reverse order of when they encountered.
-        while (!stack.isEmpty() && !isOverlapped(stack.peek(), m)) {
-          Mapping previous = stack.pop();
-          maybeVisit(v, previous);
-        }
-
-        // Any gaps between the current line position and the start of the
-        // current mapping belong to the parent.
-        Mapping parent = stack.peek();
-        maybeVisitParent(v, parent, m);
-
-        stack.push(m);
-      }
-
-      // There are no more children to be had, simply close the remaining
-      // mappings in the reverse order of when they encountered.
-      while (!stack.isEmpty()) {
-        Mapping m = stack.pop();
-        maybeVisit(v, m);
-      }
-    }
-
-    /**
-     * @return The line adjusted for the prefix position.
-     */
-    private int getAdjustedLine(FilePosition p) {
-      return p.getLine() + prefixPosition.getLine();
-    }
-
-    /**
-     * @return The column adjusted for the prefix position.
-     */
-    private int getAdjustedCol(FilePosition p) {
-      int rawLine = p.getLine();
-      int rawCol = p.getColumn();
-      // Only the first line needs the character position adjusted.
-      return (rawLine != 0)
-          ? rawCol : rawCol + prefixPosition.getColumn();
-    }
-
-    /**
-     * @return Whether m1 ends before m2 starts.
-     */
-    private boolean isOverlapped(Mapping m1, Mapping m2) {
-      // No need to use adjusted values here, relative positions are sufficient.
-      int l1 = m1.endPosition.getLine();
-      int l2 = m2.startPosition.getLine();
-      int c1 = m1.endPosition.getColumn();
-      int c2 = m2.startPosition.getColumn();
-
-      return (l1 == l2 && c1 >= c2) || l1 > l2;
-    }
-
-    /**
-     * Write any needed entries from the current position to the end of the
-     * provided mapping.
-     */
-    private void maybeVisit(MappingVisitor v, Mapping m) throws IOException {
-      int nextLine = getAdjustedLine(m.endPosition);
-      int nextCol = getAdjustedCol(m.endPosition);
-      // If this anything remaining in this mapping beyond the
-      // current line and column position, write it out now.
-      if (line < nextLine || (line == nextLine && col < nextCol)) {
-        visit(v, m, nextLine, nextCol);
-      }
-    }
-
-    /**
-     * Write any needed entries to complete the provided mapping.
-     */
-    private void maybeVisitParent(MappingVisitor v, Mapping parent, Mapping m)
-        throws IOException {
-      int nextLine = getAdjustedLine(m.startPosition);
-      int nextCol = getAdjustedCol(m.startPosition);
-      // If the previous value is null, no mapping exists.
-      Preconditions.checkState(line < nextLine || col <= nextCol);
-      if (line < nextLine || (line == nextLine && col < nextCol)) {
-        visit(v, parent, nextLine, nextCol);
-      }
-    }
-
-    /**
-     * Write any entries needed between the current position the next position
-     * and update the current position.
-     */
-    private void visit(MappingVisitor v, Mapping m,
-        int nextLine, int nextCol)
-        throws IOException {
-      Preconditions.checkState(line <= nextLine);
-      Preconditions.checkState(line < nextLine || col < nextCol);
-
-      if (line == nextLine && col == nextCol) {
-        // Nothing to do.
-        Preconditions.checkState(false);
-        return;
-      }
-
-      v.visit(m, line, col, nextLine, nextCol);
-
-      line = nextLine;
-      col = nextCol;
-    }
   }
 
   /**
@@ -651,35 +474,39 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
     return out;
   }
 
-  private int getSourceId(String sourceName) {
-    if (sourceName != lastSourceFile) {
-      lastSourceFile = sourceName;
-      Integer index = sourceFileMap.get(sourceName);
-      if (index != null) {
-        lastSourceFileIndex = index;
-      } else {
-        lastSourceFileIndex = sourceFileMap.size();
-        sourceFileMap.put(sourceName, lastSourceFileIndex);
-      }
-    }
-    return lastSourceFileIndex;
-  }
+  /**
+   * Walks the mappings as they are added and writes the line mappings of
+   * each code segment once the mappings that cover it are known. The
+   * mappings are added in a pre-order traversal, and their positions are
+   * enough to rebuild the stack of open mappings, so only that stack needs
+   * to be kept. Unmapped segments are written with no mapping.
+   */
+  private static class MappingEncoder {
+    // The encoded line mappings from the first mapping onwards.
+    final StringBuilder out;
 
-  private int getNameId(String symbolName) {
-    int originalNameIndex;
-    Integer index = originalNameMap.get(symbolName);
-    if (index != null) {
-      originalNameIndex = index;
-    } else {
-      originalNameIndex = originalNameMap.size();
-      originalNameMap.put(symbolName, originalNameIndex);
-    }
-    return originalNameIndex;
-  }
+    // The start of the first mapping, or null if there are none.
+    FilePosition firstPosition = null;
+
+    // The last line that a written segment of a mapping ends on.
+    int maxLine = 0;
+
+    // The mappings that may still cover code after the current position.
+    final Deque<Mapping> stack;
+
+    // The last line and column written
+    private int line;
+    private int col;
+
+    // A map of source names to source name index, in the order written.
+    final LinkedHashMap<String, Integer> sourceFileMap;
 
-  private class LineMapper implements MappingVisitor {
-    // The destination.
-    private final Appendable out;
+    // A map of symbol names to symbol name index, in the order written.
+    final LinkedHashMap<String, Integer> originalNameMap;
+
+    // Cache of the last mappings source name and its index.
+    private String lastSourceFile = null;
+    private int lastSourceFileIndex = -1;
 
     private int previousLine = -1;
     private int previousColumn = 0;
@@ -690,103 +517,202 @@ public class SourceMapGeneratorV3 implements SourceMapGenerator {
     private int previousSourceColumn;
     private int previousNameId;
 
-    LineMapper(Appendable out) {
-      this.out = out;
+    MappingEncoder() {
+      out = new StringBuilder();
+      stack = new ArrayDeque<Mapping>();
+      sourceFileMap = Maps.newLinkedHashMap();
+      originalNameMap = Maps.newLinkedHashMap();
     }
 
     /**
-     * As each segment is visited write out the appropriate line mapping.
+     * Copies the state of the given encoder. The copy writes to a new
+     * buffer, which continues the original's.
      */
-    public void visit(Mapping m, int line, int col, int nextLine, int nextCol)
-      throws IOException {
-
-      int id = (m != null) ? m.id : UNMAPPED;
+    MappingEncoder(MappingEncoder other) {
+      out = new StringBuilder();
+      firstPosition = other.firstPosition;
+      maxLine = other.maxLine;
+      stack = new ArrayDeque<Mapping>(other.stack);
+      line = other.line;
+      col = other.col;
+      sourceFileMap = Maps.newLinkedHashMap(other.sourceFileMap);
+      originalNameMap = Maps.newLinkedHashMap(other.originalNameMap);
+      lastSourceFile = other.lastSourceFile;
+      lastSourceFileIndex = other.lastSourceFileIndex;
+      previousLine = other.previousLine;
+      previousColumn = other.previousColumn;
+      previousSourceFileId = other.previousSourceFileId;
+      previousSourceLine = other.previousSourceLine;
+      previousSourceColumn = other.previousSourceColumn;
+      previousNameId = other.previousNameId;
+    }
 
-      if (previousLine != line) {
-        previousColumn = 0;
+    void add(Mapping m) {
+      if (firstPosition == null) {
+        firstPosition = m.startPosition;
+        line = firstPosition.getLine();
+        col = firstPosition.getColumn();
       }
 
-      if (line != nextLine || col != nextCol) {
-        if (previousLine == line) { // not the first entry for the line
-          out.append(',');
-        }
-        writeEntry(m, col);
-        previousLine = line;
-        previousColumn = col;
+      // Find the closest ancestor of the current mapping:
+      // An overlapping mapping is an ancestor of the current mapping, any
+      // non-overlapping mappings are siblings (or cousins) and must be
+      // closed in the reverse order of when they encountered.
+      while (!stack.isEmpty() && !isOverlapped(stack.peek(), m)) {
+        Mapping previous = stack.pop();
+        maybeVisit(previous);
       }
 
-      for (int i = line; i <= nextLine; i++) {
-        if (i == nextLine) {
-          break;
-        }
+      // Any gaps between the current line position and the start of the
+      // current mapping belong to the parent.
+      Mapping parent = stack.peek();
+      maybeVisitParent(parent, m);
 
-        closeLine(false);
-        openLine(false);
-      }
+      stack.push(m);
     }
 
     /**
-     * Writes an entry for the given column (of the generated text) and
-     * associated mapping.
-     * The values are stored as relative to the last seen values for each
-     * field and encoded as Base64VLQs.
+     * Closes the remaining mappings, as there are no more children to be
+     * had, in the reverse order of when they were encountered.
      */
-    void writeEntry(Mapping m, int column) throws IOException {
-      // The relative generated column number
-      Base64VLQ.encode(out, column - previousColumn);
-      previousColumn = column;
-      if (m != null) {
-        // The relative source file id
-        int sourceId = getSourceId(m.sourceFile);
-        Base64VLQ.encode(out, sourceId - previousSourceFileId);
-        previousSourceFileId = sourceId;
-
-        // The relative source file line and column
-        int srcline = m.originalPosition.getLine();
-        int srcColumn = m.originalPosition.getColumn();
-        Base64VLQ.encode(out, srcline - previousSourceLine);
-        previousSourceLine = srcline;
-
-        Base64VLQ.encode(out, srcColumn - previousSourceColumn);
-        previousSourceColumn = srcColumn;
-
-        if (m.originalName != null) {
-          // The relative id for the associated symbol name
-          int nameId = getNameId(m.originalName);
-          Base64VLQ.encode(out, (nameId - previousNameId));
-          previousNameId = nameId;
-        }
+    void finish() {
+      while (!stack.isEmpty()) {
+        Mapping m = stack.pop();
+        maybeVisit(m);
       }
     }
 
-    // Append the line mapping entries.
-    void appendLineMappings() throws IOException {
-      // Start the first line.
-      openLine(true);
+    /**
+     * @return Whether m1 ends before m2 starts.
+     */
+    private boolean isOverlapped(Mapping m1, Mapping m2) {
+      int l1 = m1.endPosition.getLine();
+      int l2 = m2.startPosition.getLine();
+      int c1 = m1.endPosition.getColumn();
+      int c2 = m2.startPosition.getColumn();
+
+      return (l1 == l2 && c1 >= c2) || l1 > l2;
+    }
 
-      (new MappingTraversal()).traverse(this);
+    /**
+     * Write any needed entries from the current position to the end of the
+     * provided mapping.
+     */
+    private void maybeVisit(Mapping m) {
+      int nextLine = m.endPosition.getLine();
+      int nextCol = m.endPosition.getColumn();
+      // If this anything remaining in this mapping beyond the
+      // current line and column position, write it out now.
+      if (line < nextLine || (line == nextLine && col < nextCol)) {
+        visit(m, nextLine, nextCol);
+      }
+    }
 
-      // And close the final line.
-      closeLine(true);
+    /**
+     * Write any needed entries to complete the provided mapping.
+     */
+    private void maybeVisitParent(Mapping parent, Mapping m) {
+      int nextLine = m.startPosition.getLine();
+      int nextCol = m.startPosition.getColumn();
+      // If the previous value is null, no mapping exists.
+      Preconditions.checkState(line < nextLine || col <= nextCol);
+      if (line < nextLine || (line == nextLine && col < nextCol)) {
+        visit(parent, nextLine, nextCol);
+      }
     }
 
     /**
-     * Begin the entry for a new line.
+     * Write the entries between the current position and the next position,
+     * and update the current position.
      */
-    private void openLine(boolean firstEntry) throws IOException {
-      if (firstEntry) {
-        out.append('\"');
+    private void visit(Mapping m, int nextLine, int nextCol) {
+      Preconditions.checkState(line <= nextLine);
+      Preconditions.checkState(line < nextLine || col < nextCol);
+
+      if (m != null) {
+        maxLine = Math.max(maxLine, m.endPosition.getLine());
+      }
+
+      if (previousLine != line) {
+        previousColumn = 0;
       }
+      if (previousLine == line) { // not the first entry for the line
+        out.append(',');
+      }
+      writeEntry(m, col);
+      previousLine = line;
+
+      for (int i = line; i < nextLine; i++) {
+        out.append(';');
+      }
+
+      line = nextLine;
+      col = nextCol;
     }
 
     /**
-     * End the entry for a line.
+     * Writes an entry for the given column (of the generated text) and
+     * associated mapping.
+     * The values are stored as relative to the last seen values for each
+     * field and encoded as Base64VLQs.
      */
-    private void closeLine(boolean finalEntry) throws IOException {
-      out.append(';');
-      if (finalEntry) {
-        out.append('\"');
+    private void writeEntry(Mapping m, int column) {
+      try {
+        // The relative generated column number
+        Base64VLQ.encode(out, column - previousColumn);
+        previousColumn = column;
+        if (m != null) {
+          // The relative source file id
+          int sourceId = getSourceId(m.sourceFile);
+          Base64VLQ.encode(out, sourceId - previousSourceFileId);
+          previousSourceFileId = sourceId;
+
+          // The relative source file line and column
+          int srcline = m.originalPosition.getLine();
+          int srcColumn = m.originalPosition.getColumn();
+          Base64VLQ.encode(out, srcline - previousSourceLine);
+          previousSourceLine = srcline;
+
+          Base64VLQ.encode(out, srcColumn - previousSourceColumn);
+          previousSourceColumn = srcColumn;
+
+          if (m.originalName != null) {
+            // The relative id for the associated symbol name
+            int nameId = getNameId(m.originalName);
+            Base64VLQ.encode(out, (nameId - previousNameId));
+            previousNameId = nameId;
+          }
+        }
+      } catch (IOException e) {
+        // A StringBuilder does not throw IOExceptions.
+        throw new IllegalStateException(e);
+      }
+    }
+
+    private int getSourceId(String sourceName) {
+      if (sourceName != lastSourceFile) {
+        lastSourceFile = sourceName;
+        Integer index = sourceFileMap.get(sourceName);
+        if (index != null) {
+          lastSourceFileIndex = index;
+        } else {
+          lastSourceFileIndex = sourceFileMap.size();
+          sourceFileMap.put(sourceName, lastSourceFileIndex);
+        }
+      }
+      return lastSourceFileIndex;
+    }
+
+    private int getNameId(String symbolName) {
+      int originalNameIndex;
+      Integer index = originalNameMap.get(symbolName);
+      if (index != null) {
+        originalNameIndex = index;
+      } else {
+        originalNameIndex = originalNameMap.size();
+        originalNameMap.put(symbolName, originalNameIndex);
       }
+      return originalNameIndex;
     }
   }
 
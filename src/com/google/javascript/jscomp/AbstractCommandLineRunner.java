@@ -559,10 +559,12 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
   }
 
   /**
-   * Writes code to an output stream, optionally wrapping it in an arbitrary
+   * Writes the code of a module, or of the whole program if the module is
+   * null, to an output stream, optionally wrapping it in an arbitrary
    * wrapper that contains a placeholder where the code should be inserted.
+   * The code is written as it is printed.
    */
-  static void writeOutput(Appendable out, Compiler compiler, String code,
+  static void writeOutput(Appendable out, Compiler compiler, JSModule module,
       String wrapper, String codePlaceholder) throws IOException {
     int pos = wrapper.indexOf(codePlaceholder);
     if (pos != -1) {
@@ -573,7 +575,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
         out.append(prefix);
       }
 
-      out.append(code);
+      writeCode(out, compiler, module);
 
       int suffixStart = pos + codePlaceholder.length();
       if (suffixStart != wrapper.length()) {
@@ -590,11 +592,20 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
       }
 
     } else {
-      out.append(code);
+      writeCode(out, compiler, module);
       out.append('\n');
     }
   }
 
+  private static void writeCode(Appendable out, Compiler compiler,
+      JSModule module) throws IOException {
+    if (module == null) {
+      compiler.toSource(out);
+    } else {
+      compiler.toSource(out, module);
+    }
+  }
+
   /**
    * Creates any directories necessary to write a file that will have a given
    * path prefix.
@@ -715,7 +726,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
     } else if (result.success) {
       if (modules == null) {
         writeOutput(
-            jsOutput, compiler, compiler.toSource(), config.outputWrapper,
+            jsOutput, compiler, null, config.outputWrapper,
             OUTPUT_WRAPPER_MARKER);
 
         // Output the source map if requested.
@@ -747,7 +758,7 @@ abstract class AbstractCommandLineRunner<A extends Compiler,
             compiler.getSourceMap().reset();
           }
 
-          writeOutput(writer, compiler, compiler.toSource(m),
+          writeOutput(writer, compiler, m,
               moduleWrappers.get(m.getName()), "%s");
 
           if (options.sourceMapOutputPath != null) {
@@ -27,6 +27,7 @@ import com.google.javascript.rhino.jstype.JSTypeRegistry;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 /**
  * An abstract compiler, to help remove the circular dependency of
@@ -106,6 +107,47 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   public abstract void reportCodeChange();
 
+  /**
+   * Report code changes that were confined to the body of the given function,
+   * or to code outside of all functions if it is null. Passes that know
+   * where they changed the AST should call this rather than
+   * reportCodeChange, so that passes that work on one function at a time
+   * can skip the functions that have not changed since they last ran.
+   */
+  abstract void reportChangeToFunction(Node function);
+
+  /**
+   * Returns a number that grows each time a code change is reported, to be
+   * passed to {@link #hasFunctionChangedSince}.
+   */
+  abstract int getChangeStamp();
+
+  /**
+   * Returns whether the given function may have changed since the change
+   * stamp was taken. A function is considered changed when any code in the
+   * outermost function that contains it has changed.
+   */
+  abstract boolean hasFunctionChangedSince(Node function, int changeStamp);
+
+  /**
+   * Returns the definitions and use sites in the given roots. The finder is
+   * shared by all the passes that ask for it until a code change is
+   * reported, so passes that do not change the code do not pay for
+   * gathering them again. A pass may keep the finder up to date with
+   * {@link SimpleDefinitionFinder#removeReferences} while it changes the
+   * code, but must report its changes as usual.
+   */
+  abstract SimpleDefinitionFinder getDefinitionFinder(Node externs, Node root);
+
+  /**
+   * Returns a syntactic scope creator whose scopes are shared by the
+   * traversals that use it until a code change that may affect them is
+   * reported, so traversals that do not change the code do not rebuild the
+   * same scopes. The scopes must not be modified, and the creator must only
+   * be used from the thread that runs the passes.
+   */
+  abstract ScopeCreator getSyntacticScopeCreator();
+
   /**
    * Logs a message under a central logger.
    */
@@ -217,6 +259,18 @@ public abstract class AbstractCompiler implements SourceExcerptProvider {
    */
   abstract Config getParserConfig();
 
+  /**
+   * Returns the on-disk cache of parsed ASTs, or null if parsed ASTs
+   * should not be cached.
+   */
+  abstract AstCache getAstCache();
+
+  /**
+   * Returns the thread pool shared by the passes that process parts of the
+   * AST in parallel, or null if the compiler may not start threads.
+   */
+  abstract ExecutorService getWorkerPool();
+
   /**
    * Returns true if type checking is enabled.
    */
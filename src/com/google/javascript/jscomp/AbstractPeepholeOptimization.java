@@ -31,6 +31,11 @@ abstract class AbstractPeepholeOptimization {
 
   private NodeTraversal currentTraversal;
 
+  // Set while the optimization works on a function body on a worker thread.
+  // Changes and errors are collected here instead of being reported to the
+  // compiler, which is not thread-safe.
+  private ParallelCompilerPass.Result currentResult;
+
   /**
    * Given a node to optimize and a traversal, optimize the node. Subclasses
    * should override to provide their own peephole optimization.
@@ -51,7 +56,11 @@ abstract class AbstractPeepholeOptimization {
    */
   protected void error(DiagnosticType diagnostic, Node n) {
     JSError error = currentTraversal.makeError(n, diagnostic, n.toString());
-    currentTraversal.getCompiler().report(error);
+    if (currentResult != null) {
+      currentResult.errors.add(error);
+    } else {
+      currentTraversal.getCompiler().report(error);
+    }
   }
 
   /**
@@ -60,7 +69,11 @@ abstract class AbstractPeepholeOptimization {
    */
   protected void reportCodeChange() {
     Preconditions.checkNotNull(currentTraversal);
-    currentTraversal.getCompiler().reportCodeChange();
+    if (currentResult != null) {
+      currentResult.changed = true;
+    } else {
+      currentTraversal.getCompiler().reportCodeChange();
+    }
   }
 
   /**
@@ -93,11 +106,23 @@ abstract class AbstractPeepholeOptimization {
     currentTraversal = traversal;
   }
 
+  /**
+   * Informs the optimization that a traversal of part of the AST will begin
+   * on a worker thread, and that changes and errors should be recorded in
+   * the given result.
+   */
+  void beginTraversal(
+      NodeTraversal traversal, ParallelCompilerPass.Result result) {
+    currentTraversal = traversal;
+    currentResult = result;
+  }
+
   /**
    * Informs the optimization that a traversal has completed.
    */
   void endTraversal(NodeTraversal traversal) {
     currentTraversal = null;
+    currentResult = null;
   }
 
   // NodeUtil's mayEffectMutableState and mayHaveSideEffects need access to the
@@ -23,6 +23,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.jscomp.Scope.Var;
+import com.google.javascript.jscomp.graph.CompactDirectedGraph;
 import com.google.javascript.jscomp.graph.FixedPointGraphTraversal;
 import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
 import com.google.javascript.jscomp.graph.FixedPointGraphTraversal.EdgeCallback;
@@ -152,7 +153,7 @@ class AnalyzePrototypeProperties implements CompilerPass {
 
     FixedPointGraphTraversal<NameInfo, JSModule> t =
         FixedPointGraphTraversal.newTraversal(new PropagateReferences());
-    t.computeFixedPoint(symbolGraph,
+    t.computeFixedPoint(CompactDirectedGraph.copyOf(symbolGraph),
         Sets.newHashSet(externNode, globalNode));
   }
 
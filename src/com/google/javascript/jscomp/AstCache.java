@@ -0,0 +1,226 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+import com.google.javascript.jscomp.mozilla.rhino.ErrorReporter;
+import com.google.javascript.jscomp.mozilla.rhino.EvaluatorException;
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.jscomp.parsing.ParserRunner;
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.NodeCodec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A directory of parsed ASTs, so that unchanged files (libraries, externs)
+ * do not have to be parsed again by every compile.
+ *
+ * Each entry holds the tree produced by {@link ParserRunner}, before
+ * {@link PrepareAst} runs, encoded with {@link NodeCodec}. Entries are keyed
+ * by a hash of the source name, the source code, the parser {@link Config}
+ * and the format version, so a stale entry is never found. Files whose parse
+ * reported errors or warnings are not cached, because the cache does not
+ * record the messages.
+ *
+ * This class is thread-safe.
+ */
+class AstCache {
+
+  private static final String SUFFIX = ".ast";
+
+  private final File directory;
+
+  private final AtomicInteger hits = new AtomicInteger();
+  private final AtomicInteger misses = new AtomicInteger();
+
+  AstCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the AST for the given code, from the cache if possible.
+   * Otherwise, the code is parsed with {@link ParserRunner}, and the result
+   * is cached if the parse was clean.
+   */
+  Node parse(String sourceName, String sourceStr, Config config,
+      ErrorReporter errorReporter, Logger logger) throws IOException {
+    File file = new File(directory,
+        computeKey(sourceName, sourceStr, config) + SUFFIX);
+
+    Node root = load(file, logger);
+    if (root != null) {
+      hits.incrementAndGet();
+      return root;
+    }
+
+    misses.incrementAndGet();
+    CountingErrorReporter countingReporter =
+        new CountingErrorReporter(errorReporter);
+    root = ParserRunner.parse(
+        sourceName, sourceStr, config, countingReporter, logger);
+    if (root != null && countingReporter.count == 0) {
+      store(file, root, logger);
+    }
+    return root;
+  }
+
+  /** Returns the number of ASTs that were loaded from the cache. */
+  int getHitCount() {
+    return hits.get();
+  }
+
+  /** Returns the number of ASTs that had to be parsed. */
+  int getMissCount() {
+    return misses.get();
+  }
+
+  private Node load(File file, Logger logger) {
+    if (!file.isFile()) {
+      return null;
+    }
+
+    RandomAccessFile in = null;
+    try {
+      in = new RandomAccessFile(file, "r");
+      FileChannel channel = in.getChannel();
+      ByteBuffer buffer =
+          channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return NodeCodec.decode(buffer);
+    } catch (IOException e) {
+      logger.warning("Could not read cached AST " + file + ": " + e);
+    } catch (IllegalArgumentException e) {
+      logger.warning("Ignoring corrupt cached AST " + file + ": " + e);
+    } finally {
+      closeQuietly(in);
+    }
+    return null;
+  }
+
+  private void store(File file, Node root, Logger logger) {
+    byte[] bytes;
+    try {
+      bytes = NodeCodec.encode(root);
+    } catch (IllegalArgumentException e) {
+      logger.fine("Not caching AST for " + file + ": " + e.getMessage());
+      return;
+    }
+
+    // Write to a temporary file first, so that a concurrent compile never
+    // sees a partially written entry.
+    FileOutputStream out = null;
+    File tmp = null;
+    try {
+      directory.mkdirs();
+      tmp = File.createTempFile("ast", ".tmp", directory);
+      out = new FileOutputStream(tmp);
+      out.write(bytes);
+      out.close();
+      out = null;
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+      }
+    } catch (IOException e) {
+      logger.warning("Could not write cached AST " + file + ": " + e);
+      if (tmp != null) {
+        tmp.delete();
+      }
+    } finally {
+      closeQuietly(out);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException ignore) {
+        // ignore
+      }
+    }
+  }
+
+  private static String computeKey(
+      String sourceName, String sourceStr, Config config) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    update(digest, NodeCodec.VERSION + "\0" + sourceName + "\0"
+        + config.getFingerprint() + "\0");
+    update(digest, sourceStr);
+
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  // Hashes the raw chars, since a charset encoding would map unpaired
+  // surrogates to the same replacement character.
+  private static void update(MessageDigest digest, String value) {
+    ByteBuffer bytes = ByteBuffer.allocate(value.length() * 2);
+    bytes.asCharBuffer().put(value);
+    digest.update(bytes.array());
+  }
+
+  /** Forwards messages to another reporter, counting them. */
+  private static class CountingErrorReporter implements ErrorReporter {
+    private final ErrorReporter delegate;
+    private int count = 0;
+
+    CountingErrorReporter(ErrorReporter delegate) {
+      this.delegate = Preconditions.checkNotNull(delegate);
+    }
+
+    @Override
+    public void warning(String message, String sourceName, int line,
+        String lineSource, int lineOffset) {
+      count++;
+      delegate.warning(message, sourceName, line, lineSource, lineOffset);
+    }
+
+    @Override
+    public void error(String message, String sourceName, int line,
+        String lineSource, int lineOffset) {
+      count++;
+      delegate.error(message, sourceName, line, lineSource, lineOffset);
+    }
+
+    @Override
+    public EvaluatorException runtimeError(String message, String sourceName,
+        int line, String lineSource, int lineOffset) {
+      count++;
+      return delegate.runtimeError(
+          message, sourceName, line, lineSource, lineOffset);
+    }
+  }
+}
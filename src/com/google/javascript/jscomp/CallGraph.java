@@ -557,9 +557,7 @@ public class CallGraph implements CompilerPass {
 
       return graphConstruction.getNameReferenceGraph();
     } else {
-      SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(compiler);
-      defFinder.process(externsRoot, jsRoot);
-      return defFinder;
+      return compiler.getDefinitionFinder(externsRoot, jsRoot);
     }
   }
 
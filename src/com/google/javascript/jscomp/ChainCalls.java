@@ -47,8 +47,7 @@ class ChainCalls implements CompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
-    defFinder = new SimpleDefinitionFinder(compiler);
-    defFinder.process(externs, root);
+    defFinder = compiler.getDefinitionFinder(externs, root);
 
     NodeTraversal.traverse(compiler, root, new GatherCallSites());
 
@@ -19,6 +19,7 @@ package com.google.javascript.jscomp;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.AbstractCfgNodeTraversalCallback;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
@@ -30,15 +31,18 @@ import com.google.javascript.jscomp.Scope.Var;
 import com.google.javascript.jscomp.graph.DiGraph.DiGraphNode;
 import com.google.javascript.jscomp.graph.GraphColoring;
 import com.google.javascript.jscomp.graph.GraphColoring.GreedyGraphColoring;
-import com.google.javascript.jscomp.graph.GraphNode;
-import com.google.javascript.jscomp.graph.LinkedUndirectedGraph;
-import com.google.javascript.jscomp.graph.UndiGraph;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -61,7 +65,7 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     CompilerPass, ScopedCallback {
 
   private final AbstractCompiler compiler;
-  private final Deque<GraphColoring<Var, Void>> colorings;
+  private final Deque<Coloring> colorings;
   private final boolean usePseudoNames;
 
   private static final Comparator<Var> coloringTieBreaker =
@@ -111,16 +115,11 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
     }
     liveness.analyze();
 
-    UndiGraph<Var, Void> interferenceGraph =
+    InterferenceGraph interferenceGraph =
         computeVariableNamesInterferenceGraph(
             t, cfg, liveness.getEscapedLocals());
 
-    GraphColoring<Var, Void> coloring =
-        new GreedyGraphColoring<Var, Void>(interferenceGraph,
-            coloringTieBreaker);
-
-    coloring.color();
-    colorings.push(coloring);
+    colorings.push(interferenceGraph.color());
   }
 
   @Override
@@ -139,15 +138,14 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
       return;
     }
     Var var = t.getScope().getVar(n.getString());
-    GraphNode<Var, ?> vNode = colorings.peek().getGraph().getNode(var);
-    if (vNode == null) {
+    if (!colorings.peek().hasVar(var)) {
       // This is not a local.
       return;
     }
     Var coalescedVar = colorings.peek().getPartitionSuperNode(var);
 
     if (!usePseudoNames) {
-      if (vNode.getValue().equals(coalescedVar)) {
+      if (var.equals(coalescedVar)) {
         // The coalesced name is itself, nothing to do.
         return;
       }
@@ -170,7 +168,7 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
 
         // Look for all the variables that can be merged (in the graph by now)
         // and it is merged with the current coalscedVar.
-        if (colorings.peek().getGraph().getNode(iVar) != null &&
+        if (colorings.peek().hasVar(iVar) &&
             coalescedVar.equals(colorings.peek().getPartitionSuperNode(iVar))) {
           allMergedNames.add(iVar.name);
         }
@@ -190,17 +188,19 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
       n.setString(pseudoName);
       compiler.reportCodeChange();
 
-      if (!vNode.getValue().equals(coalescedVar) && NodeUtil.isVar(parent)) {
+      if (!var.equals(coalescedVar) && NodeUtil.isVar(parent)) {
         removeVarDeclaration(n);
       }
     }
   }
 
-  private UndiGraph<Var, Void> computeVariableNamesInterferenceGraph(
+  private InterferenceGraph computeVariableNamesInterferenceGraph(
       NodeTraversal t, ControlFlowGraph<Node> cfg, Set<Var> escaped) {
-    UndiGraph<Var, Void> interferenceGraph =
-        LinkedUndirectedGraph.create();
     Scope scope = t.getScope();
+    InterferenceGraph interferenceGraph =
+        new InterferenceGraph(scope.getVarCount());
+    Map<String, Var> localsByName = Maps.newHashMap();
+    BitSet params = new BitSet();
 
     // First create a node for each non-escaped variable.
     for (Iterator<Var> i = scope.getVars(); i.hasNext();) {
@@ -214,81 +214,241 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
         // that is but, for now, we will respect the dead functions and not play
         // around with it.
         if (!NodeUtil.isFunction(v.getParentNode())) {
-          interferenceGraph.createNode(v);
+          interferenceGraph.addNode(v);
+          localsByName.put(v.getName(), v);
+          if (v.getParentNode().getType() == Token.LP) {
+            params.set(v.index);
+          }
         }
       }
     }
 
-    // Go through each variable and try to connect them.
-    for (Iterator<Var> i1 = scope.getVars(); i1.hasNext();) {
-      Var v1 = i1.next();
-
-      NEXT_VAR_PAIR:
-      for (Iterator<Var> i2 = scope.getVars(); i2.hasNext();) {
-        Var v2 = i2.next();
+    // Parameters always interfere with each other.
+    interferenceGraph.connectAll(params);
+
+    // Two variables interfere if they are both live on entry to or on exit
+    // from the same CFG node. Many CFG nodes share their live sets, so only
+    // look at each distinct set once.
+    Set<BitSet> liveSets = Sets.newHashSet();
+    List<DiGraphNode<Node, Branch>> cfgNodes = Lists.newArrayList();
+    for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
+      if (cfg.isImplicitReturn(cfgNode)) {
+        continue;
+      }
+      cfgNodes.add(cfgNode);
+      FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
+      liveSets.add(interferenceGraph.getNodes(state.getIn().getLiveSet()));
+      liveSets.add(interferenceGraph.getNodes(state.getOut().getLiveSet()));
+    }
+    for (BitSet live : liveSets) {
+      interferenceGraph.connectAll(live);
+    }
 
-        // Skip duplicate pairs.
-        if (v1.index >= v2.index) {
-          continue;
-        }
+    // The remaining pairs might not have an edge between them! woohoo.
+    // there's one last sanity check that we have to do: we have to check
+    // if there's a collision *within* the cfg node. That can only happen in
+    // a CFG node that assigns to one of the two variables.
+    List<List<DiGraphNode<Node, Branch>>> defNodes =
+        findDefinitionNodes(cfgNodes, localsByName, scope.getVarCount());
+    List<Var> vars = interferenceGraph.getVars();
+    for (int i1 = 0; i1 < vars.size(); i1++) {
+      Var v1 = vars.get(i1);
 
-        if (!interferenceGraph.hasNode(v1) ||
-            !interferenceGraph.hasNode(v2)) {
-          // Skip nodes that were not added. They are globals and escaped
-          // locals. Also avoid merging a variable with itself.
+      NEXT_VAR_PAIR:
+      for (int i2 = i1 + 1; i2 < vars.size(); i2++) {
+        Var v2 = vars.get(i2);
+        if (interferenceGraph.isConnected(v1, v2)) {
           continue NEXT_VAR_PAIR;
         }
 
-        if (v1.getParentNode().getType() == Token.LP &&
-            v2.getParentNode().getType() == Token.LP) {
-          interferenceGraph.connectIfNotFound(v1, null, v2);
-          continue NEXT_VAR_PAIR;
+        for (int k = 0; k < 2; k++) {
+          for (DiGraphNode<Node, Branch> cfgNode :
+                   defNodes.get((k == 0 ? v1 : v2).index)) {
+            FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
+            boolean v1OutLive = state.getOut().isLive(v1);
+            boolean v2OutLive = state.getOut().isLive(v2);
+            CombinedLiveRangeChecker checker = new CombinedLiveRangeChecker(
+                new LiveRangeChecker(v1, v2OutLive ? null : v2),
+                new LiveRangeChecker(v2, v1OutLive ? null : v1));
+            NodeTraversal.traverse(
+                compiler,
+                cfgNode.getValue(),
+                checker);
+            if (checker.connectIfCrossed(interferenceGraph)) {
+              continue NEXT_VAR_PAIR;
+            }
+          }
         }
+      }
+    }
+    return interferenceGraph;
+  }
 
-        // Go through every CFG node in the program and look at
-        // this variable pair. If they are both live at the same
-        // time, add an edge between them and continue to the next pair.
-        NEXT_CROSS_CFG_NODE:
-        for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
-          if (cfg.isImplicitReturn(cfgNode)) {
-            continue NEXT_CROSS_CFG_NODE;
+  /**
+   * Finds, for each local variable, the CFG nodes that assign to it, as
+   * {@link LiveRangeChecker} sees them.
+   */
+  private List<List<DiGraphNode<Node, Branch>>> findDefinitionNodes(
+      List<DiGraphNode<Node, Branch>> cfgNodes,
+      final Map<String, Var> localsByName, int varCount) {
+    final List<List<DiGraphNode<Node, Branch>>> defNodes =
+        Lists.newArrayListWithCapacity(varCount);
+    for (int i = 0; i < varCount; i++) {
+      defNodes.add(new ArrayList<DiGraphNode<Node, Branch>>(1));
+    }
+    for (final DiGraphNode<Node, Branch> cfgNode : cfgNodes) {
+      NodeTraversal.traverse(compiler, cfgNode.getValue(),
+          new AbstractCfgNodeTraversalCallback() {
+        @Override
+        public void visit(NodeTraversal t, Node n, Node parent) {
+          if (!LiveRangeChecker.shouldVisit(n)) {
+            return;
           }
-
-          FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
-          // Check the live states and add edge when possible.
-          if ((state.getIn().isLive(v1) && state.getIn().isLive(v2)) ||
-              (state.getOut().isLive(v1) && state.getOut().isLive(v2))) {
-            interferenceGraph.connectIfNotFound(v1, null, v2);
-            continue NEXT_VAR_PAIR;
+          Node name = NodeUtil.isName(n) ? n : n.getFirstChild();
+          Var v = localsByName.get(name.getString());
+          if (v != null && LiveRangeChecker.isAssignTo(v, n, parent)) {
+            List<DiGraphNode<Node, Branch>> nodes = defNodes.get(v.index);
+            if (nodes.isEmpty() || nodes.get(nodes.size() - 1) != cfgNode) {
+              nodes.add(cfgNode);
+            }
           }
         }
+      });
+    }
+    return defNodes;
+  }
 
-        // v1 and v2 might not have an edge between them! woohoo. there's
-        // one last sanity check that we have to do: we have to check
-        // if there's a collision *within* the cfg node.
-        NEXT_INTRA_CFG_NODE:
-        for (DiGraphNode<Node, Branch> cfgNode : cfg.getDirectedGraphNodes()) {
-          if (cfg.isImplicitReturn(cfgNode)) {
-            continue NEXT_INTRA_CFG_NODE;
-          }
+  /**
+   * The interference graph of the local variables of a function, stored as
+   * a bit matrix over variable indices.
+   */
+  private static class InterferenceGraph {
+    private final Var[] varsByIndex;
+    private final BitSet nodes;
+    private final BitSet[] adjacency;
+
+    InterferenceGraph(int varCount) {
+      varsByIndex = new Var[varCount];
+      nodes = new BitSet(varCount);
+      adjacency = new BitSet[varCount];
+    }
+
+    void addNode(Var v) {
+      varsByIndex[v.index] = v;
+      nodes.set(v.index);
+      adjacency[v.index] = new BitSet(varsByIndex.length);
+    }
+
+    boolean hasNode(Var v) {
+      return nodes.get(v.index);
+    }
+
+    /** Gets the variables in the graph, by index. */
+    List<Var> getVars() {
+      List<Var> vars = Lists.newArrayListWithCapacity(nodes.cardinality());
+      for (int i = nodes.nextSetBit(0); i >= 0; i = nodes.nextSetBit(i + 1)) {
+        vars.add(varsByIndex[i]);
+      }
+      return vars;
+    }
+
+    /** Returns the variables of the given set that are in the graph. */
+    BitSet getNodes(BitSet vars) {
+      BitSet result = (BitSet) vars.clone();
+      result.and(nodes);
+      return result;
+    }
+
+    boolean isConnected(Var v1, Var v2) {
+      return adjacency[v1.index].get(v2.index);
+    }
+
+    void connect(Var v1, Var v2) {
+      adjacency[v1.index].set(v2.index);
+      adjacency[v2.index].set(v1.index);
+    }
 
-          FlowState<LiveVariableLattice> state = cfgNode.getAnnotation();
-          boolean v1OutLive = state.getOut().isLive(v1);
-          boolean v2OutLive = state.getOut().isLive(v2);
-          CombinedLiveRangeChecker checker = new CombinedLiveRangeChecker(
-              new LiveRangeChecker(v1, v2OutLive ? null : v2),
-              new LiveRangeChecker(v2, v1OutLive ? null : v1));
-          NodeTraversal.traverse(
-              compiler,
-              cfgNode.getValue(),
-              checker);
-          if (checker.connectIfCrossed(interferenceGraph)) {
-            continue NEXT_VAR_PAIR;
+    /** Connects every two distinct variables of the given set. */
+    void connectAll(BitSet vars) {
+      for (int i = vars.nextSetBit(0); i >= 0; i = vars.nextSetBit(i + 1)) {
+        adjacency[i].or(vars);
+        adjacency[i].clear(i);
+      }
+    }
+
+    /**
+     * Colors the graph the way {@link GreedyGraphColoring} does: from the
+     * highest to the lowest degree, with ties broken by variable index,
+     * each variable gets the first color that none of its neighbors has.
+     */
+    Coloring color() {
+      List<Var> worklist = getVars();
+      Collections.sort(worklist, new Comparator<Var>() {
+        @Override
+        public int compare(Var v1, Var v2) {
+          int result = adjacency[v2.index].cardinality() -
+              adjacency[v1.index].cardinality();
+          return result == 0 ? coloringTieBreaker.compare(v1, v2) : result;
+        }
+      });
+
+      int[] colors = new int[varsByIndex.length];
+      Arrays.fill(colors, -1);
+      int count = 0;
+      BitSet colorNeighbors = new BitSet(varsByIndex.length);
+      do {
+        colorNeighbors.clear();
+        List<Var> remaining = Lists.newArrayList();
+        for (Var v : worklist) {
+          if (colorNeighbors.get(v.index)) {
+            remaining.add(v);
+          } else {
+            colors[v.index] = count;
+            colorNeighbors.or(adjacency[v.index]);
           }
         }
+        worklist = remaining;
+        count++;
+      } while (!worklist.isEmpty());
+      return new Coloring(varsByIndex, colors, count);
+    }
+  }
+
+  /**
+   * A coloring of an interference graph, used as a partition of the
+   * variables.
+   */
+  private static class Coloring {
+    private final Var[] varsByIndex;
+    private final int[] colors;
+    private final Var[] colorToVar;
+
+    Coloring(Var[] varsByIndex, int[] colors, int count) {
+      this.varsByIndex = varsByIndex;
+      this.colors = colors;
+      this.colorToVar = new Var[count];
+    }
+
+    /** Whether the variable is in the colored graph. */
+    boolean hasVar(Var v) {
+      return v != null && v.index < varsByIndex.length &&
+          varsByIndex[v.index] == v;
+    }
+
+    /**
+     * Using the coloring as partitions, finds the variable that represents
+     * that partition. The first to retrieve its partition will become the
+     * representative.
+     */
+    Var getPartitionSuperNode(Var v) {
+      int color = colors[v.index];
+      Var head = colorToVar[color];
+      if (head == null) {
+        colorToVar[color] = v;
+        return v;
       }
+      return head;
     }
-    return interferenceGraph;
   }
 
   /**
@@ -317,11 +477,11 @@ class CoalesceVariableNames extends AbstractPostOrderCallback implements
       }
     }
 
-    boolean connectIfCrossed(UndiGraph<Var, Void> interferenceGraph) {
+    boolean connectIfCrossed(InterferenceGraph interferenceGraph) {
       if (callback1.crossed || callback2.crossed) {
         Var v1 = callback1.getDef();
         Var v2 = callback2.getDef();
-        interferenceGraph.connectIfNotFound(v1, null, v2);
+        interferenceGraph.connect(v1, v2);
         return true;
       }
       return false;
@@ -18,6 +18,7 @@ package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
 import com.google.debugging.sourcemap.FilePosition;
+import com.google.javascript.jscomp.Compiler.CodeBuilder;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
@@ -51,6 +52,13 @@ class CodePrinter {
     final private SourceMap.DetailLevel sourceMapDetailLevel;
     protected final StringBuilder code = new StringBuilder(1024);
     protected final int lineLengthThreshold;
+    // Where the finished lines of code are written, or null if all of the
+    // code is kept in the code buffer.
+    private CodeBuilder output = null;
+    // The number of characters that have been written to the output and
+    // removed from the start of the code buffer.
+    private int flushedLength = 0;
+    private char lastFlushedChar = '\0';
     protected int lineLength = 0;
     protected int lineIndex = 0;
 
@@ -122,10 +130,9 @@ class CodePrinter {
 
     /**
      * Generates the source map from the given code consumer,
-     * appending the information it saved to the SourceMap
-     * object given.
+     * appending the information it saved to the given sink.
      */
-    void generateSourceMap(SourceMap map){
+    void generateSourceMap(MappingSink map){
       if (createSrcMap) {
         for (Mapping mapping : allMappings) {
           map.addMapping(mapping.node, mapping.start, mapping.end);
@@ -179,9 +186,60 @@ class CodePrinter {
       return code.toString();
     }
 
+    /**
+     * Makes the printer write the code to the given builder, a line at a
+     * time, rather than keeping all of it in the code buffer.
+     */
+    void setOutput(CodeBuilder output) {
+      this.output = output;
+    }
+
+    /**
+     * Writes the code before the given position to the output, if there is
+     * one. Once a line is finished no more changes are made to it, so the
+     * code buffer only needs to hold the current line.
+     */
+    void flush(int position) {
+      int count = position - flushedLength;
+      if (output != null && count > 0) {
+        lastFlushedChar = code.charAt(count - 1);
+        output.append(code.substring(0, count));
+        code.delete(0, count);
+        flushedLength = position;
+      }
+    }
+
+    /**
+     * Returns the number of characters printed so far, including those that
+     * have been written to the output.
+     */
+    protected final int getLength() {
+      return flushedLength + code.length();
+    }
+
+    /**
+     * Returns the character at the given position, counted from the start
+     * of the printed code. Only the last character written to the output is
+     * still available.
+     */
+    protected final char charAt(int position) {
+      if (position == flushedLength - 1) {
+        return lastFlushedChar;
+      }
+      return code.charAt(position - flushedLength);
+    }
+
+    /**
+     * Inserts a character at the given position, counted from the start of
+     * the printed code. The position must be on the current line.
+     */
+    protected final void insert(int position, char c) {
+      code.insert(position - flushedLength, c);
+    }
+
     @Override
     char getLastChar() {
-      return (code.length() > 0) ? code.charAt(code.length() - 1) : '\0';
+      return (getLength() > 0) ? charAt(getLength() - 1) : '\0';
     }
 
     protected final int getCurrentCharIndex() {
@@ -240,6 +298,7 @@ class CodePrinter {
         code.append('\n');
         lineIndex++;
         lineLength = 0;
+        flush(getLength());
       }
     }
 
@@ -426,7 +485,8 @@ class CodePrinter {
         code.append('\n');
         lineLength = 0;
         lineIndex++;
-        lineStartPosition = code.length();
+        lineStartPosition = getLength();
+        flush(lineStartPosition);
       }
     }
 
@@ -442,9 +502,9 @@ class CodePrinter {
       // Since we are at a legal line break, can we upgrade the
       // preferred break position?  We prefer to break after a
       // semicolon rather than before it.
-      int len = code.length();
+      int len = getLength();
       if (preferredBreakPosition == len - 1) {
-        char ch = code.charAt(len - 1);
+        char ch = charAt(len - 1);
         if (ch == ';') {
           preferredBreakPosition = len;
         }
@@ -463,11 +523,12 @@ class CodePrinter {
         if (preferredBreakPosition > lineStartPosition &&
             preferredBreakPosition < lineStartPosition + lineLength) {
           int position = preferredBreakPosition;
-          code.insert(position, '\n');
+          insert(position, '\n');
           reportLineCut(lineIndex, position - lineStartPosition);
           lineIndex++;
           lineLength -= (position - lineStartPosition);
           lineStartPosition = position + 1;
+          flush(lineStartPosition);
         } else {
           startNewLine();
         }
@@ -476,7 +537,7 @@ class CodePrinter {
 
     @Override
     void notePreferredLineBreak() {
-      preferredBreakPosition = code.length();
+      preferredBreakPosition = getLength();
     }
   }
 
@@ -486,7 +547,7 @@ class CodePrinter {
     private boolean lineBreak = false;
     private boolean outputTypes = false;
     private int lineLengthThreshold = DEFAULT_LINE_LENGTH_THRESHOLD;
-    private SourceMap sourceMap = null;
+    private MappingSink sourceMap = null;
     private SourceMap.DetailLevel sourceMapDetailLevel =
         SourceMap.DetailLevel.ALL;
     // Specify a charset to use when outputting source code.  If null,
@@ -544,9 +605,9 @@ class CodePrinter {
      * Sets the source map to which to write the metadata about
      * the generated source code.
      *
-     * @param sourceMap The source map.
+     * @param sourceMap The source map, or any other sink for the mappings.
      */
-    Builder setSourceMap(SourceMap sourceMap) {
+    Builder setSourceMap(MappingSink sourceMap) {
       this.sourceMap = sourceMap;
       return this;
     }
@@ -581,6 +642,20 @@ class CodePrinter {
      * Generates the source code and returns it.
      */
     String build() {
+      return build(null);
+    }
+
+    /**
+     * Generates the source code and appends it to the given builder. Each
+     * line is appended as soon as it is finished, so the code is never held
+     * in memory as a whole.
+     */
+    void buildTo(CodeBuilder output) {
+      Preconditions.checkNotNull(output);
+      build(output);
+    }
+
+    private String build(CodeBuilder output) {
       if (root == null) {
         throw new IllegalStateException(
             "Cannot build without root node being specified");
@@ -593,7 +668,8 @@ class CodePrinter {
               : Format.COMPACT;
 
       return toSource(root, outputFormat, lineBreak, lineLengthThreshold,
-          sourceMap, sourceMapDetailLevel, outputCharset, tagAsStrict);
+          sourceMap, sourceMapDetailLevel, outputCharset, tagAsStrict,
+          output);
     }
   }
 
@@ -605,13 +681,17 @@ class CodePrinter {
 
   /**
    * Converts a tree to js code
+   *
+   * @param output The builder to append the code to as it is printed, or
+   *     null to return all of the code.
    */
   private static String toSource(Node root, Format outputFormat,
                                  boolean lineBreak,  int lineLengthThreshold,
-                                 SourceMap sourceMap,
+                                 MappingSink sourceMap,
                                  SourceMap.DetailLevel sourceMapDetailLevel,
                                  Charset outputCharset,
-                                 boolean tagAsStrict) {
+                                 boolean tagAsStrict,
+                                 CodeBuilder output) {
     Preconditions.checkState(sourceMapDetailLevel != null);
 
     boolean createSourceMap = (sourceMap != null);
@@ -622,6 +702,9 @@ class CodePrinter {
             createSourceMap, sourceMapDetailLevel)
         : new PrettyCodePrinter(
             lineLengthThreshold, createSourceMap, sourceMapDetailLevel);
+    if (output != null) {
+      mcp.setOutput(output);
+    }
     CodeGenerator cg =
         outputFormat == Format.TYPED
         ? new TypedCodeGenerator(mcp, outputCharset)
@@ -633,6 +716,7 @@ class CodePrinter {
 
     cg.add(root);
     mcp.endFile();
+    mcp.flush(mcp.getLength());
 
     String code = mcp.getCode();
 
@@ -37,19 +37,31 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 import com.google.javascript.rhino.jstype.JSTypeRegistry;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.Nullable;
+
 /**
  * Compiler (and the other classes in this package) does the following:
  * <ul>
@@ -121,6 +133,9 @@ public class Compiler extends AbstractCompiler {
   /** Whether to use threads. */
   private boolean useThreads = true;
 
+  /** Threads for parallel compiler passes, created on first use. */
+  private ExecutorService workerPool;
+
   /**
    * Whether to assume there are references to the RegExp Global object
    * properties.
@@ -138,6 +153,7 @@ public class Compiler extends AbstractCompiler {
 
   private JSTypeRegistry typeRegistry;
   private Config parserConfig = null;
+  private AstCache astCache = null;
 
   private ReverseAbstractInterpreter abstractInterpreter;
   private TypeValidator typeValidator;
@@ -553,6 +569,76 @@ public class Compiler extends AbstractCompiler {
     });
   }
 
+  /**
+   * Replaces an input of a finished compile with a new version of it, for
+   * clients that keep a compiler around and update it as files change. Only
+   * the new version is parsed, and only the checks that can be hot-swapped
+   * are rerun, on its script alone. The code of the module that contains it
+   * can then be regenerated with {@link #toSource(JSModule)}.
+   *
+   * <p>This only works on a compile that has not been optimized, such as one
+   * in {@link CompilerOptions#ideMode}. If the new version does not parse,
+   * the old one is kept.
+   *
+   * @return The result of the update. Its errors and warnings are the ones
+   *     found in the new version of the input; those of the full compile and
+   *     of earlier updates are not repeated.
+   */
+  public Result replaceScript(final JSSourceFile sourceFile) {
+    Preconditions.checkState(jsRoot != null, "Nothing has been compiled");
+    Preconditions.checkState(!getLifeCycleStage().isNormalized(),
+        "Scripts cannot be replaced after optimizations have run");
+    return runInCompilerThread(new Callable<Result>() {
+      public Result call() throws Exception {
+        ErrorManager fullErrorManager = errorManager;
+        errorManager = new HotSwapErrorManager();
+        try {
+          replaceScriptInternal(sourceFile);
+          return getResult();
+        } finally {
+          errorManager = fullErrorManager;
+        }
+      }
+    });
+  }
+
+  private void replaceScriptInternal(JSSourceFile sourceFile) {
+    Tracer tracer = newTracer("replaceScript");
+    try {
+      JsAst ast = new JsAst(sourceFile);
+      Node script = ast.getAstRoot(this);
+      // Only the errors of this update have been reported so far.
+      if (getErrorCount() > 0 || !replaceIncrementalSourceAst(ast)) {
+        return;
+      }
+      annotateSourceInformation(getInput(sourceFile.getName()), script);
+      reportCodeChange();
+
+      for (PassFactory factory : getPassConfig().getChecks()) {
+        HotSwapCompilerPass pass = factory.getHotSwapPass(this);
+        if (pass != null) {
+          startPass(factory.getName());
+          pass.hotSwapScript(script);
+          endPass();
+        }
+      }
+    } finally {
+      stopTracer(tracer, "replaceScript");
+    }
+  }
+
+  /**
+   * Collects the errors and warnings of a {@link #replaceScript} call, which
+   * are returned rather than printed.
+   */
+  private static class HotSwapErrorManager extends BasicErrorManager {
+    @Override
+    public void println(CheckLevel level, JSError error) {}
+
+    @Override
+    protected void printSummary() {}
+  }
+
   /**
    * Disable threads. This is for clients that run on AppEngine and
    * don't have threads.
@@ -622,6 +708,28 @@ public class Compiler extends AbstractCompiler {
     return (T) result[0];
   }
 
+  /**
+   * Creates daemon threads with the same large stack as the compiler thread,
+   * for work that is farmed out to a pool.
+   */
+  private static class LargeStackThreadFactory implements ThreadFactory {
+    private final String namePrefix;
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    LargeStackThreadFactory(String namePrefix) {
+      this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread th = new Thread(null, runnable,
+          namePrefix + "-" + threadCount.incrementAndGet(),
+          COMPILER_STACK_SIZE);
+      th.setDaemon(true);
+      return th;
+    }
+  }
+
   private void compileInternal() {
     parse();
     if (hasErrors()) {
@@ -1022,6 +1130,10 @@ public class Compiler extends AbstractCompiler {
 
     CompilerInput newInput = new CompilerInput(ast);
     inputsByName.put(sourceName, newInput);
+    int index = inputs.indexOf(oldInput);
+    if (index != -1) {
+      inputs.set(index, newInput);
+    }
 
     JSModule module = oldInput.getModule();
     if (module != null) {
@@ -1120,6 +1232,7 @@ public class Compiler extends AbstractCompiler {
 
     try {
       // Parse externs sources.
+      parseInParallel(externs);
       for (CompilerInput input : externs) {
         Node n = input.getAstRoot(this);
         if (hasErrors()) {
@@ -1156,6 +1269,8 @@ public class Compiler extends AbstractCompiler {
         }
       }
 
+      parseInParallel(inputs);
+
       // Check if inputs need to be rebuilt from modules.
       boolean staleInputs = false;
       for (CompilerInput input : inputs) {
@@ -1205,17 +1320,7 @@ public class Compiler extends AbstractCompiler {
           }
         }
 
-        if (options.sourceMapOutputPath != null ||
-            options.nameReferenceReportPath != null) {
-
-          // Annotate the nodes in the tree with information from the
-          // input file. This information is used to construct the SourceMap.
-          SourceInformationAnnotator sia =
-              new SourceInformationAnnotator(
-                  input.getName(), options.devMode != DevMode.OFF);
-          NodeTraversal.traverse(this, n, sia);
-        }
-
+        annotateSourceInformation(input, n);
         jsRoot.addChildToBack(n);
       }
 
@@ -1228,6 +1333,92 @@ public class Compiler extends AbstractCompiler {
     }
   }
 
+  /**
+   * Annotates the nodes in the tree with information from the input file,
+   * if it is needed to construct the SourceMap or the name reference report.
+   */
+  private void annotateSourceInformation(CompilerInput input, Node root) {
+    if (options.sourceMapOutputPath != null ||
+        options.nameReferenceReportPath != null) {
+      SourceInformationAnnotator sia =
+          new SourceInformationAnnotator(
+              input.getName(), options.devMode != DevMode.OFF);
+      NodeTraversal.traverse(this, root, sia);
+    }
+  }
+
+  /**
+   * Parses the given inputs on the compiler's worker pool, if more than
+   * one parse thread is configured. At most {@code parseThreads} inputs are
+   * parsed at once. Each input's tree and parse errors are handed over when
+   * its AST is first requested, so the serial loops in {@link #parseInputs}
+   * still see errors and trees in input order.
+   */
+  private void parseInParallel(List<CompilerInput> toParse) {
+    int numThreads = Math.min(options.parseThreads, toParse.size());
+    ExecutorService pool = getWorkerPool();
+    if (pool == null || numThreads < 2) {
+      return;
+    }
+
+    final List<JsAst> asts = Lists.newArrayList();
+    for (CompilerInput input : toParse) {
+      SourceAst ast = input.getSourceAst();
+      if (ast instanceof JsAst) {
+        asts.add((JsAst) ast);
+      }
+    }
+
+    // Make sure lazily-initialized state is created before the workers
+    // start reading it.
+    getParserConfig();
+    getAstCache();
+    getCodingConvention();
+
+    Tracer tracer = newTracer("parseInParallel");
+    try {
+      // Each task keeps taking the next unparsed input, so no more than
+      // numThreads parses run at once on the shared pool.
+      final AtomicInteger next = new AtomicInteger();
+      List<Future<?>> results = Lists.newArrayList();
+      for (int i = 0; i < numThreads; i++) {
+        results.add(pool.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (int j = next.getAndIncrement(); j < asts.size();
+                 j = next.getAndIncrement()) {
+              asts.get(j).parseInBackground(Compiler.this);
+            }
+          }
+        }));
+      }
+
+      waitForAll(results);
+    } finally {
+      stopTracer(tracer, "parseInParallel");
+    }
+  }
+
+  /**
+   * Waits for all of the given tasks to finish, rethrowing the first
+   * failure. Interrupts are ignored, as the callers need the results of
+   * every task.
+   */
+  private static void waitForAll(List<Future<?>> futures) {
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException ignore) {
+          // ignore, the task has to be finished either way.
+        } catch (ExecutionException e) {
+          throw new RuntimeException(e.getCause());
+        }
+      }
+    }
+  }
+
   public Node parse(JSSourceFile file) {
     initCompilerOptionsIfTesting();
     addToDebugLog("Parsing: " + file.getName());
@@ -1286,14 +1477,7 @@ public class Compiler extends AbstractCompiler {
         Tracer tracer = newTracer("toSource");
         try {
           CodeBuilder cb = new CodeBuilder();
-          if (jsRoot != null) {
-            int i = 0;
-            for (Node scriptNode = jsRoot.getFirstChild();
-                 scriptNode != null;
-                 scriptNode = scriptNode.getNext()) {
-              toSource(cb, i++, scriptNode);
-            }
-          }
+          toSource(cb, getScripts());
           return cb.toString();
         } finally {
           stopTracer(tracer, "toSource");
@@ -1302,6 +1486,42 @@ public class Compiler extends AbstractCompiler {
     });
   }
 
+  /**
+   * Converts the main parse tree back to js code, and writes it to the given
+   * output as it is printed. Unless the inputs are printed on more than one
+   * thread, only the line being printed is held in memory.
+   */
+  public void toSource(final Appendable out) throws IOException {
+    final CodeBuilder cb = new CodeBuilder(out);
+    runInCompilerThread(new Callable<Void>() {
+      public Void call() throws Exception {
+        Tracer tracer = newTracer("toSource");
+        try {
+          toSource(cb, getScripts());
+          return null;
+        } finally {
+          stopTracer(tracer, "toSource");
+        }
+      }
+    });
+    cb.checkError();
+  }
+
+  /**
+   * Returns the SCRIPT nodes of the main parse tree.
+   */
+  private List<Node> getScripts() {
+    List<Node> scripts = Lists.newArrayList();
+    if (jsRoot != null) {
+      for (Node scriptNode = jsRoot.getFirstChild();
+           scriptNode != null;
+           scriptNode = scriptNode.getNext()) {
+        scripts.add(scriptNode);
+      }
+    }
+    return scripts;
+  }
+
   /**
    * Converts the parse tree for each input back to js code.
    */
@@ -1312,11 +1532,16 @@ public class Compiler extends AbstractCompiler {
         try {
           int numInputs = inputs.size();
           String[] sources = new String[numInputs];
+          List<Node> scripts = Lists.newArrayListWithCapacity(numInputs);
+          for (int i = 0; i < numInputs; i++) {
+            scripts.add(inputs.get(i).getAstRoot(Compiler.this));
+          }
+          List<PrintedScript> printed = printInParallel(scripts);
           CodeBuilder cb = new CodeBuilder();
           for (int i = 0; i < numInputs; i++) {
-            Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
             cb.reset();
-            toSource(cb, i, scriptNode);
+            toSource(cb, i, scripts.get(i),
+                printed == null ? null : printed.get(i));
             sources[i] = cb.toString();
           }
           return sources;
@@ -1333,25 +1558,58 @@ public class Compiler extends AbstractCompiler {
   public String toSource(final JSModule module) {
     return runInCompilerThread(new Callable<String>() {
       public String call() throws Exception {
-        List<CompilerInput> inputs = module.getInputs();
-        int numInputs = inputs.size();
-        if (numInputs == 0) {
-          return "";
-        }
         CodeBuilder cb = new CodeBuilder();
-        for (int i = 0; i < numInputs; i++) {
-          Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
-          if (scriptNode == null) {
-            throw new IllegalArgumentException(
-                "Bad module: " + module.getName());
-          }
-          toSource(cb, i, scriptNode);
-        }
+        toSource(cb, getScripts(module));
         return cb.toString();
       }
     });
   }
 
+  /**
+   * Converts the parse tree for a module back to js code, and writes it to
+   * the given output as it is printed. Unless the inputs are printed on more
+   * than one thread, only the line being printed is held in memory.
+   */
+  public void toSource(final Appendable out, final JSModule module)
+      throws IOException {
+    final CodeBuilder cb = new CodeBuilder(out);
+    runInCompilerThread(new Callable<Void>() {
+      public Void call() throws Exception {
+        toSource(cb, getScripts(module));
+        return null;
+      }
+    });
+    cb.checkError();
+  }
+
+  /**
+   * Returns the SCRIPT nodes of the inputs of a module.
+   */
+  private List<Node> getScripts(JSModule module) {
+    List<CompilerInput> inputs = module.getInputs();
+    List<Node> scripts = Lists.newArrayListWithCapacity(inputs.size());
+    for (CompilerInput input : inputs) {
+      Node scriptNode = input.getAstRoot(this);
+      if (scriptNode == null) {
+        throw new IllegalArgumentException(
+            "Bad module: " + module.getName());
+      }
+      scripts.add(scriptNode);
+    }
+    return scripts;
+  }
+
+  /**
+   * Writes out js code for the given SCRIPT nodes, one after another.
+   */
+  private void toSource(CodeBuilder cb, List<Node> scripts) {
+    List<PrintedScript> printed = printInParallel(scripts);
+    for (int i = 0; i < scripts.size(); i++) {
+      toSource(cb, i, scripts.get(i),
+          printed == null ? null : printed.get(i));
+    }
+  }
+
 
   /**
    * Converts the parse tree for each input in a module back to js code.
@@ -1365,17 +1623,23 @@ public class Compiler extends AbstractCompiler {
           return new String[0];
         }
 
-        String[] sources = new String[numInputs];
-        CodeBuilder cb = new CodeBuilder();
+        List<Node> scripts = Lists.newArrayListWithCapacity(numInputs);
         for (int i = 0; i < numInputs; i++) {
           Node scriptNode = inputs.get(i).getAstRoot(Compiler.this);
           if (scriptNode == null) {
             throw new IllegalArgumentException(
                 "Bad module input: " + inputs.get(i).getName());
           }
+          scripts.add(scriptNode);
+        }
+        List<PrintedScript> printed = printInParallel(scripts);
 
+        String[] sources = new String[numInputs];
+        CodeBuilder cb = new CodeBuilder();
+        for (int i = 0; i < numInputs; i++) {
           cb.reset();
-          toSource(cb, i, scriptNode);
+          toSource(cb, i, scripts.get(i),
+              printed == null ? null : printed.get(i));
           sources[i] = cb.toString();
         }
         return sources;
@@ -1395,60 +1659,136 @@ public class Compiler extends AbstractCompiler {
                        final Node root) {
     runInCompilerThread(new Callable<Void>() {
       public Void call() throws Exception {
-        if (options.printInputDelimiter) {
-          if ((cb.getLength() > 0) && !cb.endsWith("\n")) {
-            cb.append("\n");  // Make sure that the label starts on a new line
-          }
-          Preconditions.checkState(root.getType() == Token.SCRIPT);
+        toSource(cb, inputSeqNum, root, null);
+        return null;
+      }
+    });
+  }
 
-          String delimiter = options.inputDelimiter;
+  /**
+   * Like {@link #toSource(CodeBuilder, int, Node)}, but takes the code that
+   * {@link #printInParallel} printed for the root, if there is any.
+   */
+  private void toSource(CodeBuilder cb, int inputSeqNum, Node root,
+      @Nullable PrintedScript printed) {
+    if (options.printInputDelimiter) {
+      if ((cb.getLength() > 0) && cb.getLastChar() != '\n') {
+        cb.append("\n");  // Make sure that the label starts on a new line
+      }
+      Preconditions.checkState(root.getType() == Token.SCRIPT);
 
-          String sourceName = (String)root.getProp(Node.SOURCENAME_PROP);
-          Preconditions.checkState(sourceName != null);
-          Preconditions.checkState(!sourceName.isEmpty());
+      String delimiter = options.inputDelimiter;
 
-          delimiter = delimiter.replaceAll("%name%", sourceName)
-            .replaceAll("%num%", String.valueOf(inputSeqNum));
+      String sourceName = (String)root.getProp(Node.SOURCENAME_PROP);
+      Preconditions.checkState(sourceName != null);
+      Preconditions.checkState(!sourceName.isEmpty());
 
-          cb.append(delimiter)
-            .append("\n");
-        }
-        if (root.getJSDocInfo() != null &&
-            root.getJSDocInfo().getLicense() != null) {
-          cb.append("/*\n")
-            .append(root.getJSDocInfo().getLicense())
-            .append("*/\n");
-        }
+      delimiter = delimiter.replaceAll("%name%", sourceName)
+        .replaceAll("%num%", String.valueOf(inputSeqNum));
 
-        // If there is a valid source map, then indicate to it that the current
-        // root node's mappings are offset by the given string builder buffer.
-        if (options.sourceMapOutputPath != null) {
-          sourceMap.setStartingPosition(
-              cb.getLineIndex(), cb.getColumnIndex());
-        }
+      cb.append(delimiter)
+        .append("\n");
+    }
+    if (root.getJSDocInfo() != null &&
+        root.getJSDocInfo().getLicense() != null) {
+      cb.append("/*\n")
+        .append(root.getJSDocInfo().getLicense())
+        .append("*/\n");
+    }
+
+    // If there is a valid source map, then indicate to it that the current
+    // root node's mappings are offset by the given string builder buffer.
+    if (options.sourceMapOutputPath != null) {
+      sourceMap.setStartingPosition(
+          cb.getLineIndex(), cb.getColumnIndex());
+    }
+
+    // if LanguageMode is ECMASCRIPT5_STRICT, only print 'use strict'
+    // for the first input file
+    int start = cb.getLength();
+    if (printed == null) {
+      createCodePrinter(root, sourceMap, inputSeqNum == 0).buildTo(cb);
+    } else {
+      cb.append(printed.code);
+      if (printed.mappings != null) {
+        printed.mappings.addMappingsTo(sourceMap);
+      }
+    }
+    int length = cb.getLength() - start;
+    if (length > 0) {
+      // In order to avoid parse ambiguity when files are concatenated
+      // together, all files should end in a semi-colon. Do a quick
+      // heuristic check if there's an obvious semi-colon already there.
+      char lastChar = cb.getLastChar();
+      char secondLastChar = length >= 2 ?
+          cb.getSecondLastChar() : '\0';
+      boolean hasSemiColon = lastChar == ';' ||
+          (lastChar == '\n' && secondLastChar == ';');
+      if (!hasSemiColon) {
+        cb.append(";");
+      }
+    }
+  }
+
+  /**
+   * The code printed for a SCRIPT node, and the source mappings recorded
+   * while printing it, relative to the start of the code.
+   */
+  private static class PrintedScript {
+    final String code;
+    final SourceMap.MappingBuffer mappings;
 
-        // if LanguageMode is ECMASCRIPT5_STRICT, only print 'use strict'
-        // for the first input file
-        String code = toSource(root, sourceMap, inputSeqNum == 0);
-        if (!code.isEmpty()) {
-          cb.append(code);
-
-          // In order to avoid parse ambiguity when files are concatenated
-          // together, all files should end in a semi-colon. Do a quick
-          // heuristic check if there's an obvious semi-colon already there.
-          int length = code.length();
-          char lastChar = code.charAt(length - 1);
-          char secondLastChar = length >= 2 ?
-              code.charAt(length - 2) : '\0';
-          boolean hasSemiColon = lastChar == ';' ||
-              (lastChar == '\n' && secondLastChar == ';');
-          if (!hasSemiColon) {
-            cb.append(";");
+    PrintedScript(String code, SourceMap.MappingBuffer mappings) {
+      this.code = code;
+      this.mappings = mappings;
+    }
+  }
+
+  /**
+   * Prints the given SCRIPT nodes on the worker pool, if more than one print
+   * thread is configured. Printing only reads the AST, so the scripts can be
+   * printed at the same time, each into its own buffer. Their source
+   * mappings are recorded and only added to the source map once the
+   * position of each script in the output is known.
+   *
+   * @return the code printed for each script, in the order given, or null if
+   *     the scripts should be printed one after another on this thread.
+   */
+  private List<PrintedScript> printInParallel(final List<Node> scripts) {
+    int numThreads = Math.min(options.printThreads, scripts.size());
+    ExecutorService pool = getWorkerPool();
+    if (pool == null || numThreads < 2) {
+      return null;
+    }
+
+    Tracer tracer = newTracer("printInParallel");
+    try {
+      // Each task keeps taking the next unprinted script, so no more than
+      // numThreads scripts are printed at once on the shared pool.
+      final PrintedScript[] printed = new PrintedScript[scripts.size()];
+      final AtomicInteger next = new AtomicInteger();
+      List<Future<?>> results = Lists.newArrayList();
+      for (int i = 0; i < numThreads; i++) {
+        results.add(pool.submit(new Runnable() {
+          @Override
+          public void run() {
+            for (int j = next.getAndIncrement(); j < printed.length;
+                 j = next.getAndIncrement()) {
+              Node script = scripts.get(j);
+              SourceMap.MappingBuffer mappings = sourceMap == null
+                  ? null : new SourceMap.MappingBuffer();
+              String code = Compiler.this.toSource(script, mappings, j == 0);
+              printed[j] = new PrintedScript(code, mappings);
+            }
           }
-        }
-        return null;
+        }));
       }
-    });
+
+      waitForAll(results);
+      return Arrays.asList(printed);
+    } finally {
+      stopTracer(tracer, "printInParallel");
+    }
   }
 
   /**
@@ -1464,7 +1804,16 @@ public class Compiler extends AbstractCompiler {
   /**
    * Generates JavaScript source code for an AST.
    */
-  private String toSource(Node n, SourceMap sourceMap, boolean firstOutput) {
+  private String toSource(
+      Node n, MappingSink sourceMap, boolean firstOutput) {
+    return createCodePrinter(n, sourceMap, firstOutput).build();
+  }
+
+  /**
+   * Creates a code printer for an AST, configured by the compiler options.
+   */
+  private CodePrinter.Builder createCodePrinter(
+      Node n, MappingSink sourceMap, boolean firstOutput) {
     CodePrinter.Builder builder = new CodePrinter.Builder(n);
     builder.setPrettyPrint(options.prettyPrint);
     builder.setLineBreak(options.lineBreak);
@@ -1478,26 +1827,60 @@ public class Compiler extends AbstractCompiler {
         Charset.forName(options.outputCharset) : null;
     builder.setOutputCharset(charset);
 
-    return builder.build();
+    return builder;
   }
 
   /**
    * Stores a buffer of text to which more can be appended.  This is just like a
    * StringBuilder except that we also track the number of lines.
+   *
+   * <p>A builder created with an output does not store the text, but writes
+   * it to the output as it is appended. Like a {@link java.io.PrintWriter},
+   * it stops writing after the first error, which {@link #checkError}
+   * reports.
    */
   public static class CodeBuilder {
     private final StringBuilder sb = new StringBuilder();
+    private final Appendable out;
+    private IOException error = null;
+    private int length = 0;
     private int lineCount = 0;
     private int colCount = 0;
+    private char lastChar = '\0';
+    private char secondLastChar = '\0';
+
+    public CodeBuilder() {
+      this(null);
+    }
+
+    /**
+     * Creates a builder that writes all text to the given output instead of
+     * storing it.
+     */
+    public CodeBuilder(Appendable out) {
+      this.out = out;
+    }
 
     /** Removes all text, but leaves the line count unchanged. */
     void reset() {
+      Preconditions.checkState(out == null);
       sb.setLength(0);
+      length = 0;
+      lastChar = '\0';
+      secondLastChar = '\0';
     }
 
     /** Appends the given string to the text buffer. */
     CodeBuilder append(String str) {
-      sb.append(str);
+      if (out == null) {
+        sb.append(str);
+      } else if (error == null) {
+        try {
+          out.append(str);
+        } catch (IOException e) {
+          error = e;
+        }
+      }
 
       // Adjust the line and column information for the new text.
       int index = -1;
@@ -1514,6 +1897,16 @@ public class Compiler extends AbstractCompiler {
         colCount = str.length() - (lastIndex + 1);
       }
 
+      int strLength = str.length();
+      if (strLength >= 2) {
+        secondLastChar = str.charAt(strLength - 2);
+        lastChar = str.charAt(strLength - 1);
+      } else if (strLength == 1) {
+        secondLastChar = lastChar;
+        lastChar = str.charAt(0);
+      }
+      length += strLength;
+
       return this;
     }
 
@@ -1525,7 +1918,7 @@ public class Compiler extends AbstractCompiler {
 
     /** Returns the length of the text buffer. */
     public int getLength() {
-      return sb.length();
+      return length;
     }
 
     /** Returns the (zero-based) index of the last line in the text buffer. */
@@ -1538,10 +1931,26 @@ public class Compiler extends AbstractCompiler {
       return colCount;
     }
 
-    /** Determines whether the text ends with the given suffix. */
-    boolean endsWith(String suffix) {
-      return (sb.length() > suffix.length())
-          && suffix.equals(sb.substring(sb.length() - suffix.length()));
+    /** Returns the last character of the text, or 0 if there is none. */
+    char getLastChar() {
+      return lastChar;
+    }
+
+    /**
+     * Returns the second to last character of the text, or 0 if there is
+     * none.
+     */
+    char getSecondLastChar() {
+      return secondLastChar;
+    }
+
+    /**
+     * Throws the first exception that writing to the output caused, if any.
+     */
+    void checkError() throws IOException {
+      if (error != null) {
+        throw error;
+      }
     }
   }
 
@@ -1637,6 +2046,27 @@ public class Compiler extends AbstractCompiler {
   private final List<CodeChangeHandler> codeChangeHandlers =
       Lists.<CodeChangeHandler>newArrayList();
 
+  // The number of code changes reported so far.
+  private int changeStamp = 0;
+
+  // The change stamp of the last change that may have been anywhere.
+  private int lastUnscopedChange = 0;
+
+  // The change stamp of the last change to each outermost function since
+  // then.
+  private final Map<Node, Integer> functionChangeStamps =
+      Maps.newIdentityHashMap();
+
+  // The definition finder shared by passes since the last code change, and
+  // the roots it was built for.
+  private SimpleDefinitionFinder sharedDefinitionFinder = null;
+  private Node sharedDefinitionFinderExterns = null;
+  private Node sharedDefinitionFinderRoot = null;
+
+  // The syntactic scopes shared by passes, invalidated by code changes.
+  private final SyntacticScopeCache syntacticScopeCache =
+      new SyntacticScopeCache(this);
+
   @Override
   void addChangeHandler(CodeChangeHandler handler) {
     codeChangeHandlers.add(handler);
@@ -1654,11 +2084,77 @@ public class Compiler extends AbstractCompiler {
    */
   @Override
   public void reportCodeChange() {
+    lastUnscopedChange = ++changeStamp;
+    // Any function has changed since a stamp older than this one, so the
+    // older function stamps are no longer needed.
+    functionChangeStamps.clear();
+    sharedDefinitionFinder = null;
+    syntacticScopeCache.clear();
+    notifyChangeHandlers();
+  }
+
+  @Override
+  void reportChangeToFunction(Node function) {
+    changeStamp++;
+    if (function != null) {
+      functionChangeStamps.put(getOutermostFunction(function), changeStamp);
+    } else {
+      syntacticScopeCache.invalidateGlobalScopes();
+    }
+    sharedDefinitionFinder = null;
+    notifyChangeHandlers();
+  }
+
+  private void notifyChangeHandlers() {
     for (CodeChangeHandler handler : codeChangeHandlers) {
       handler.reportChange();
     }
   }
 
+  @Override
+  int getChangeStamp() {
+    return changeStamp;
+  }
+
+  @Override
+  boolean hasFunctionChangedSince(Node function, int stamp) {
+    if (lastUnscopedChange > stamp) {
+      return true;
+    }
+    Integer functionStamp =
+        functionChangeStamps.get(getOutermostFunction(function));
+    return functionStamp != null && functionStamp > stamp;
+  }
+
+  @Override
+  SimpleDefinitionFinder getDefinitionFinder(Node externs, Node root) {
+    if (sharedDefinitionFinder == null
+        || sharedDefinitionFinderExterns != externs
+        || sharedDefinitionFinderRoot != root) {
+      SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(this);
+      defFinder.process(externs, root);
+      sharedDefinitionFinder = defFinder;
+      sharedDefinitionFinderExterns = externs;
+      sharedDefinitionFinderRoot = root;
+    }
+    return sharedDefinitionFinder;
+  }
+
+  @Override
+  ScopeCreator getSyntacticScopeCreator() {
+    return syntacticScopeCache;
+  }
+
+  private static Node getOutermostFunction(Node function) {
+    Node outermost = function;
+    for (Node n = function.getParent(); n != null; n = n.getParent()) {
+      if (NodeUtil.isFunction(n)) {
+        outermost = n;
+      }
+    }
+    return outermost;
+  }
+
   @Override
   public CodingConvention getCodingConvention() {
     CodingConvention convention = options.getCodingConvention();
@@ -1716,6 +2212,33 @@ public class Compiler extends AbstractCompiler {
     return parserConfig;
   }
 
+  @Override
+  AstCache getAstCache() {
+    if (astCache == null && options.astCacheDirectory != null) {
+      astCache = new AstCache(new File(options.astCacheDirectory));
+    }
+    return astCache;
+  }
+
+  @Override
+  synchronized ExecutorService getWorkerPool() {
+    if (!useThreads) {
+      return null;
+    }
+    if (workerPool == null) {
+      // Idle threads time out, so a compiler that is no longer used does
+      // not keep any threads alive.
+      int numThreads = Runtime.getRuntime().availableProcessors();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(
+          numThreads, numThreads, 10, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new LargeStackThreadFactory("jscompiler-worker"));
+      pool.allowCoreThreadTimeOut(true);
+      workerPool = pool;
+    }
+    return workerPool;
+  }
+
   @Override
   public boolean isTypeCheckingEnabled() {
     return options.checkTypes;
@@ -106,6 +106,18 @@ public class CompilerOptions implements Serializable, Cloneable {
   boolean manageClosureDependencies = false;
   List<String> manageClosureDependenciesEntryPoints = ImmutableList.of();
 
+  /**
+   * The number of threads used to parse inputs. With fewer than 2, every
+   * input is parsed on the compiler thread.
+   */
+  int parseThreads = 1;
+
+  /**
+   * A directory in which parsed ASTs are cached across compiles, or null
+   * to always parse.
+   */
+  String astCacheDirectory = null;
+
   /** Returns localized replacement for MSG_* variables */
   // Transient so that clients don't have to implement Serializable.
   public transient MessageBundle messageBundle = null;
@@ -233,6 +245,12 @@ public class CompilerOptions implements Serializable, Cloneable {
   // Optimizations
   //--------------------------------
 
+  /**
+   * The number of threads that optimization passes which support it use to
+   * optimize separate functions at the same time.
+   */
+  int passThreads = 1;
+
   /** Folds constants (e.g. (2 + 3) to 5) */
   public boolean foldConstants;
 
@@ -623,6 +641,12 @@ public class CompilerOptions implements Serializable, Cloneable {
 
   int lineLengthThreshold = CodePrinter.DEFAULT_LINE_LENGTH_THRESHOLD;
 
+  /**
+   * The number of threads used to print the inputs back to code. With fewer
+   * than 2, every input is printed on the compiler thread.
+   */
+  int printThreads = 1;
+
   //--------------------------------
   // Special Output Options
   //--------------------------------
@@ -1133,6 +1157,40 @@ public class CompilerOptions implements Serializable, Cloneable {
     manageClosureDependenciesEntryPoints = entryPoints;
   }
 
+  /**
+   * Sets the number of threads used to parse the externs and inputs.
+   * Parse errors are still reported in input order.
+   */
+  public void setParseThreads(int parseThreads) {
+    this.parseThreads = parseThreads;
+  }
+
+  /**
+   * Sets a directory in which to cache parsed ASTs, keyed by the content of
+   * each input, so that unchanged inputs are not parsed again by later
+   * compiles. The directory is created if it does not exist.
+   */
+  public void setAstCacheDirectory(String astCacheDirectory) {
+    this.astCacheDirectory = astCacheDirectory;
+  }
+
+  /**
+   * Sets the number of threads that optimization passes which support it,
+   * such as the peephole optimizations, use to optimize separate functions
+   * at the same time. The output does not depend on the number of threads.
+   */
+  public void setPassThreads(int passThreads) {
+    this.passThreads = passThreads;
+  }
+
+  /**
+   * Sets the number of threads used to print separate inputs back to code
+   * at the same time. The output does not depend on the number of threads.
+   */
+  public void setPrintThreads(int printThreads) {
+    this.printThreads = printThreads;
+  }
+
   /**
    * Controls how detailed the compilation summary is. Values:
    *  0 (never print summary), 1 (print summary only if there are
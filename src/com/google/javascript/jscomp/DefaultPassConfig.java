@@ -19,6 +19,7 @@ package com.google.javascript.jscomp;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -132,6 +133,14 @@ public class DefaultPassConfig extends PassConfig {
   /** Id generator map */
   private String idGeneratorMap = null;
 
+  /**
+   * What the peephole passes remember between runs in the optimization
+   * loops. Replaced by each call to getOptimizations, so that nothing
+   * carries over from an earlier compile.
+   */
+  private PeepholeOptimizationsPass.History peepholeHistory = null;
+  private PeepholeOptimizationsPass.History latePeepholeHistory = null;
+
   public DefaultPassConfig(CompilerOptions options) {
     super(options);
   }
@@ -313,6 +322,8 @@ public class DefaultPassConfig extends PassConfig {
   @Override
   protected List<PassFactory> getOptimizations() {
     List<PassFactory> passes = Lists.newArrayList();
+    peepholeHistory = new PeepholeOptimizationsPass.History();
+    latePeepholeHistory = new PeepholeOptimizationsPass.History();
 
     // TODO(nicksantos): The order of these passes makes no sense, and needs
     // to be re-arranged.
@@ -931,12 +942,18 @@ public class DefaultPassConfig extends PassConfig {
       new PassFactory("peepholeOptimizations", false) {
     @Override
     protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new PeepholeOptimizationsPass(compiler,
-            new PeepholeSubstituteAlternateSyntax(true),
-            new PeepholeReplaceKnownMethods(),
-            new PeepholeRemoveDeadCode(),
-            new PeepholeFoldConstants(),
-            new PeepholeCollectPropertyAssignments());
+      return new PeepholeOptimizationsPass(compiler, options.passThreads,
+          new Supplier<AbstractPeepholeOptimization[]>() {
+            @Override
+            public AbstractPeepholeOptimization[] get() {
+              return new AbstractPeepholeOptimization[] {
+                  new PeepholeSubstituteAlternateSyntax(true),
+                  new PeepholeReplaceKnownMethods(),
+                  new PeepholeRemoveDeadCode(),
+                  new PeepholeFoldConstants(),
+                  new PeepholeCollectPropertyAssignments()};
+            }
+          }, peepholeHistory);
     }
   };
 
@@ -945,12 +962,18 @@ public class DefaultPassConfig extends PassConfig {
       new PassFactory("peepholeOptimizations", false) {
     @Override
     protected CompilerPass createInternal(AbstractCompiler compiler) {
-      return new PeepholeOptimizationsPass(compiler,
-            new StatementFusion(),
-            new PeepholeRemoveDeadCode(),
-            new PeepholeSubstituteAlternateSyntax(false),
-            new PeepholeReplaceKnownMethods(),
-            new PeepholeFoldConstants());
+      return new PeepholeOptimizationsPass(compiler, options.passThreads,
+          new Supplier<AbstractPeepholeOptimization[]>() {
+            @Override
+            public AbstractPeepholeOptimization[] get() {
+              return new AbstractPeepholeOptimization[] {
+                  new StatementFusion(),
+                  new PeepholeRemoveDeadCode(),
+                  new PeepholeSubstituteAlternateSyntax(false),
+                  new PeepholeReplaceKnownMethods(),
+                  new PeepholeFoldConstants()};
+            }
+          }, latePeepholeHistory);
     }
   };
 
@@ -997,7 +1020,7 @@ public class DefaultPassConfig extends PassConfig {
     @Override
     protected HotSwapCompilerPass createInternal(AbstractCompiler compiler) {
       return new VariableReferenceCheck(
-          compiler, options.aggressiveVarCheck);
+          compiler, options.aggressiveVarCheck, options.passThreads);
     }
   };
 
@@ -1466,7 +1489,7 @@ public class DefaultPassConfig extends PassConfig {
           throw new IllegalStateException("No variable inlining option set.");
         }
 
-        return new InlineVariables(compiler, mode, true);
+        return new InlineVariables(compiler, mode, true, options.passThreads);
       }
     }
   };
@@ -1477,7 +1500,8 @@ public class DefaultPassConfig extends PassConfig {
     @Override
     protected CompilerPass createInternal(AbstractCompiler compiler) {
       return new InlineVariables(
-          compiler, InlineVariables.Mode.CONSTANTS_ONLY, true);
+          compiler, InlineVariables.Mode.CONSTANTS_ONLY, true,
+          options.passThreads);
     }
   };
 
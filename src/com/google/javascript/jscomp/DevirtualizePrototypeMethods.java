@@ -79,8 +79,8 @@ class DevirtualizePrototypeMethods
 
   @Override
   public void process(Node externs, Node root) {
-    SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(compiler);
-    defFinder.process(externs, root);
+    SimpleDefinitionFinder defFinder =
+        compiler.getDefinitionFinder(externs, root);
     process(externs, root, defFinder);
   }
 
@@ -70,21 +70,38 @@ class InlineVariables implements CompilerPass {
   // Inlines all strings, even if they increase the size of the gzipped binary.
   private final boolean inlineAllStrings;
 
+  // Maximum number of threads collecting references at once.
+  private final int numThreads;
+
   private final IdentifyConstants identifyConstants = new IdentifyConstants();
 
   InlineVariables(
       AbstractCompiler compiler,
       Mode mode,
       boolean inlineAllStrings) {
+    this(compiler, mode, inlineAllStrings, 1);
+  }
+
+  /**
+   * Constructor that collects the references of each script on up to
+   * {@code numThreads} threads at once. The inlining itself is done on the
+   * thread that runs the pass.
+   */
+  InlineVariables(
+      AbstractCompiler compiler,
+      Mode mode,
+      boolean inlineAllStrings,
+      int numThreads) {
     this.compiler = compiler;
     this.mode = mode;
     this.inlineAllStrings = inlineAllStrings;
+    this.numThreads = numThreads;
   }
 
   @Override
   public void process(Node externs, Node root) {
     ReferenceCollectingCallback callback = new ReferenceCollectingCallback(
-        compiler, new InliningBehavior(), getFilterForMode());
+        compiler, new InliningBehavior(), getFilterForMode(), numThreads);
     callback.process(externs, root);
   }
 
@@ -54,6 +54,10 @@ public class JSModule implements DependencyInfo, Serializable {
   private final List<JSModule> deps = new ArrayList<JSModule>();
 
   private int depth;
+
+  /** The position of this module in the module graph's dependency order. */
+  private int index;
+
   /**
    * Creates an instance.
    *
@@ -62,6 +66,7 @@ public class JSModule implements DependencyInfo, Serializable {
   public JSModule(String name) {
     this.name = name;
     this.depth = -1;
+    this.index = -1;
   }
 
   /** Gets the module name. */
@@ -289,4 +294,18 @@ public class JSModule implements DependencyInfo, Serializable {
   public int getDepth() {
     return depth;
   }
+
+  /**
+   * @param index the position of this module in dependency order
+   */
+  public void setIndex(int index) {
+    this.index = index;
+  }
+
+  /**
+   * @return the position of this module in dependency order
+   */
+  public int getIndex() {
+    return index;
+  }
 }
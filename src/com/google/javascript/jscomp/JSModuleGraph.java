@@ -22,7 +22,6 @@ import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.deps.SortedDependencies;
@@ -31,12 +30,12 @@ import com.google.javascript.jscomp.deps.SortedDependencies.MissingProvideExcept
 import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -57,19 +56,14 @@ public class JSModuleGraph {
    */
   private List<List<JSModule>> modulesByDepth;
 
+  /** The modules in dependency order, indexed by {@link JSModule#getIndex}. */
+  private final JSModule[] modulesByIndex;
+
   /**
-   * dependencyMap is a cache of dependencies that makes the dependsOn
-   * function faster.  Each map entry associates a starting
-   * JSModule with the set of JSModules that are transitively dependent on the
-   * starting module.
-   *
-   * If the cache returns null, then the entry hasn't been filled in for that
-   * module.
-   *
-   * dependencyMap should be filled from leaf to root so that
-   * getTransitiveDepsDeepestFirst can use its results directly.
+   * The transitive dependencies of each module, as a bit set over module
+   * indices. This makes the dependsOn function a single bit test.
    */
-  private Map<JSModule, Set<JSModule>> dependencyMap = Maps.newHashMap();
+  private final BitSet[] transitiveDeps;
 
   /**
    * Creates a module graph from a list of modules in dependency order.
@@ -82,23 +76,38 @@ public class JSModuleGraph {
    * Creates a module graph from a list of modules in dependency order.
    */
   public JSModuleGraph(List<JSModule> modulesInDepOrder) {
-    modules = Sets.newHashSetWithExpectedSize(modulesInDepOrder.size());
+    int moduleCount = modulesInDepOrder.size();
+    modules = Sets.newHashSetWithExpectedSize(moduleCount);
     modulesByDepth = Lists.newArrayList();
+    modulesByIndex = new JSModule[moduleCount];
+    transitiveDeps = new BitSet[moduleCount];
 
+    int index = 0;
     for (JSModule module : modulesInDepOrder) {
       int depth = 0;
+      BitSet deps = new BitSet(moduleCount);
       for (JSModule dep : module.getDependencies()) {
         int depDepth = dep.getDepth();
-        if (depDepth < 0) {
+        int depIndex = dep.getIndex();
+        // A module that was added to another graph has a depth and an
+        // index, so also check that the dependency was added to this one.
+        if (depDepth < 0 || depIndex < 0 || depIndex >= index
+            || modulesByIndex[depIndex] != dep) {
           throw new ModuleDependenceException(String.format(
               "Modules not in dependency order: %s preceded %s",
               module.getName(), dep.getName()),
               module, dep);
         }
         depth = Math.max(depth, depDepth + 1);
+        deps.set(depIndex);
+        deps.or(transitiveDeps[depIndex]);
       }
 
       module.setDepth(depth);
+      module.setIndex(index);
+      modulesByIndex[index] = module;
+      transitiveDeps[index] = deps;
+      index++;
       modules.add(module);
       if (depth == modulesByDepth.size()) {
         modulesByDepth.add(new ArrayList<JSModule>());
@@ -143,13 +152,21 @@ public class JSModuleGraph {
    * module never depends on itself, as that dependency would be cyclic.
    */
   public boolean dependsOn(JSModule src, JSModule m) {
-    Set<JSModule> deps = dependencyMap.get(src);
-    if (deps == null) {
-      deps = getTransitiveDepsDeepestFirst(src);
-      dependencyMap.put(src, deps);
-    }
+    return transitiveDeps[getIndex(src)].get(getIndex(m));
+  }
 
-    return deps.contains(m);
+  /**
+   * Gets the index of a module in this graph. A module only keeps the index
+   * it was given by the last graph it was added to, so this also checks that
+   * the module belongs to this graph.
+   */
+  private int getIndex(JSModule m) {
+    int index = m.getIndex();
+    Preconditions.checkArgument(
+        index >= 0 && index < modulesByIndex.length
+            && modulesByIndex[index] == m,
+        "Module %s is not in this graph", m.getName());
+    return index;
   }
 
   /**
@@ -162,22 +179,20 @@ public class JSModuleGraph {
    *     they have no common dependencies
    */
   JSModule getDeepestCommonDependency(JSModule m1, JSModule m2) {
-    int m1Depth = m1.getDepth();
-    int m2Depth = m2.getDepth();
-    // According our definition of depth, the result must have a strictly
-    // smaller depth than either m1 or m2.
-    for (int depth = Math.min(m1Depth, m2Depth) - 1; depth >= 0; depth--) {
-      List<JSModule> modulesAtDepth = modulesByDepth.get(depth);
-      // Look at the modules at this depth in reverse order, so that we use the
-      // original ordering of the modules to break ties (later meaning deeper).
-      for (int i = modulesAtDepth.size() - 1; i >= 0; i--) {
-        JSModule m = modulesAtDepth.get(i);
-        if (dependsOn(m1, m) && dependsOn(m2, m)) {
-          return m;
+    BitSet deps1 = transitiveDeps[getIndex(m1)];
+    BitSet deps2 = transitiveDeps[getIndex(m2)];
+    // Among the common dependencies with the greatest depth, use the original
+    // ordering of the modules to break ties (later meaning deeper).
+    JSModule deepest = null;
+    for (int i = deps1.nextSetBit(0); i >= 0; i = deps1.nextSetBit(i + 1)) {
+      if (deps2.get(i)) {
+        JSModule m = modulesByIndex[i];
+        if (deepest == null || m.getDepth() >= deepest.getDepth()) {
+          deepest = m;
         }
       }
     }
-    return null;
+    return deepest;
   }
 
   /**
@@ -220,26 +235,14 @@ public class JSModuleGraph {
    * @return The transitive dependencies of module {@code m}
    */
   Set<JSModule> getTransitiveDepsDeepestFirst(JSModule m) {
-    Set<JSModule> deps = dependencyMap.get(m);
-    if (deps != null) {
-      return deps;
+    Set<JSModule> deps = new TreeSet<JSModule>(new InverseDepthComparator());
+    BitSet bits = transitiveDeps[getIndex(m)];
+    for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+      deps.add(modulesByIndex[i]);
     }
-    deps = new TreeSet<JSModule>(new InverseDepthComparator());
-    addDeps(deps, m);
-    dependencyMap.put(m, deps);
     return deps;
   }
 
-  /**
-   * Adds a module's transitive dependencies to a set.
-   */
-  private void addDeps(Set<JSModule> deps, JSModule m) {
-    for (JSModule dep : m.getDependencies()) {
-      deps.add(dep);
-      addDeps(deps, dep);
-    }
-  }
-
   /**
    * Replaces any files that are found multiple times with a single instance in
    * the closest parent module that is common to all modules where it appears.
@@ -17,7 +17,9 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 
+import com.google.javascript.jscomp.mozilla.rhino.ErrorReporter;
 import com.google.javascript.jscomp.parsing.ParserRunner;
 
 import com.google.javascript.rhino.Node;
@@ -25,6 +27,7 @@ import com.google.javascript.rhino.Token;
 
 import java.io.IOException;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -39,6 +42,12 @@ public class JsAst implements SourceAst {
   private String fileName;
   private Node root;
 
+  // The result of a background parse, waiting to be installed on the
+  // compiler thread by getAstRoot.
+  private transient Node pendingRoot;
+  private transient List<JSError> pendingErrors;
+  private transient boolean pendingRootPrepared;
+
   public JsAst(SourceFile sourceFile) {
     this.sourceFile = sourceFile;
     this.fileName = sourceFile.getName();
@@ -47,14 +56,105 @@ public class JsAst implements SourceAst {
   @Override
   public Node getAstRoot(AbstractCompiler compiler) {
     if (root == null) {
-      createAst(compiler);
+      if (pendingErrors != null) {
+        finishBackgroundParse(compiler);
+      } else {
+        createAst(compiler);
+      }
     }
     return root;
   }
 
+  /**
+   * Parses the source file without reporting anything to the compiler, so
+   * that several files may be parsed on different threads at once. Parse
+   * errors are buffered, and both the errors and the tree are handed to the
+   * compiler when {@link #getAstRoot} is next called on the compiler thread.
+   *
+   * Does nothing if the file has already been parsed or cannot be read;
+   * in the latter case {@link #getAstRoot} reports the read error as usual.
+   */
+  void parseInBackground(AbstractCompiler compiler) {
+    if (root != null || pendingErrors != null) {
+      return;
+    }
+
+    String sourceName = sourceFile.getName();
+    String sourceStr;
+    try {
+      sourceStr = sourceFile.getCode();
+    } catch (IOException e) {
+      return;
+    }
+
+    List<JSError> errors = Lists.newArrayList();
+    Node newRoot = null;
+    try {
+      logger_.fine("Parsing in background: " + sourceName);
+      newRoot = runParser(compiler, sourceName, sourceStr,
+          RhinoErrorReporter.forNewRhino(errors));
+    } catch (IOException e) {
+      errors.add(JSError.make(AbstractCompiler.READ_ERROR, sourceName));
+    }
+
+    // Whether the tree is kept depends on errors in other files, so only
+    // prepare it here when this file is clean. Compiler#prepareAst is not
+    // used because it records timing in the shared tracer.
+    pendingRootPrepared = false;
+    if (newRoot != null && !hasErrors(errors)) {
+      new PrepareAst(compiler).process(null, newRoot);
+      pendingRootPrepared = true;
+    }
+    pendingRoot = newRoot;
+    pendingErrors = errors;
+  }
+
+  /**
+   * Runs the parser, or loads the tree from the compiler's AST cache if it
+   * has one.
+   */
+  private static Node runParser(AbstractCompiler compiler,
+      String sourceName, String sourceStr, ErrorReporter errorReporter) throws IOException {
+    AstCache cache = compiler.getAstCache();
+    if (cache != null) {
+      return cache.parse(sourceName, sourceStr, compiler.getParserConfig(),
+          errorReporter, logger_);
+    }
+    return ParserRunner.parse(sourceName, sourceStr,
+        compiler.getParserConfig(), errorReporter, logger_);
+  }
+
+  private static boolean hasErrors(List<JSError> errors) {
+    for (JSError error : errors) {
+      if (error.level == CheckLevel.ERROR) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void finishBackgroundParse(AbstractCompiler compiler) {
+    for (JSError error : pendingErrors) {
+      compiler.report(error);
+    }
+
+    root = pendingRoot;
+    if (root == null || compiler.hasHaltingErrors()) {
+      root = new Node(Token.BLOCK);
+    } else if (!pendingRootPrepared) {
+      compiler.prepareAst(root);
+    }
+    root.putProp(Node.SOURCENAME_PROP, fileName);
+
+    pendingRoot = null;
+    pendingErrors = null;
+  }
+
   @Override
   public void clearAst() {
     root = null;
+    pendingRoot = null;
+    pendingErrors = null;
     // While we're at it, clear out any saved text in the source file on
     // the assumption that if we're dumping the parse tree, then we probably
     // assume regenerating everything else is a smart idea also.
@@ -85,10 +185,8 @@ public class JsAst implements SourceAst {
       String sourceStr) {
     try {
       logger_.fine("Parsing: " + sourceName);
-      root = ParserRunner.parse(sourceName, sourceStr,
-          compiler.getParserConfig(),
-          compiler.getDefaultErrorReporter(),
-          logger_);
+      root = runParser(compiler, sourceName, sourceStr,
+          compiler.getDefaultErrorReporter());
     } catch (IOException e) {
       compiler.report(JSError.make(AbstractCompiler.READ_ERROR, sourceName));
     }
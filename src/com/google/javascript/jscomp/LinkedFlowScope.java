@@ -17,9 +17,9 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.PersistentHashMap.DifferenceVisitor;
 import com.google.javascript.jscomp.Scope.Var;
 import com.google.javascript.rhino.jstype.JSType;
 import com.google.javascript.rhino.jstype.SimpleSlot;
@@ -27,7 +27,7 @@ import com.google.javascript.rhino.jstype.StaticScope;
 import com.google.javascript.rhino.jstype.StaticSlot;
 
 import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -282,21 +282,15 @@ class LinkedFlowScope implements FlowScope {
         return true;
       }
 
-      Map<String, StaticSlot<JSType>> myFlowSlots = allFlowSlots();
-      Map<String, StaticSlot<JSType>> otherFlowSlots = that.allFlowSlots();
-
-      for (StaticSlot<JSType> slot : myFlowSlots.values()) {
-        if (diffSlots(slot, otherFlowSlots.get(slot.getName()))) {
-          return false;
-        }
-        otherFlowSlots.remove(slot.getName());
-      }
-      for (StaticSlot<JSType> slot : otherFlowSlots.values()) {
-        if (diffSlots(slot, myFlowSlots.get(slot.getName()))) {
-          return false;
-        }
-      }
-      return true;
+      return PersistentHashMap.visitDifferences(
+          allFlowSlots(), that.allFlowSlots(),
+          new DifferenceVisitor<String, StaticSlot<JSType>>() {
+            @Override
+            public boolean visit(String name,
+                StaticSlot<JSType> slotA, StaticSlot<JSType> slotB) {
+              return !diffSlots(slotA, slotB);
+            }
+          });
     }
     return false;
   }
@@ -305,7 +299,7 @@ class LinkedFlowScope implements FlowScope {
    * Determines whether two slots are meaningfully different for the
    * purposes of data flow analysis.
    */
-  private boolean diffSlots(StaticSlot<JSType> slotA,
+  private static boolean diffSlots(StaticSlot<JSType> slotA,
                             StaticSlot<JSType> slotB) {
     boolean aIsNull = slotA == null || slotA.getType() == null;
     boolean bIsNull = slotB == null || slotB.getType() == null;
@@ -336,23 +330,25 @@ class LinkedFlowScope implements FlowScope {
    * </code>
    * A FlowScope at FLOW POINT will return a slot for y, but not
    * a slot for x or z.
+   *
+   * The result shares structure with the symbols of the closest cache, so
+   * this only allocates in the number of slots defined since that cache.
    */
-  private Map<String, StaticSlot<JSType>> allFlowSlots() {
-    Map<String, StaticSlot<JSType>> slots = Maps.newHashMap();
+  private PersistentHashMap<String, StaticSlot<JSType>> allFlowSlots() {
+    // Add the slots oldest first, so that the last definition of each
+    // symbol wins.
+    List<LinkedFlowSlot> slots = Lists.newArrayList();
     for (LinkedFlowSlot slot = lastSlot;
          slot != null; slot = slot.parent) {
-      if (!slots.containsKey(slot.getName())) {
-        slots.put(slot.getName(), slot);
-      }
+      slots.add(slot);
     }
 
-    for (String key : cache.symbols.keySet()) {
-      if (!slots.containsKey(key)) {
-        slots.put(key, cache.symbols.get(key));
-      }
+    PersistentHashMap<String, StaticSlot<JSType>> result = cache.symbols;
+    for (int i = slots.size() - 1; i >= 0; i--) {
+      LinkedFlowSlot slot = slots.get(i);
+      result = result.plus(slot.getName(), slot);
     }
-
-    return slots;
+    return result;
   }
 
   /**
@@ -379,8 +375,9 @@ class LinkedFlowScope implements FlowScope {
     private final LinkedFlowScope linkedEquivalent;
 
     // All the symbols defined before this point in the local flow.
-    // May not include lazily declared qualified names.
-    private Map<String, StaticSlot<JSType>> symbols = Maps.newHashMap();
+    // May not include lazily declared qualified names. Caches that flow
+    // from one another share most of this map.
+    private final PersistentHashMap<String, StaticSlot<JSType>> symbols;
 
     // Used to help make lookup faster for LinkedFlowScopes by recording
     // symbols that may be redefined "soon", for an arbitrary definition
@@ -395,7 +392,7 @@ class LinkedFlowScope implements FlowScope {
     // The cache at the bottom of the lattice.
     FlatFlowScopeCache(Scope functionScope) {
       this.functionScope = functionScope;
-      symbols = ImmutableMap.of();
+      symbols = PersistentHashMap.empty();
       linkedEquivalent = null;
     }
 
@@ -418,11 +415,49 @@ class LinkedFlowScope implements FlowScope {
       functionScope = joinedScopeA.flowsFromBottom() ?
           joinedScopeB.getFunctionScope() : joinedScopeA.getFunctionScope();
 
-      Map<String, StaticSlot<JSType>> slotsA = joinedScopeA.allFlowSlots();
-      Map<String, StaticSlot<JSType>> slotsB = joinedScopeB.allFlowSlots();
+      PersistentHashMap<String, StaticSlot<JSType>> slotsA =
+          joinedScopeA.allFlowSlots();
+      PersistentHashMap<String, StaticSlot<JSType>> slotsB =
+          joinedScopeB.allFlowSlots();
+      JoinVisitor joiner = new JoinVisitor(joinedScopeA, joinedScopeB, slotsA);
+      PersistentHashMap.visitDifferences(slotsA, slotsB, joiner);
+      symbols = joiner.symbols;
+    }
 
-      symbols = slotsA;
+    /**
+     * Get the slot for the given symbol.
+     */
+    public StaticSlot<JSType> getSlot(String name) {
+      StaticSlot<JSType> slot = symbols.get(name);
+      if (slot != null) {
+        return slot;
+      } else {
+        return functionScope.getSlot(name);
+      }
+    }
+  }
+
+  /**
+   * Joins the slots of two scopes, starting from the slots of the first.
+   * Only visits the symbols whose slots differ: joining a slot with itself
+   * gives the same type back.
+   */
+  private static class JoinVisitor
+      implements DifferenceVisitor<String, StaticSlot<JSType>> {
+    private final LinkedFlowScope joinedScopeA;
+    private final LinkedFlowScope joinedScopeB;
+    private PersistentHashMap<String, StaticSlot<JSType>> symbols;
+
+    JoinVisitor(LinkedFlowScope joinedScopeA, LinkedFlowScope joinedScopeB,
+        PersistentHashMap<String, StaticSlot<JSType>> slotsA) {
+      this.joinedScopeA = joinedScopeA;
+      this.joinedScopeB = joinedScopeB;
+      this.symbols = slotsA;
+    }
 
+    @Override
+    public boolean visit(String name,
+        StaticSlot<JSType> slotA, StaticSlot<JSType> slotB) {
       // There are 5 different join cases:
       // 1) The type is declared in joinedScopeA, not in joinedScopeB,
       //    and not in functionScope. Just use the one in A.
@@ -434,56 +469,38 @@ class LinkedFlowScope implements FlowScope {
       //    not in joinedScopeA. Join the two types.
       // 5) The type is declared in joinedScopeA and joinedScopeB. Join
       //    the two types.
-      Set<String> symbolNames = Sets.newHashSet(symbols.keySet());
-      symbolNames.addAll(slotsB.keySet());
-
-      for (String name : symbolNames) {
-        StaticSlot<JSType> slotA = slotsA.get(name);
-        StaticSlot<JSType> slotB = slotsB.get(name);
-
-        JSType joinedType = null;
-        if (slotB == null || slotB.getType() == null) {
-          StaticSlot<JSType> fnSlot
-              = joinedScopeB.getFunctionScope().getSlot(name);
-          JSType fnSlotType = fnSlot == null ? null : fnSlot.getType();
-          if (fnSlotType == null) {
-            // Case #1 -- already inserted.
-          } else {
-            // Case #3
-            joinedType = slotA.getType().getLeastSupertype(fnSlotType);
-          }
-        } else if (slotA == null || slotA.getType() == null) {
-          StaticSlot<JSType> fnSlot
-              = joinedScopeA.getFunctionScope().getSlot(name);
-          JSType fnSlotType = fnSlot == null ? null : fnSlot.getType();
-          if (fnSlotType == null) {
-            // Case #2
-            symbols.put(name, slotB);
-          } else {
-            // Case #4
-            joinedType = slotB.getType().getLeastSupertype(fnSlotType);
-          }
+      JSType joinedType = null;
+      if (slotB == null || slotB.getType() == null) {
+        StaticSlot<JSType> fnSlot
+            = joinedScopeB.getFunctionScope().getSlot(name);
+        JSType fnSlotType = fnSlot == null ? null : fnSlot.getType();
+        if (fnSlotType == null) {
+          // Case #1 -- already inserted.
         } else {
-          // Case #5
-          joinedType =
-              slotA.getType().getLeastSupertype(slotB.getType());
+          // Case #3
+          joinedType = slotA.getType().getLeastSupertype(fnSlotType);
         }
-
-        if (joinedType != null) {
-          symbols.put(name, new SimpleSlot(name, joinedType, true));
+      } else if (slotA == null || slotA.getType() == null) {
+        StaticSlot<JSType> fnSlot
+            = joinedScopeA.getFunctionScope().getSlot(name);
+        JSType fnSlotType = fnSlot == null ? null : fnSlot.getType();
+        if (fnSlotType == null) {
+          // Case #2
+          symbols = symbols.plus(name, slotB);
+        } else {
+          // Case #4
+          joinedType = slotB.getType().getLeastSupertype(fnSlotType);
         }
+      } else {
+        // Case #5
+        joinedType =
+            slotA.getType().getLeastSupertype(slotB.getType());
       }
-    }
 
-    /**
-     * Get the slot for the given symbol.
-     */
-    public StaticSlot<JSType> getSlot(String name) {
-      if (symbols.containsKey(name)) {
-        return symbols.get(name);
-      } else {
-        return functionScope.getSlot(name);
+      if (joinedType != null) {
+        symbols = symbols.plus(name, new SimpleSlot(name, joinedType, true));
       }
+      return true;
     }
   }
 }
@@ -97,6 +97,13 @@ class LiveVariablesAnalysis extends
       return liveSet.get(index);
     }
 
+    /**
+     * Gets the indices of the live variables. The set must not be modified.
+     */
+    BitSet getLiveSet() {
+      return liveSet;
+    }
+
     @Override
     public String toString() {
       return liveSet.toString();
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.debugging.sourcemap.FilePosition;
+import com.google.javascript.rhino.Node;
+
+/**
+ * Receives the source mappings of code as a {@link CodePrinter} prints it.
+ *
+ * @see SourceMap
+ */
+interface MappingSink {
+
+  /**
+   * Records that the code printed for the node spans the given output
+   * positions.
+   */
+  void addMapping(Node node,
+      FilePosition outputStartPosition, FilePosition outputEndPosition);
+}
@@ -56,8 +56,8 @@ class MarkNoSideEffectCalls implements CompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
-    SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(compiler);
-    defFinder.process(externs, root);
+    SimpleDefinitionFinder defFinder =
+        compiler.getDefinitionFinder(externs, root);
 
     // Gather the list of function nodes that have @nosideeffect annotations.
     // For use by SetNoSideEffectCallProperty.
@@ -17,8 +17,8 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
 import com.google.javascript.jscomp.Scope.Var;
@@ -26,8 +26,10 @@ import com.google.javascript.jscomp.graph.GraphNode;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -46,11 +48,25 @@ class MaybeReachingVariableUse extends
   private final Scope jsScope;
   private final Set<Var> escaped;
 
+  // Every (variable, use node) pair seen by the analysis is given an index
+  // into the lattice bit vectors the first time it is added. useIndexes
+  // and varUses are indexed by Var.index, useNodes by the pair index.
+  private final List<Map<Node, Integer>> useIndexes;
+  private final List<BitSet> varUses;
+  private final List<Node> useNodes = Lists.newArrayList();
+
   MaybeReachingVariableUse(
       ControlFlowGraph<Node> cfg, Scope jsScope, AbstractCompiler compiler) {
     super(cfg, new ReachingUsesJoinOp());
     this.jsScope = jsScope;
     this.escaped = Sets.newHashSet();
+    int numVars = jsScope.getVarCount();
+    this.useIndexes = Lists.newArrayListWithCapacity(numVars);
+    this.varUses = Lists.newArrayListWithCapacity(numVars);
+    for (int i = 0; i < numVars; i++) {
+      useIndexes.add(null);
+      varUses.add(null);
+    }
 
     // TODO(user): May be comute it somewhere else and re-use the escape
     // local set here.
@@ -79,12 +95,15 @@ class MaybeReachingVariableUse extends
    * N_7: print(A);
    *
    * At N_3, reads of A in {N_4, N_5} are said to be upward exposed.
+   *
+   * <p>The element is stored as a bit vector of (variable, use node) pairs,
+   * see {@link MaybeReachingVariableUse#getUseIndex}.
    */
   static final class ReachingUses implements LatticeElement {
-    final Multimap<Var, Node> mayUseMap;
+    final BitSet mayUseSet;
 
     public ReachingUses() {
-      mayUseMap = HashMultimap.create();
+      mayUseSet = new BitSet();
     }
 
     /**
@@ -93,18 +112,18 @@ class MaybeReachingVariableUse extends
      * @param other The constructed object is a replicated copy of this element.
      */
     public ReachingUses(ReachingUses other) {
-      mayUseMap = HashMultimap.create(other.mayUseMap);
+      mayUseSet = (BitSet) other.mayUseSet.clone();
     }
 
     @Override
     public boolean equals(Object other) {
       return (other instanceof ReachingUses) &&
-          ((ReachingUses) other).mayUseMap.equals(this.mayUseMap);
+          ((ReachingUses) other).mayUseSet.equals(this.mayUseSet);
     }
 
     @Override
     public int hashCode() {
-      return mayUseMap.hashCode();
+      return mayUseSet.hashCode();
     }
   }
 
@@ -120,7 +139,7 @@ class MaybeReachingVariableUse extends
     public ReachingUses apply(List<ReachingUses> from) {
       ReachingUses result = new ReachingUses();
       for (ReachingUses uses : from) {
-        result.mayUseMap.putAll(uses.mayUseMap);
+        result.mayUseSet.or(uses.mayUseSet);
       }
       return result;
     }
@@ -246,7 +265,7 @@ class MaybeReachingVariableUse extends
       return;
     }
     if (!escaped.contains(var)) {
-      use.mayUseMap.put(var, node);
+      use.mayUseSet.set(getUseIndex(var, node));
     }
   }
 
@@ -261,8 +280,32 @@ class MaybeReachingVariableUse extends
       return;
     }
     if (!escaped.contains(var)) {
-      use.mayUseMap.removeAll(var);
+      BitSet uses = varUses.get(var.index);
+      if (uses != null) {
+        use.mayUseSet.andNot(uses);
+      }
+    }
+  }
+
+  /**
+   * Gets the index of the bit that represents a use of {@code var} at
+   * {@code node}, assigning a new one if the pair has not been seen before.
+   */
+  private int getUseIndex(Var var, Node node) {
+    Map<Node, Integer> indexes = useIndexes.get(var.index);
+    if (indexes == null) {
+      indexes = Maps.newHashMap();
+      useIndexes.set(var.index, indexes);
+      varUses.set(var.index, new BitSet());
     }
+    Integer index = indexes.get(node);
+    if (index == null) {
+      index = useNodes.size();
+      useNodes.add(node);
+      indexes.put(node, index);
+      varUses.get(var.index).set(index);
+    }
+    return index;
   }
 
   /**
@@ -279,6 +322,16 @@ class MaybeReachingVariableUse extends
     GraphNode<Node, Branch> n = getCfg().getNode(defNode);
     Preconditions.checkNotNull(n);
     FlowState<ReachingUses> state = n.getAnnotation();
-    return state.getOut().mayUseMap.get(jsScope.getVar(name));
+    Var var = jsScope.getVar(name);
+    List<Node> result = Lists.newArrayList();
+    if (var == null || var.scope != jsScope || varUses.get(var.index) == null) {
+      return result;
+    }
+    BitSet uses = (BitSet) varUses.get(var.index).clone();
+    uses.and(state.getOut().mayUseSet);
+    for (int i = uses.nextSetBit(0); i >= 0; i = uses.nextSetBit(i + 1)) {
+      result.add(useNodes.get(i));
+    }
+    return result;
   }
 }
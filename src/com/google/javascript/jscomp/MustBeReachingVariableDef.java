@@ -17,7 +17,6 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ControlFlowGraph.AbstractCfgNodeTraversalCallback;
 import com.google.javascript.jscomp.ControlFlowGraph.Branch;
@@ -27,8 +26,6 @@ import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
 import java.util.Iterator;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -49,10 +46,15 @@ final class MustBeReachingVariableDef extends
   private final AbstractCompiler compiler;
   private final Set<Var> escaped;
 
+  // The number of variables declared in jsScope, which is the size of every
+  // lattice element.
+  private final int numVars;
+
   MustBeReachingVariableDef(
       ControlFlowGraph<Node> cfg, Scope jsScope, AbstractCompiler compiler) {
     super(cfg, new MustDefJoin());
     this.jsScope = jsScope;
+    this.numVars = jsScope.getVarCount();
     this.compiler = compiler;
     this.escaped = Sets.newHashSet();
     computeEscaped(jsScope, escaped, compiler);
@@ -83,6 +85,12 @@ final class MustBeReachingVariableDef extends
     }
   }
 
+  /**
+   * The BOTTOM element of a variable's sub-lattice: the variable might have
+   * more than one reaching definition.
+   */
+  private static final Definition BOTTOM = new Definition(null);
+
   /**
    * Must reaching definition lattice representation. It captures a product
    * lattice for each local (non-escaped) variable. The sub-lattice is
@@ -102,26 +110,27 @@ final class MustBeReachingVariableDef extends
    */
   static final class MustDef implements LatticeElement {
 
-    // TODO(user): Use bit vector instead of maps might get better
-    // performance. Change it after this is tested to be fully functional.
+    // The sub-lattice of each variable, indexed by Var.index.
+    // When a Var "A" = "TOP", its slot is null.
+    // When a Var "A" = Node N, its slot holds the definition at that node.
+    // When a Var "A" = "BOTTOM", its slot holds BOTTOM.
+    final Definition[] reachingDef;
 
-    // When a Var "A" = "TOP", "A" does not exist in reachingDef's keySet.
-    // When a Var "A" = Node N, "A" maps to that node.
-    // When a Var "A" = "BOTTOM", "A" maps to null.
-    final Map<Var, Definition> reachingDef;
-
-    public MustDef() {
-      reachingDef = Maps.newHashMap();
+    /**
+     * @param numVars Number of all local variables.
+     */
+    public MustDef(int numVars) {
+      reachingDef = new Definition[numVars];
     }
 
-    public MustDef(Iterator<Var> vars) {
-      this();
+    public MustDef(Iterator<Var> vars, int numVars) {
+      this(numVars);
       while(vars.hasNext()) {
         Var var = vars.next();
         // Every variable in the scope is defined once in the beginning of the
         // function: all the declared variables are undefined, all functions
         // have been assigned and all arguments has its value from the caller.
-        reachingDef.put(var, new Definition(var.scope.getRootNode()));
+        reachingDef[var.index] = new Definition(var.scope.getRootNode());
       }
     }
 
@@ -131,55 +140,49 @@ final class MustBeReachingVariableDef extends
      * @param other The constructed object is a replicated copy of this element.
      */
     public MustDef(MustDef other) {
-      reachingDef = Maps.newHashMap(other.reachingDef);
+      reachingDef = other.reachingDef.clone();
     }
 
     @Override
     public boolean equals(Object other) {
-      return (other instanceof MustDef) &&
-          ((MustDef) other).reachingDef.equals(this.reachingDef);
+      if (!(other instanceof MustDef)) {
+        return false;
+      }
+      Definition[] otherDef = ((MustDef) other).reachingDef;
+      if (otherDef.length != reachingDef.length) {
+        return false;
+      }
+      for (int i = 0; i < reachingDef.length; i++) {
+        Definition def = reachingDef[i];
+        if (def != otherDef[i] && (def == null || !def.equals(otherDef[i]))) {
+          return false;
+        }
+      }
+      return true;
     }
   }
 
   private static class MustDefJoin extends JoinOp.BinaryJoinOp<MustDef> {
     @Override
     public MustDef apply(MustDef a, MustDef b) {
-      MustDef result = new MustDef();
-      Map<Var, Definition> resultMap = result.reachingDef;
-
-      // Take the join of all variables that are not TOP in this.
-      for (Var var : a.reachingDef.keySet()) {
-
-        Definition aDef = a.reachingDef.get(var);
-
+      Definition[] aDefs = a.reachingDef;
+      Definition[] bDefs = b.reachingDef;
+      MustDef result = new MustDef(aDefs.length);
+      Definition[] resultDefs = result.reachingDef;
+
+      for (int i = 0; i < aDefs.length; i++) {
+        Definition aDef = aDefs[i];
+        Definition bDef = bDefs[i];
         if (aDef == null) {
-          // "a" is BOTTOM implies that the variable has more than one possible
-          // definition. We set the join of this to be BOTTOM regardless of what
-          // "b" might be.
-          resultMap.put(var, null);
-          continue;
-        }
-
-        Node aNode = aDef.node;
-
-        if (b.reachingDef.containsKey(var)) {
-          Definition bDef = b.reachingDef.get(var);
-
-          if (aDef.equals(bDef)) {
-            resultMap.put(var, aDef);
-          } else {
-            resultMap.put(var, null);
-          }
+          // "a" is TOP, the join is whatever "b" is.
+          resultDefs[i] = bDef;
+        } else if (bDef == null || aDef.equals(bDef)) {
+          // "b" is TOP or agrees with "a". This also keeps BOTTOM as BOTTOM.
+          resultDefs[i] = aDef;
         } else {
-          resultMap.put(var, aDef);
-        }
-      }
-
-      // Take the join of all variables that are not TOP in other but it is TOP
-      // in this.
-      for (Var var : b.reachingDef.keySet()) {
-        if (!a.reachingDef.containsKey(var)) {
-          resultMap.put(var, b.reachingDef.get(var));
+          // Either side is BOTTOM or they are different definitions, so the
+          // variable has more than one possible definition.
+          resultDefs[i] = BOTTOM;
         }
       }
       return result;
@@ -193,12 +196,12 @@ final class MustBeReachingVariableDef extends
 
   @Override
   MustDef createEntryLattice() {
-    return new MustDef(jsScope.getVars());
+    return new MustDef(jsScope.getVars(), numVars);
   }
 
   @Override
   MustDef createInitialEstimateLattice() {
-    return new MustDef();
+    return new MustDef(numVars);
   }
 
   @Override
@@ -330,25 +333,26 @@ final class MustBeReachingVariableDef extends
       return;
     }
 
-    for (Var other : def.reachingDef.keySet()) {
-      Definition otherDef = def.reachingDef.get(other);
-      if (otherDef == null) {
+    Definition[] reachingDef = def.reachingDef;
+    for (int i = 0; i < reachingDef.length; i++) {
+      Definition otherDef = reachingDef[i];
+      if (otherDef == null || otherDef == BOTTOM) {
         continue;
       }
       if (otherDef.depends.contains(var)) {
-        def.reachingDef.put(other, null);
+        reachingDef[i] = BOTTOM;
       }
     }
 
     if (!escaped.contains(var)) {
       if (node == null) {
-        def.reachingDef.put(var, null);
+        reachingDef[var.index] = BOTTOM;
       } else {
         Definition definition = new Definition(node);
         if (rValue != null) {
           computeDependence(definition, rValue);
         }
-        def.reachingDef.put(var, definition);
+        reachingDef[var.index] = definition;
       }
     }
   }
@@ -359,19 +363,21 @@ final class MustBeReachingVariableDef extends
       if (isParameter(v)) {
         // Assume we no longer know where the parameter comes from
         // anymore.
-        output.reachingDef.put(v, null);
+        output.reachingDef[v.index] = BOTTOM;
       }
     }
 
     // Also, assume we no longer know anything that depends on a parameter.
-    for (Entry<Var, Definition> pair: output.reachingDef.entrySet()) {
-      Definition value = pair.getValue();
-      if (value == null) {
+    Definition[] reachingDef = output.reachingDef;
+    for (int i = 0; i < reachingDef.length; i++) {
+      Definition value = reachingDef[i];
+      if (value == null || value == BOTTOM) {
         continue;
       }
       for (Var dep : value.depends) {
         if (isParameter(dep)) {
-          output.reachingDef.put(pair.getKey(), null);
+          reachingDef[i] = BOTTOM;
+          break;
         }
       }
     }
@@ -410,8 +416,8 @@ final class MustBeReachingVariableDef extends
     Preconditions.checkArgument(getCfg().hasNode(useNode));
     GraphNode<Node, Branch> n = getCfg().getNode(useNode);
     FlowState<MustDef> state = n.getAnnotation();
-    Definition def = state.getIn().reachingDef.get(jsScope.getVar(name));
-    if (def == null) {
+    Definition def = getDefinition(state.getIn(), name);
+    if (def == null || def == BOTTOM) {
       return null;
     } else {
       return def.node;
@@ -422,7 +428,7 @@ final class MustBeReachingVariableDef extends
     Preconditions.checkArgument(getCfg().hasNode(useNode));
     GraphNode<Node, Branch> n = getCfg().getNode(useNode);
     FlowState<MustDef> state = n.getAnnotation();
-    Definition def = state.getIn().reachingDef.get(jsScope.getVar(name));
+    Definition def = getDefinition(state.getIn(), name);
     for (Var s : def.depends) {
       if (s.scope != jsScope) {
         return true;
@@ -430,4 +436,16 @@ final class MustBeReachingVariableDef extends
     }
     return false;
   }
+
+  /**
+   * Gets the lattice value of the given variable, or {@code null} if it is
+   * not a variable of the function being analyzed.
+   */
+  private Definition getDefinition(MustDef def, String name) {
+    Var var = jsScope.getVar(name);
+    if (var == null || var.scope != jsScope) {
+      return null;
+    }
+    return def.reachingDef[var.index];
+  }
 }
@@ -28,14 +28,10 @@ import com.google.javascript.jscomp.GatherSideEffectSubexpressionsCallback.SideE
 import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.jscomp.NodeTraversal.Callback;
 import com.google.javascript.jscomp.Scope.Var;
-import com.google.javascript.jscomp.graph.DiGraph;
-import com.google.javascript.jscomp.graph.FixedPointGraphTraversal;
-import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
-import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
-import com.google.javascript.jscomp.graph.FixedPointGraphTraversal.EdgeCallback;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -80,9 +76,24 @@ final class NameAnalyzer implements CompilerPass {
   /** Map of all JS names found */
   private final Map<String, JsName> allNames = Maps.newTreeMap();
 
-  /** Reference dependency graph */
-  private DiGraph<JsName, RefType> referenceGraph =
-      LinkedDirectedGraph.createWithoutAnnotations();
+  /**
+   * Nodes of the reference dependency graph, indexed by
+   * {@link JsName#graphIndex}.
+   */
+  private final List<JsName> graphNodes = Lists.newArrayList();
+
+  /**
+   * Edges of the reference dependency graph, in the order they were recorded.
+   * Each edge is packed into a long by {@link #recordReference}: the high
+   * half is the source index times {@link #REF_TYPE_COUNT} plus the reference
+   * type, and the low half is the target index. An edge may appear more than
+   * once. Only the first {@code edgeCount} entries are in use.
+   */
+  private long[] edges = new long[16];
+  private int edgeCount = 0;
+
+  /** Number of reference types, used to pack the type into an edge. */
+  private static final int REF_TYPE_COUNT = RefType.values().length;
 
   /**
    * Map of name scopes - all children of the Node key have a dependency on the
@@ -160,23 +171,6 @@ final class NameAnalyzer implements CompilerPass {
     INHERITANCE,
   }
 
-  /**
-   * Callback that propagates reference information.
-   */
-  private static class ReferencePropagationCallback
-      implements EdgeCallback<JsName, RefType> {
-    public boolean traverseEdge(JsName from,
-                                RefType callSite,
-                                JsName to) {
-      if (from.referenced && !to.referenced) {
-        to.referenced = true;
-        return true;
-      } else {
-        return false;
-      }
-    }
-  }
-
   /**
    * Class to hold information that can be determined from a node tree about a
    * given name
@@ -226,6 +220,9 @@ final class NameAnalyzer implements CompilerPass {
     /** Whether the name is used in a instanceof check */
     boolean hasInstanceOfReference = false;
 
+    /** Index in the reference graph, or -1 if not in the graph */
+    int graphIndex = -1;
+
     /**
      * Output the node as a string
      *
@@ -1016,6 +1013,18 @@ final class NameAnalyzer implements CompilerPass {
 
   @Override
   public void process(Node externs, Node root) {
+    findReferences(externs, root);
+    calculateReferences();
+
+    if (removeUnreferenced) {
+      removeUnreferenced();
+    }
+  }
+
+  /**
+   * Finds all global names and records the references between them.
+   */
+  void findReferences(Node externs, Node root) {
     NodeTraversal.traverse(compiler, externs, new ProcessExternals());
     NodeTraversal.traverse(compiler, root, new FindDependencyScopes());
     NodeTraversal.traverse(
@@ -1030,12 +1039,6 @@ final class NameAnalyzer implements CompilerPass {
     // If we modify the property of an alias, make sure that modification
     // gets reflected in the original object.
     referenceAliases();
-
-    calculateReferences();
-
-    if (removeUnreferenced) {
-      removeUnreferenced();
-    }
   }
 
   /**
@@ -1085,13 +1088,35 @@ final class NameAnalyzer implements CompilerPass {
       return;
     }
 
-    JsName from = getName(fromName, true);
-    JsName to = getName(toName, true);
-    referenceGraph.createNode(from);
-    referenceGraph.createNode(to);
-    if (!referenceGraph.isConnectedInDirection(from, depType, to)) {
-      referenceGraph.connect(from, depType, to);
+    int source = getGraphIndex(getName(fromName, true));
+    int target = getGraphIndex(getName(toName, true));
+    if (edgeCount == edges.length) {
+      edges = Arrays.copyOf(edges, edgeCount * 2);
+    }
+    edges[edgeCount++] =
+        ((long) (source * REF_TYPE_COUNT + depType.ordinal()) << 32) | target;
+  }
+
+  /** Returns the graph index of the name an edge starts at. */
+  private static int getEdgeSource(long edge) {
+    return (int) (edge >>> 32) / REF_TYPE_COUNT;
+  }
+
+  /** Returns the graph index of the name an edge points to. */
+  private static int getEdgeTarget(long edge) {
+    return (int) edge;
+  }
+
+  /**
+   * Returns the index of the name in the reference graph, adding it to the
+   * graph if needed.
+   */
+  private int getGraphIndex(JsName name) {
+    if (name.graphIndex < 0) {
+      name.graphIndex = graphNodes.size();
+      graphNodes.add(name);
     }
+    return name.graphIndex;
   }
 
   /**
@@ -1137,6 +1162,22 @@ final class NameAnalyzer implements CompilerPass {
         + countOf(TriState.FALSE, TriState.TRUE));
     sb.append("</ul>");
 
+    List<List<JsName>> referencesTo = Lists.newArrayList();
+    List<List<JsName>> referencesFrom = Lists.newArrayList();
+    for (int i = 0; i < graphNodes.size(); i++) {
+      referencesTo.add(Lists.<JsName>newArrayList());
+      referencesFrom.add(Lists.<JsName>newArrayList());
+    }
+    Set<Long> seenEdges = Sets.newHashSet();
+    for (int i = 0; i < edgeCount; i++) {
+      if (seenEdges.add(edges[i])) {
+        int source = getEdgeSource(edges[i]);
+        int target = getEdgeTarget(edges[i]);
+        referencesTo.get(source).add(graphNodes.get(target));
+        referencesFrom.get(target).add(graphNodes.get(source));
+      }
+    }
+
     sb.append("ALL NAMES<ul>\n");
     for (JsName node : allNames.values()) {
       sb.append("<li>" + nameAnchor(node.name) + "<ul>");
@@ -1151,28 +1192,25 @@ final class NameAnalyzer implements CompilerPass {
         }
       }
 
-      if (referenceGraph.hasNode(node)) {
-        List<DiGraphEdge<JsName, RefType>> refersTo =
-            referenceGraph.getOutEdges(node);
+      if (node.graphIndex >= 0) {
+        List<JsName> refersTo = referencesTo.get(node.graphIndex);
         if (refersTo.size() > 0) {
           sb.append("<li>REFERS TO: ");
-          Iterator<DiGraphEdge<JsName, RefType>> toIter = refersTo.iterator();
+          Iterator<JsName> toIter = refersTo.iterator();
           while (toIter.hasNext()) {
-            sb.append(nameLink(toIter.next().getDestination().getValue().name));
+            sb.append(nameLink(toIter.next().name));
             if (toIter.hasNext()) {
               sb.append(", ");
             }
           }
         }
 
-        List<DiGraphEdge<JsName, RefType>> referencedBy =
-            referenceGraph.getInEdges(node);
+        List<JsName> referencedBy = referencesFrom.get(node.graphIndex);
         if (referencedBy.size() > 0) {
           sb.append("<li>REFERENCED BY: ");
-          Iterator<DiGraphEdge<JsName, RefType>> fromIter = refersTo.iterator();
+          Iterator<JsName> fromIter = referencedBy.iterator();
           while (fromIter.hasNext()) {
-            sb.append(
-                nameLink(fromIter.next().getDestination().getValue().name));
+            sb.append(nameLink(fromIter.next().name));
             if (fromIter.hasNext()) {
               sb.append(", ");
             }
@@ -1524,15 +1562,50 @@ final class NameAnalyzer implements CompilerPass {
   /**
    * Propagate "referenced" property down the graph.
    */
-  private void calculateReferences() {
+  void calculateReferences() {
     JsName window = getName(WINDOW, true);
     window.referenced = true;
     JsName function = getName(FUNCTION, true);
     function.referenced = true;
 
-    // Propagate "referenced" property to a fixed point.
-    FixedPointGraphTraversal.newTraversal(new ReferencePropagationCallback())
-        .computeFixedPoint(referenceGraph);
+    // Lay the successors of each name out contiguously, so that the
+    // successors of name i are successors[firstEdge[i] .. firstEdge[i + 1]).
+    int nodeCount = graphNodes.size();
+    int[] firstEdge = new int[nodeCount + 1];
+    for (int i = 0; i < edgeCount; i++) {
+      firstEdge[getEdgeSource(edges[i]) + 1]++;
+    }
+    for (int i = 0; i < nodeCount; i++) {
+      firstEdge[i + 1] += firstEdge[i];
+    }
+    int[] nextEdge = Arrays.copyOf(firstEdge, nodeCount);
+    int[] successors = new int[edgeCount];
+    for (int i = 0; i < edgeCount; i++) {
+      successors[nextEdge[getEdgeSource(edges[i])]++] =
+          getEdgeTarget(edges[i]);
+    }
+
+    // Propagate "referenced" property with a breadth-first search from the
+    // names that are already known to be referenced. Each name is enqueued
+    // at most once, when it is first marked.
+    int[] queue = new int[nodeCount];
+    int head = 0;
+    int tail = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      if (graphNodes.get(i).referenced) {
+        queue[tail++] = i;
+      }
+    }
+    while (head < tail) {
+      int current = queue[head++];
+      for (int i = firstEdge[current]; i < firstEdge[current + 1]; i++) {
+        JsName successor = graphNodes.get(successors[i]);
+        if (!successor.referenced) {
+          successor.referenced = true;
+          queue[tail++] = successors[i];
+        }
+      }
+    }
   }
 
 
@@ -243,7 +243,7 @@ public class NodeTraversal {
    */
   public void traverse(Node root) {
     try {
-      sourceName = "";
+      sourceName = getSourceName(root);
       curNode = root;
       pushScope(root);
       traverseBranch(root, null);
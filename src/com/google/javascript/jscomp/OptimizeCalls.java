@@ -51,8 +51,8 @@ class OptimizeCalls implements CompilerPass {
   @Override
   public void process(Node externs, Node root) {
     if (passes.size() > 0) {
-      SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(compiler);
-      defFinder.process(externs, root);
+      SimpleDefinitionFinder defFinder =
+          compiler.getDefinitionFinder(externs, root);
       for (CallGraphCompilerPass pass : passes) {
         pass.process(externs, root, defFinder);
       }
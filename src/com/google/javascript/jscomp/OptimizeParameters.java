@@ -55,8 +55,8 @@ class OptimizeParameters
   public void process(Node externs, Node root) {
     Preconditions.checkState(
         compiler.getLifeCycleStage() == LifeCycleStage.NORMALIZED);
-    SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(compiler);
-    defFinder.process(externs, root);
+    SimpleDefinitionFinder defFinder =
+        compiler.getDefinitionFinder(externs, root);
     process(externs, root, defFinder);
   }
 
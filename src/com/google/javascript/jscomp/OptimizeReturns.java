@@ -49,8 +49,8 @@ class OptimizeReturns
   @Override
   @VisibleForTesting
   public void process(Node externs, Node root) {
-    SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(compiler);
-    defFinder.process(externs, root);
+    SimpleDefinitionFinder defFinder =
+        compiler.getDefinitionFinder(externs, root);
     process(externs, root, defFinder);
   }
 
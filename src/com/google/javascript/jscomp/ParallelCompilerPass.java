@@ -21,11 +21,17 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.Lists;
 import com.google.javascript.rhino.Node;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Pass that splits the AST and spawns workers to process the pieces in
- * different threads.  The implementation uses {@link AstParallelizer} to
+ * Pass that splits the AST and uses the compiler's worker pool to process the
+ * pieces in different threads.  The implementation uses {@link AstParallelizer} to
  * spread the work so multiple {@link Task}s can execute in parallel without
  * running into race-conditions.
  *
@@ -37,8 +43,6 @@ final class ParallelCompilerPass implements CompilerPass {
   private final int numWorkers;
   private final Supplier<Task> taskSupply;
 
-  private List<Node> worklist;
-
   /**
    * Similar to {@link CompilerPass} except tasks are not given reference to
    * externs because of possible race conditions since node mutation is usually
@@ -91,15 +95,32 @@ final class ParallelCompilerPass implements CompilerPass {
      * the worker thread has finished executed.
      */
     public void notifyCompiler(AbstractCompiler c) {
+      reportErrors(c);
+      if (changed) {
+        c.reportCodeChange();
+      }
+    }
+
+    /**
+     * Like {@link #notifyCompiler(AbstractCompiler)}, but for a task that
+     * could only have changed the given function, or only code outside of
+     * all functions if it is null.
+     * @see AbstractCompiler#reportChangeToFunction
+     */
+    public void notifyCompiler(AbstractCompiler c, Node function) {
+      reportErrors(c);
+      if (changed) {
+        c.reportChangeToFunction(function);
+      }
+    }
+
+    private void reportErrors(AbstractCompiler c) {
       if (!exceptions.isEmpty()) {
         throw new RuntimeException(exceptions.get(0));
       }
       for (JSError error : errors) {
         c.report(error);
       }
-      if (changed) {
-        c.reportCodeChange();
-      }
     }
   }
 
@@ -108,7 +129,8 @@ final class ParallelCompilerPass implements CompilerPass {
    *
    * @param splitter Will be used to split up the AST into smaller subtrees.
    * @param taskSupply A supplier of tasks that should be thread-safe.
-   * @param numWorkers Number of worker thread.
+   * @param numWorkers Maximum number of threads working on the AST at once,
+   *     including the thread that runs the pass.
    */
   public ParallelCompilerPass(AbstractCompiler compiler,
       AstParallelizer splitter, Supplier<Task> taskSupply, int numWorkers) {
@@ -122,105 +144,123 @@ final class ParallelCompilerPass implements CompilerPass {
   @Override
   public void process(Node externs, Node root) {
     // List of subtree to work with.
-    worklist = splitter.split();
-    Result r = execute();
-    splitter.join();
+    List<Node> worklist = splitter.split();
+    Result r = new Result();
+    try {
+      for (Result subtreeResult :
+               processSubtrees(compiler, worklist, taskSupply, numWorkers)) {
+        r.combine(subtreeResult);
+      }
+    } finally {
+      splitter.join();
+    }
     r.notifyCompiler(compiler);
   }
 
   /**
-   * Main loop that creates the worker threads and do work.
+   * Main loop that hands the subtrees out to the compiler's worker pool and
+   * the current thread. Each thread takes the next unclaimed subtree when it
+   * finishes one, so a few large functions do not leave the other threads
+   * idle.
+   *
+   * The subtrees do not need to be detached from the AST, but then the tasks
+   * must neither change nor look at anything outside of their subtree that
+   * another task may change.
    *
-   * @return the combined result of all task execution on the work list.
+   * @return the result of the task on each subtree, in the order of the work
+   *     list so that errors are reported the same way on every run.
    */
-  private Result execute() {
-    int numChildThread = numWorkers - 1;
-    Thread[] workers = new Thread[numChildThread];
-    final Result[] results = new Result[numChildThread];
-
-    for (int i = 0; i < numChildThread; i++) {
-      final int index = i;
-      Thread worker = new Thread() {
+  static List<Result> processSubtrees(AbstractCompiler compiler,
+      List<Node> worklist, final Supplier<Task> taskSupply, int numWorkers) {
+    final Node[] subtrees = worklist.toArray(new Node[worklist.size()]);
+    final Result[] results = new Result[subtrees.length];
+    final AtomicInteger nextSubtree = new AtomicInteger();
+    final Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        for (int i = nextSubtree.getAndIncrement(); i < subtrees.length;
+             i = nextSubtree.getAndIncrement()) {
+          results[i] = processTask(taskSupply, subtrees[i]);
+        }
+      }
+    };
+
+    ExecutorService pool = compiler.getWorkerPool();
+    int numHelpers = pool == null
+        ? 0 : Math.max(0, Math.min(numWorkers, subtrees.length) - 1);
+    List<Future<?>> helpers = Lists.newArrayList();
+    final AtomicBoolean[] started = new AtomicBoolean[numHelpers];
+    for (int i = 0; i < numHelpers; i++) {
+      final AtomicBoolean helperStarted = new AtomicBoolean();
+      started[i] = helperStarted;
+      helpers.add(pool.submit(new Runnable() {
         @Override
-          public void run() {
-            results[index] = processAllTasks();
+        public void run() {
+          if (helperStarted.compareAndSet(false, true)) {
+            worker.run();
           }
-       };
-       workers[i] = worker;
-       worker.start();
+        }
+      }));
     }
 
-    Result result = processAllTasks();
-
-    // Wait for the child to finish.
-    for (int i = 0; i < numChildThread; i++) {
-      try {
-        workers[i].join();
-      } catch (InterruptedException e) {
-        // None of the children thread should be interrupted in the execution
-        // of this method. If, for whatever reason, this happens, we will
-        // re-throw it and investigate the cause.
-        result.exceptions.add(e);
-        // One of our thread was interrupted, we'll make the current thread to
-        // be interrupted so any callers that is interested in cancellable
-        // execution can cancel.
+    Throwable helperError = null;
+    boolean interrupted = false;
+    try {
+      worker.run();
+    } finally {
+      // Even if this thread failed with an Error, the helpers may still be
+      // working on the AST, so they must finish before control leaves.
+      for (int i = 0; i < numHelpers; i++) {
+        // A helper that has not started yet has nothing left to do: either
+        // all subtrees have been claimed, or this thread failed. It may be
+        // queued behind other work, so only wait for the helpers that are
+        // working on the AST.
+        if (started[i].compareAndSet(false, true)) {
+          continue;
+        }
+        while (true) {
+          try {
+            helpers.get(i).get();
+            break;
+          } catch (InterruptedException e) {
+            // The helpers are still working on the AST, so we have to wait
+            // for them either way. Callers interested in cancellable
+            // execution will see the interrupt once they are done.
+            interrupted = true;
+          } catch (ExecutionException e) {
+            // Exceptions thrown by the tasks are in their results, so this
+            // is an Error that killed the helper.
+            helperError = e.getCause();
+            break;
+          }
+        }
+      }
+      if (interrupted) {
         Thread.currentThread().interrupt();
       }
     }
-
-    // Combine the result.
-    for (int i = 0; i < numChildThread; i++) {
-      result.combine(results[i]);
+    if (helperError != null) {
+      throw new RuntimeException(helperError);
     }
 
-    return result;
-  }
-
-  private Result processAllTasks() {
-    Result result = new Result();
-    while(true) {
-      Result passResult = processTask();
-      if (passResult == null) {
-        break;
-      } else {
-        result.combine(passResult);
-      }
-    }
-    return result;
+    return Arrays.asList(results);
   }
 
   /**
-   * Get a subtree from the work list and work on it. This method makes a call
-   * to the supplier which is also assumed thread-safe. It also calls
-   * getTask() which is synchronized.
+   * Works on a subtree from the work list. This method makes a call
+   * to the supplier which is also assumed thread-safe.
    *
    * @return The result of performing the task specified by the task supplier
-   * on the next subtree from the work list. {@code null} if there are no more
-   * work load from the work list.
+   * on the subtree.
    */
-  private Result processTask() {
-    Node subtree = getTask();
+  private static Result processTask(
+      Supplier<Task> taskSupply, Node subtree) {
     try {
-      if (subtree == null) {
-        return null;
-      } else {
-        return taskSupply.get().processSubtree(subtree);
-      }
+      return taskSupply.get().processSubtree(subtree);
     } catch (Exception e) {
       Result r = new Result(true);
       r.exceptions.add(e);
       return r;
     }
   }
-
-  /** Retrieves a subtree to work on from the work list. This must be atomic. */
-  private synchronized Node getTask() {
-    // Since the method is protected by a lock, there is no need for a thread-
-    // safe list.
-    if (worklist.isEmpty()) {
-      return null;
-    } else {
-      return worklist.remove(0);
-    }
-  }
 }
@@ -16,9 +16,20 @@
 
 package com.google.javascript.jscomp;
 
-import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.AbstractCompiler.LifeCycleStage;
+import com.google.javascript.jscomp.NodeTraversal.Callback;
+import com.google.javascript.jscomp.ParallelCompilerPass.Result;
+import com.google.javascript.jscomp.ParallelCompilerPass.Task;
 import com.google.javascript.rhino.Node;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
 /**
  * A compiler pass to run various peephole optimizations (e.g. constant folding,
  * some useless code removal, some minimizations).
@@ -26,8 +37,7 @@ import com.google.javascript.rhino.Node;
  * @author dcc@google.com (Devin Coughlin)
  * @author acleung@google.com (Alan Leung)(
  */
-class PeepholeOptimizationsPass extends AbstractPostOrderCallback
-    implements CompilerPass {
+class PeepholeOptimizationsPass implements Callback, CompilerPass {
   private AbstractCompiler compiler;
 
   // Use an array here for faster iteration compared to ImmutableSet
@@ -35,6 +45,36 @@ class PeepholeOptimizationsPass extends AbstractPostOrderCallback
   // modify something.
   private final AbstractPeepholeOptimization[] peepholeOptimizations;
 
+  // Makes the optimizations for each function body, or null if the pass
+  // optimizes the whole AST in one traversal.
+  private final Supplier<AbstractPeepholeOptimization[]> optimizationSupply;
+
+  private final int numThreads;
+
+  private final History history;
+
+  // Whether the traversal should skip function bodies, as they are
+  // optimized separately.
+  private boolean skipFunctionBodies = false;
+
+  /**
+   * What the pass remembers between runs, so that it can skip the functions
+   * that have not changed since it last ran.
+   */
+  static class History {
+    // The change stamp when the pass last started.
+    private int changeStamp = 0;
+
+    // The functions that the pass saw when it last ran. Functions it has not
+    // seen are always optimized.
+    private Set<Node> functions = Collections.emptySet();
+
+    // Compiler state that the optimizations depend on. If it has changed,
+    // all functions are optimized again.
+    private LifeCycleStage lifeCycleStage = null;
+    private boolean hasRegExpGlobalReferences = true;
+  }
+
   /**
    * Creates a peephole optimization pass that runs the given
    * optimizations.
@@ -43,6 +83,31 @@ class PeepholeOptimizationsPass extends AbstractPostOrderCallback
       AbstractPeepholeOptimization... optimizations) {
     this.compiler = compiler;
     this.peepholeOptimizations = optimizations;
+    this.optimizationSupply = null;
+    this.numThreads = 1;
+    this.history = null;
+  }
+
+  /**
+   * Creates a peephole optimization pass that optimizes the body of each
+   * function separately, and then the rest of the AST. The bodies of
+   * functions that have not changed since the last run recorded in the
+   * history are skipped, and the others are optimized on up to
+   * {@code numThreads} threads at once.
+   *
+   * @param optimizationSupply A thread-safe supplier that returns new
+   *     optimizations on each call, as they hold per-traversal state.
+   * @param history The history shared by all runs of this pass.
+   */
+  PeepholeOptimizationsPass(AbstractCompiler compiler, int numThreads,
+      Supplier<AbstractPeepholeOptimization[]> optimizationSupply,
+      History history) {
+    Preconditions.checkArgument(numThreads > 0);
+    this.compiler = compiler;
+    this.peepholeOptimizations = optimizationSupply.get();
+    this.optimizationSupply = optimizationSupply;
+    this.numThreads = numThreads;
+    this.history = history;
   }
 
   public AbstractCompiler getCompiler() {
@@ -51,11 +116,89 @@ class PeepholeOptimizationsPass extends AbstractPostOrderCallback
 
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal t = new NodeTraversal(compiler, this);
+    if (optimizationSupply == null) {
+      NodeTraversal t = new NodeTraversal(compiler, this);
+
+      beginTraversal(t);
+      t.traverse(root);
+      endTraversal(t);
+      return;
+    }
+
+    int changeStamp = compiler.getChangeStamp();
+    boolean sameState =
+        history.lifeCycleStage == compiler.getLifeCycleStage()
+        && history.hasRegExpGlobalReferences
+            == compiler.hasRegExpGlobalReferences();
+    Set<Node> functions = Sets.newIdentityHashSet();
+    List<Node> functionBodies = Lists.newArrayList();
+    collectFunctionBodies(root, functionBodies);
+    List<Node> changedBodies = Lists.newArrayList();
+    for (Node body : functionBodies) {
+      Node function = body.getParent();
+      functions.add(function);
+      if (!sameState || !history.functions.contains(function)
+          || compiler.hasFunctionChangedSince(function, history.changeStamp)) {
+        changedBodies.add(body);
+      }
+    }
+
+    // Peephole optimizations only change the node they are given and its
+    // descendants, so the bodies of different functions can be optimized at
+    // the same time. Nothing outside of the bodies is changed until all of
+    // them are done.
+    List<Result> results = ParallelCompilerPass.processSubtrees(
+        compiler, changedBodies,
+        new Supplier<Task>() {
+          @Override
+          public Task get() {
+            return new FunctionBodyTask(optimizationSupply.get());
+          }
+        }, numThreads);
+    for (int i = 0; i < results.size(); i++) {
+      results.get(i).notifyCompiler(
+          compiler, changedBodies.get(i).getParent());
+    }
 
-    beginTraversal(t);
-    t.traverse(root);
+    // The rest of the AST is not inside any function body.
+    Result result = new Result();
+    NodeTraversal t = new NodeTraversal(compiler, this);
+    for (AbstractPeepholeOptimization optimization : peepholeOptimizations) {
+      optimization.beginTraversal(t, result);
+    }
+    skipFunctionBodies = true;
+    try {
+      t.traverse(root);
+    } finally {
+      skipFunctionBodies = false;
+    }
     endTraversal(t);
+    result.notifyCompiler(compiler, null);
+
+    history.changeStamp = changeStamp;
+    history.functions = functions;
+    history.lifeCycleStage = compiler.getLifeCycleStage();
+    history.hasRegExpGlobalReferences = compiler.hasRegExpGlobalReferences();
+  }
+
+  /**
+   * Collects the bodies of the functions that are not nested in other
+   * functions.
+   */
+  private static void collectFunctionBodies(Node n, List<Node> bodies) {
+    for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+      if (NodeUtil.isFunction(c)) {
+        bodies.add(c.getLastChild());
+      } else {
+        collectFunctionBodies(c, bodies);
+      }
+    }
+  }
+
+  @Override
+  public boolean shouldTraverse(NodeTraversal t, Node n, Node parent) {
+    return !skipFunctionBodies || parent == null
+        || !NodeUtil.isFunction(parent) || n != parent.getLastChild();
   }
 
   @Override
@@ -97,4 +240,29 @@ class PeepholeOptimizationsPass extends AbstractPostOrderCallback
       optimization.endTraversal(t);
     }
   }
+
+  /**
+   * Optimizes one function body on a worker thread, with its own
+   * optimizations.
+   */
+  private class FunctionBodyTask implements Task {
+    private final PeepholeOptimizationsPass worker;
+
+    FunctionBodyTask(AbstractPeepholeOptimization[] optimizations) {
+      this.worker = new PeepholeOptimizationsPass(compiler, optimizations);
+    }
+
+    @Override
+    public Result processSubtree(Node body) {
+      Result result = new Result();
+      NodeTraversal t = new NodeTraversal(compiler, worker);
+      for (AbstractPeepholeOptimization optimization :
+               worker.peepholeOptimizations) {
+        optimization.beginTraversal(t, result);
+      }
+      t.traverse(body);
+      worker.endTraversal(t);
+      return result;
+    }
+  }
 }
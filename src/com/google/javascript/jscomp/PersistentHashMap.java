@@ -0,0 +1,337 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * An immutable hash map that shares structure with the map it was derived
+ * from. Adding an entry copies only the path from the root of the trie to
+ * the entry, so a map and its many slightly different successors together
+ * take little more memory than one of them.
+ * <p>
+ * The trie branches on 5 bits of the key's hash at each level, and entries
+ * are only stored in leaves. The shape of the trie therefore only depends
+ * on the keys in the map, not on the order in which they were added. Two
+ * maps derived from a common map share all the subtrees that neither of
+ * them changed, so their differences can be found without looking at those
+ * subtrees (see {@link #visitDifferences}).
+ * <p>
+ * Null keys and values cannot be added.
+ *
+ * @param <K> The key type. Keys must have consistent hash codes.
+ * @param <V> The value type.
+ */
+final class PersistentHashMap<K, V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  // Branches use 5 bits of the hash at shifts 0 to 30. Keys that are still
+  // together after that have the same hash.
+  private static final int MAX_SHIFT = 30;
+
+  private static final PersistentHashMap<Object, Object> EMPTY =
+      new PersistentHashMap<Object, Object>(null);
+
+  /**
+   * Visits the keys that have different values in two maps.
+   * @see PersistentHashMap#visitDifferences
+   */
+  interface DifferenceVisitor<K, V> {
+    /**
+     * @param valueA The value in the first map, or null if it has no entry.
+     * @param valueB The value in the second map, or null if it has no entry.
+     * @return Whether to continue visiting differences.
+     */
+    boolean visit(K key, V valueA, V valueB);
+  }
+
+  // The root of the trie: null, an Entry, a Branch or a Collision.
+  private final Object root;
+
+  private PersistentHashMap(Object root) {
+    this.root = root;
+  }
+
+  /** Returns the empty map. */
+  @SuppressWarnings("unchecked")
+  static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  boolean isEmpty() {
+    return root == null;
+  }
+
+  /** Returns the value for the given key, or null if it has none. */
+  V get(K key) {
+    if (key == null) {
+      return null;
+    }
+    return PersistentHashMap.<K, V>get(root, key, key.hashCode(), 0);
+  }
+
+  /**
+   * Returns a map with the entries of this one, except that {@code key}
+   * maps to {@code value}. Returns this map if it already does.
+   */
+  PersistentHashMap<K, V> plus(K key, V value) {
+    Preconditions.checkNotNull(value);
+    Object newRoot =
+        plus(root, new Entry<K, V>(key, key.hashCode(), value), 0);
+    return newRoot == root ? this : new PersistentHashMap<K, V>(newRoot);
+  }
+
+  /**
+   * Calls the visitor for each key whose value in {@code a} is not the same
+   * object as its value in {@code b}, in an order that only depends on the
+   * hash codes of the keys. Subtrees that the two maps share are skipped,
+   * so comparing two maps derived from a common map only takes time in the
+   * number of entries that were added to either of them since.
+   *
+   * @return False if the visitor stopped the visit early.
+   */
+  static <K, V> boolean visitDifferences(PersistentHashMap<K, V> a,
+      PersistentHashMap<K, V> b, DifferenceVisitor<K, V> visitor) {
+    return visitDifferences(a.root, b.root, 0, visitor);
+  }
+
+  /** A key and its value. */
+  private static final class Entry<K, V> {
+    final K key;
+    final int hash;
+    final V value;
+
+    Entry(K key, int hash, V value) {
+      this.key = key;
+      this.hash = hash;
+      this.value = value;
+    }
+  }
+
+  /**
+   * An inner node of the trie. The bitmap has a bit set for each of the 32
+   * possible values of the node's 5 bits of hash that some key has, and
+   * the children are ordered by those values. A child is an Entry if only
+   * one key has its value, and a Branch or a Collision otherwise.
+   */
+  private static final class Branch {
+    final int bitmap;
+    final Object[] children;
+
+    Branch(int bitmap, Object[] children) {
+      this.bitmap = bitmap;
+      this.children = children;
+    }
+
+    int indexOf(int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+  }
+
+  /** Two or more entries whose keys have the same hash. */
+  private static final class Collision {
+    final int hash;
+    final Entry<?, ?>[] entries;
+
+    Collision(int hash, Entry<?, ?>[] entries) {
+      this.hash = hash;
+      this.entries = entries;
+    }
+  }
+
+  private static int bitOf(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> V get(Object node, K key, int hash, int shift) {
+    while (node instanceof Branch) {
+      Branch branch = (Branch) node;
+      int bit = bitOf(hash, shift);
+      if ((branch.bitmap & bit) == 0) {
+        return null;
+      }
+      node = branch.children[branch.indexOf(bit)];
+      shift += BITS;
+    }
+    if (node instanceof Entry) {
+      Entry<K, V> entry = (Entry<K, V>) node;
+      return entry.hash == hash && entry.key.equals(key) ? entry.value : null;
+    }
+    if (node instanceof Collision) {
+      Collision collision = (Collision) node;
+      if (collision.hash == hash) {
+        for (Entry<?, ?> entry : collision.entries) {
+          if (entry.key.equals(key)) {
+            return (V) entry.value;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  /** Returns the node with the entry added, or the same node if it has it. */
+  private static Object plus(Object node, Entry<?, ?> entry, int shift) {
+    if (node == null) {
+      return entry;
+    }
+    if (node instanceof Branch) {
+      Branch branch = (Branch) node;
+      int bit = bitOf(entry.hash, shift);
+      int index = branch.indexOf(bit);
+      if ((branch.bitmap & bit) == 0) {
+        Object[] children = new Object[branch.children.length + 1];
+        System.arraycopy(branch.children, 0, children, 0, index);
+        children[index] = entry;
+        System.arraycopy(branch.children, index, children, index + 1,
+            branch.children.length - index);
+        return new Branch(branch.bitmap | bit, children);
+      }
+      Object child = branch.children[index];
+      Object newChild = plus(child, entry, shift + BITS);
+      if (newChild == child) {
+        return branch;
+      }
+      Object[] children = branch.children.clone();
+      children[index] = newChild;
+      return new Branch(branch.bitmap, children);
+    }
+    if (node instanceof Entry) {
+      Entry<?, ?> old = (Entry<?, ?>) node;
+      if (old.hash == entry.hash && old.key.equals(entry.key)) {
+        return old.value == entry.value ? old : entry;
+      }
+      return merge(old, entry, shift);
+    }
+
+    Collision collision = (Collision) node;
+    Entry<?, ?>[] entries = collision.entries;
+    for (int i = 0; i < entries.length; i++) {
+      if (entries[i].key.equals(entry.key)) {
+        if (entries[i].value == entry.value) {
+          return collision;
+        }
+        Entry<?, ?>[] newEntries = entries.clone();
+        newEntries[i] = entry;
+        return new Collision(collision.hash, newEntries);
+      }
+    }
+    Entry<?, ?>[] newEntries = new Entry<?, ?>[entries.length + 1];
+    System.arraycopy(entries, 0, newEntries, 0, entries.length);
+    newEntries[entries.length] = entry;
+    return new Collision(collision.hash, newEntries);
+  }
+
+  /** Makes a node for two entries with different keys. */
+  private static Object merge(Entry<?, ?> a, Entry<?, ?> b, int shift) {
+    if (shift > MAX_SHIFT) {
+      return new Collision(a.hash, new Entry<?, ?>[] {a, b});
+    }
+    int bitA = bitOf(a.hash, shift);
+    int bitB = bitOf(b.hash, shift);
+    if (bitA == bitB) {
+      return new Branch(bitA, new Object[] {merge(a, b, shift + BITS)});
+    }
+    return new Branch(bitA | bitB,
+        (bitA & (bitB - 1)) != 0 ? new Object[] {a, b} : new Object[] {b, a});
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> boolean visitDifferences(Object a, Object b,
+      int shift, DifferenceVisitor<K, V> visitor) {
+    if (a == b) {
+      return true;
+    }
+    if (a instanceof Branch && b instanceof Branch) {
+      Branch branchA = (Branch) a;
+      Branch branchB = (Branch) b;
+      int bitmap = branchA.bitmap | branchB.bitmap;
+      while (bitmap != 0) {
+        int bit = Integer.lowestOneBit(bitmap);
+        bitmap &= ~bit;
+        Object childA = (branchA.bitmap & bit) == 0
+            ? null : branchA.children[branchA.indexOf(bit)];
+        Object childB = (branchB.bitmap & bit) == 0
+            ? null : branchB.children[branchB.indexOf(bit)];
+        if (!visitDifferences(childA, childB, shift + BITS, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // At least one side is empty, a single entry or a collision, so it only
+    // has a few entries: look them up in the other side, then visit the
+    // entries that only the other side has.
+    boolean aIsSmall = !(a instanceof Branch);
+    Object small = aIsSmall ? a : b;
+    Object other = aIsSmall ? b : a;
+    Entry<K, V>[] smallEntries = small == null ? new Entry[0]
+        : small instanceof Entry ? new Entry[] {(Entry<K, V>) small}
+        : (Entry<K, V>[]) ((Collision) small).entries;
+    for (Entry<K, V> entry : smallEntries) {
+      V otherValue = get(other, entry.key, entry.hash, shift);
+      if (otherValue != entry.value) {
+        boolean proceed = aIsSmall
+            ? visitor.visit(entry.key, entry.value, otherValue)
+            : visitor.visit(entry.key, otherValue, entry.value);
+        if (!proceed) {
+          return false;
+        }
+      }
+    }
+    return visitMissing(other, small, shift, aIsSmall, visitor);
+  }
+
+  /**
+   * Visits the entries under {@code node} whose keys {@code small}, a node
+   * at the given shift, does not have. {@code node} is in the second map if
+   * {@code nodeIsB} is true.
+   */
+  @SuppressWarnings("unchecked")
+  private static <K, V> boolean visitMissing(Object node, Object small,
+      int shift, boolean nodeIsB, DifferenceVisitor<K, V> visitor) {
+    if (node == null) {
+      return true;
+    }
+    if (node instanceof Branch) {
+      for (Object child : ((Branch) node).children) {
+        if (!visitMissing(child, small, shift, nodeIsB, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    Entry<K, V>[] entries = node instanceof Entry
+        ? new Entry[] {(Entry<K, V>) node}
+        : (Entry<K, V>[]) ((Collision) node).entries;
+    for (Entry<K, V> entry : entries) {
+      if (get(small, entry.key, entry.hash, shift) == null) {
+        boolean proceed = nodeIsB
+            ? visitor.visit(entry.key, null, entry.value)
+            : visitor.visit(entry.key, entry.value, null);
+        if (!proceed) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
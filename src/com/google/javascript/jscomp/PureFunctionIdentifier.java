@@ -26,9 +26,8 @@ import com.google.common.io.Files;
 import com.google.javascript.jscomp.DefinitionsRemover.Definition;
 import com.google.javascript.jscomp.NodeTraversal.ScopedCallback;
 import com.google.javascript.jscomp.Scope.Var;
+import com.google.javascript.jscomp.graph.CompactDirectedGraph;
 import com.google.javascript.jscomp.graph.DiGraph;
-import com.google.javascript.jscomp.graph.FixedPointGraphTraversal;
-import com.google.javascript.jscomp.graph.FixedPointGraphTraversal.EdgeCallback;
 import com.google.javascript.jscomp.graph.LinkedDirectedGraph;
 import com.google.javascript.rhino.JSDocInfo;
 import com.google.javascript.rhino.Node;
@@ -39,6 +38,7 @@ import com.google.javascript.rhino.jstype.JSTypeNative;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -246,7 +246,7 @@ class PureFunctionIdentifier implements CompilerPass {
   /**
    * Propagate side effect information by building a graph based on
    * call site information stored in FunctionInformation and the
-   * DefinitionProvider and then running GraphReachability to
+   * DefinitionProvider and then propagating side effects along it to
    * determine the set of functions that have side effects.
    */
   private void propagateSideEffects() {
@@ -289,9 +289,8 @@ class PureFunctionIdentifier implements CompilerPass {
       }
     }
 
-    // Propagate side effect information to a fixed point.
-    FixedPointGraphTraversal.newTraversal(new SideEffectPropagationCallback())
-        .computeFixedPoint(sideEffectGraph);
+    // The graph is complete, so work on a compact copy of it.
+    propagateSideEffects(CompactDirectedGraph.copyOf(sideEffectGraph));
 
     // Mark remaining functions "pure".
     for (FunctionInformation functionInfo : functionSideEffectMap.values()) {
@@ -769,70 +768,138 @@ class PureFunctionIdentifier implements CompilerPass {
     return NodeUtil.evaluatesToLocalValue(value, taintingPredicate);
   }
 
+  // The side effects that propagate from callees to callers, as bits.
+  private static final int MUTATES_GLOBAL_STATE = 1;
+  private static final int THROWS = 2;
+  private static final int MUTATES_THIS = 4;
+
   /**
-   * Callback that propagates side effect information across call sites.
+   * Propagates side effects from callees to callers until no more change.
+   * The strongly connected components of the graph are visited in
+   * topological order, so each is visited once, after all the functions its
+   * functions call. Only the effects within a component are propagated to a
+   * fixed point.
    */
-  private static class SideEffectPropagationCallback
-      implements EdgeCallback<FunctionInformation, Node> {
-    public boolean traverseEdge(FunctionInformation callee,
-                                Node callSite,
-                                FunctionInformation caller) {
-      Preconditions.checkArgument(callSite.getType() == Token.CALL ||
-                                  callSite.getType() == Token.NEW);
-
-      boolean changed = false;
-      if (!caller.mutatesGlobalState() && callee.mutatesGlobalState()) {
-        caller.setTaintsGlobalState();
-        changed = true;
-      }
+  private static void propagateSideEffects(
+      CompactDirectedGraph<FunctionInformation, Node> graph) {
+    int nodeCount = graph.getNodeCount();
+    int[] component = graph.getStronglyConnectedComponents();
+
+    // Sort the nodes by component.
+    int componentCount = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      componentCount = Math.max(componentCount, component[i] + 1);
+    }
+    int[] componentStart = new int[componentCount + 1];
+    for (int i = 0; i < nodeCount; i++) {
+      componentStart[component[i] + 1]++;
+    }
+    for (int c = 0; c < componentCount; c++) {
+      componentStart[c + 1] += componentStart[c];
+    }
+    int[] next = Arrays.copyOf(componentStart, componentCount);
+    int[] nodesByComponent = new int[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      nodesByComponent[next[component[i]]++] = i;
+    }
 
-      if (!caller.functionThrows() && callee.functionThrows()) {
-        caller.setFunctionThrows();
-        changed = true;
+    int[] effects = new int[nodeCount];
+    for (int i = 0; i < nodeCount; i++) {
+      FunctionInformation functionInfo = graph.getNodeValue(i);
+      if (functionInfo.mutatesGlobalState()) {
+        effects[i] |= MUTATES_GLOBAL_STATE;
       }
+      if (functionInfo.functionThrows()) {
+        effects[i] |= THROWS;
+      }
+      if (functionInfo.mutatesThis()) {
+        effects[i] |= MUTATES_THIS;
+      }
+    }
 
-      if (callee.mutatesThis()) {
-        // Side effects only propagate via regular calls.
-        // Calling a constructor that modifies "this" has no side effects.
-        if (callSite.getType() != Token.NEW) {
-          Node objectNode = getCallThisObject(callSite);
-          if (objectNode != null && NodeUtil.isName(objectNode)
-              && !isCallOrApply(callSite)) {
-            // Exclude ".call" and ".apply" as the value may still be may be
-            // null or undefined. We don't need to worry about this with a
-            // direct method call because null and undefined don't have any
-            // properties.
-            String name = objectNode.getString();
-
-            // TODO(nicksantos): Turn this back on when locals-tracking
-            // is fixed. See testLocalizedSideEffects11.
-            //if (!caller.knownLocals.contains(name)) {
-              if (!caller.mutatesGlobalState()) {
-                caller.setTaintsGlobalState();
-                changed = true;
-              }
-            //}
-          } else if (objectNode != null && NodeUtil.isThis(objectNode)) {
-            if (!caller.mutatesThis()) {
-              caller.setTaintsThis();
-              changed = true;
+    int[] worklist = new int[nodeCount];
+    boolean[] inWorklist = new boolean[nodeCount];
+    for (int c = 0; c < componentCount; c++) {
+      int size = 0;
+      for (int k = componentStart[c]; k < componentStart[c + 1]; k++) {
+        worklist[size++] = nodesByComponent[k];
+        inWorklist[nodesByComponent[k]] = true;
+      }
+      while (size > 0) {
+        int callee = worklist[--size];
+        inWorklist[callee] = false;
+        for (int i = 0; i < graph.getOutDegree(callee); i++) {
+          int caller = graph.getSuccessor(callee, i);
+          int callerEffects = effects[caller] | getCallerEffects(
+              effects[callee], graph.getOutEdgeValue(callee, i));
+          if (callerEffects != effects[caller]) {
+            effects[caller] = callerEffects;
+            // Callers in later components see the change when those are
+            // visited.
+            if (component[caller] == c && !inWorklist[caller]) {
+              worklist[size++] = caller;
+              inWorklist[caller] = true;
             }
-          } else if (objectNode != null
-              && NodeUtil.evaluatesToLocalValue(objectNode)
-              && !isCallOrApply(callSite)) {
-            // Modifying 'this' on a known local object doesn't change any
-            // significant state.
-            // TODO(johnlenz): We can improve this by including literal values
-            // that we know for sure are not null.
-          } else if (!caller.mutatesGlobalState()) {
-            caller.setTaintsGlobalState();
-            changed = true;
           }
         }
       }
+    }
 
-      return changed;
+    for (int i = 0; i < nodeCount; i++) {
+      FunctionInformation functionInfo = graph.getNodeValue(i);
+      if ((effects[i] & MUTATES_GLOBAL_STATE) != 0
+          && !functionInfo.mutatesGlobalState()) {
+        functionInfo.setTaintsGlobalState();
+      }
+      if ((effects[i] & THROWS) != 0 && !functionInfo.functionThrows()) {
+        functionInfo.setFunctionThrows();
+      }
+      if ((effects[i] & MUTATES_THIS) != 0 && !functionInfo.mutatesThis()) {
+        functionInfo.setTaintsThis();
+      }
+    }
+  }
+
+  /**
+   * Returns the side effects a call site gives its caller, as bits, given
+   * the side effects of the callee.
+   */
+  private static int getCallerEffects(int calleeEffects, Node callSite) {
+    Preconditions.checkArgument(callSite.getType() == Token.CALL ||
+                                callSite.getType() == Token.NEW);
+
+    int callerEffects = calleeEffects & (MUTATES_GLOBAL_STATE | THROWS);
+    if ((calleeEffects & MUTATES_THIS) != 0) {
+      // Side effects only propagate via regular calls.
+      // Calling a constructor that modifies "this" has no side effects.
+      if (callSite.getType() != Token.NEW) {
+        Node objectNode = getCallThisObject(callSite);
+        if (objectNode != null && NodeUtil.isName(objectNode)
+            && !isCallOrApply(callSite)) {
+          // Exclude ".call" and ".apply" as the value may still be may be
+          // null or undefined. We don't need to worry about this with a
+          // direct method call because null and undefined don't have any
+          // properties.
+
+          // TODO(nicksantos): Only taint the global state if the name is
+          // not a known local, when locals-tracking is fixed. See
+          // testLocalizedSideEffects11.
+          callerEffects |= MUTATES_GLOBAL_STATE;
+        } else if (objectNode != null && NodeUtil.isThis(objectNode)) {
+          callerEffects |= MUTATES_THIS;
+        } else if (objectNode != null
+            && NodeUtil.evaluatesToLocalValue(objectNode)
+            && !isCallOrApply(callSite)) {
+          // Modifying 'this' on a known local object doesn't change any
+          // significant state.
+          // TODO(johnlenz): We can improve this by including literal values
+          // that we know for sure are not null.
+        } else {
+          callerEffects |= MUTATES_GLOBAL_STATE;
+        }
+      }
     }
+    return callerEffects;
   }
 
   /**
@@ -1093,8 +1160,8 @@ class PureFunctionIdentifier implements CompilerPass {
         graphBuilder.process(externs, root);
         definitionProvider = graphBuilder.getNameReferenceGraph();
       } else {
-        SimpleDefinitionFinder defFinder = new SimpleDefinitionFinder(compiler);
-        defFinder.process(externs, root);
+        SimpleDefinitionFinder defFinder =
+            compiler.getDefinitionFinder(externs, root);
         definitionProvider = defFinder;
       }
 
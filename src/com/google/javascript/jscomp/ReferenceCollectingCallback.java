@@ -20,10 +20,14 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.javascript.jscomp.NodeTraversal.AbstractPostOrderCallback;
 import com.google.javascript.jscomp.NodeTraversal.ScopedCallback;
+import com.google.javascript.jscomp.ParallelCompilerPass.Result;
+import com.google.javascript.jscomp.ParallelCompilerPass.Task;
 import com.google.javascript.jscomp.Scope.Var;
 import com.google.javascript.rhino.Node;
 import com.google.javascript.rhino.Token;
@@ -35,7 +39,9 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A helper class for passes that want to access all information about where a
@@ -77,6 +83,24 @@ class ReferenceCollectingCallback implements ScopedCallback,
    */
   private final Predicate<Var> varFilter;
 
+  /**
+   * Maximum number of threads collecting references at once when processing
+   * a whole program.
+   */
+  private final int numThreads;
+
+  /**
+   * The basic block of the global scope, shared by the callbacks that collect
+   * the references of each script in parallel, or null.
+   */
+  private final BasicBlock globalBlock;
+
+  /**
+   * The local scopes entered by a callback collecting the references of one
+   * script in parallel, by root node, or null.
+   */
+  private final Map<Node, Scope> scriptScopes;
+
   /**
    * Constructor initializes block stack.
    */
@@ -92,9 +116,30 @@ class ReferenceCollectingCallback implements ScopedCallback,
    */
   ReferenceCollectingCallback(AbstractCompiler compiler, Behavior behavior,
       Predicate<Var> varFilter) {
+    this(compiler, behavior, varFilter, 1);
+  }
+
+  /**
+   * Constructor that collects the references of each script on up to
+   * {@code numThreads} threads at once in {@link #process}. The filter
+   * must be thread-safe if {@code numThreads} is greater than one.
+   */
+  ReferenceCollectingCallback(AbstractCompiler compiler, Behavior behavior,
+      Predicate<Var> varFilter, int numThreads) {
+    this(compiler, behavior, varFilter, numThreads, null);
+  }
+
+  private ReferenceCollectingCallback(AbstractCompiler compiler,
+      Behavior behavior, Predicate<Var> varFilter, int numThreads,
+      BasicBlock globalBlock) {
+    Preconditions.checkArgument(numThreads > 0);
     this.compiler = compiler;
     this.behavior = behavior;
     this.varFilter = varFilter;
+    this.numThreads = numThreads;
+    this.globalBlock = globalBlock;
+    this.scriptScopes = globalBlock == null
+        ? null : Maps.<Node, Scope>newHashMap();
   }
 
   /**
@@ -103,8 +148,136 @@ class ReferenceCollectingCallback implements ScopedCallback,
    */
   @Override
   public void process(Node externs, Node root) {
-    NodeTraversal.traverseRoots(
-        compiler, Lists.newArrayList(externs, root), this);
+    if (numThreads > 1 && compiler.getWorkerPool() != null
+        && hasOnlyScripts(externs) && hasOnlyScripts(root)) {
+      processInParallel(externs, root);
+      return;
+    }
+    NodeTraversal t = new NodeTraversal(
+        compiler, this, compiler.getSyntacticScopeCreator());
+    t.traverseRoots(Lists.newArrayList(externs, root));
+  }
+
+  private static boolean hasOnlyScripts(Node root) {
+    for (Node child = root.getFirstChild(); child != null;
+         child = child.getNext()) {
+      if (child.getType() != Token.SCRIPT) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Collects the references of each script on the compiler's worker pool,
+   * then merges them in input order and calls the behavior for each scope
+   * in the same order as {@link #process} does on one thread. The behavior
+   * only runs on this thread, so it may change the AST as usual.
+   */
+  private void processInParallel(Node externs, Node root) {
+    final Scope globalScope = compiler.getSyntacticScopeCreator().createScope(
+        externs.getParent(), null);
+    // The arguments variable is created lazily, so create it before the
+    // scope is shared.
+    globalScope.getArgumentsVar();
+    final BasicBlock sharedGlobalBlock =
+        new BasicBlock(null, globalScope.getRootNode());
+
+    List<Node> scripts = Lists.newArrayList();
+    for (Node script = externs.getFirstChild(); script != null;
+         script = script.getNext()) {
+      scripts.add(script);
+    }
+    for (Node script = root.getFirstChild(); script != null;
+         script = script.getNext()) {
+      scripts.add(script);
+    }
+
+    final Map<Node, ReferenceCollectingCallback> collectors =
+        new ConcurrentHashMap<Node, ReferenceCollectingCallback>();
+    List<Result> results = ParallelCompilerPass.processSubtrees(
+        compiler, scripts,
+        new Supplier<Task>() {
+          @Override
+          public Task get() {
+            return new Task() {
+              @Override
+              public Result processSubtree(Node script) {
+                final Result result = new Result();
+                ScopeCreator scopeCreator =
+                    new SyntacticScopeCreator(compiler) {
+                      @Override
+                      void report(JSError error) {
+                        result.errors.add(error);
+                      }
+                    };
+                ReferenceCollectingCallback collector =
+                    new ReferenceCollectingCallback(compiler,
+                        DO_NOTHING_BEHAVIOR, varFilter, 1,
+                        sharedGlobalBlock);
+                new NodeTraversal(compiler, collector, scopeCreator)
+                    .traverseWithScope(script, globalScope);
+                collectors.put(script, collector);
+                return result;
+              }
+            };
+          }
+        }, numThreads);
+    for (Result result : results) {
+      result.notifyCompiler(compiler);
+    }
+
+    // References to a global variable from different scripts are merged in
+    // input order, so they are in the same order as the AST.
+    final Map<Node, Scope> scopes = Maps.newHashMap();
+    for (Node script : scripts) {
+      ReferenceCollectingCallback collector = collectors.get(script);
+      scopes.putAll(collector.scriptScopes);
+      for (Entry<Var, ReferenceCollection> entry :
+               collector.referenceMap.entrySet()) {
+        ReferenceCollection collection = referenceMap.get(entry.getKey());
+        if (collection == null) {
+          referenceMap.put(entry.getKey(), entry.getValue());
+        } else {
+          collection.references.addAll(entry.getValue().references);
+        }
+      }
+    }
+
+    ScopeCreator collectedScopes = new ScopeCreator() {
+      @Override
+      public Scope createScope(Node n, Scope parent) {
+        if (parent == null) {
+          return globalScope;
+        }
+        Scope scope = scopes.get(n);
+        if (scope == null) {
+          scope = new SyntacticScopeCreator(compiler).createScope(n, parent);
+        }
+        return scope;
+      }
+    };
+    NodeTraversal t = new NodeTraversal(
+        compiler, new ScopeExitCallback(), collectedScopes);
+    t.traverseRoots(Lists.newArrayList(externs, root));
+  }
+
+  /**
+   * Calls the behavior when leaving each scope, for references that have
+   * already been collected.
+   */
+  private class ScopeExitCallback extends AbstractPostOrderCallback
+      implements ScopedCallback {
+    @Override
+    public void enterScope(NodeTraversal t) {}
+
+    @Override
+    public void exitScope(NodeTraversal t) {
+      notifyBehavior(t);
+    }
+
+    @Override
+    public void visit(NodeTraversal t, Node n, Node parent) {}
   }
 
   /**
@@ -155,7 +328,15 @@ class ReferenceCollectingCallback implements ScopedCallback,
    * Updates block stack and invokes any additional behavior.
    */
   public void enterScope(NodeTraversal t) {
-    Node n = t.getScope().getRootNode();
+    Scope scope = t.getScope();
+    Node n = scope.getRootNode();
+    if (globalBlock != null) {
+      if (scope.isGlobal()) {
+        blockStack.push(globalBlock);
+        return;
+      }
+      scriptScopes.put(n, scope);
+    }
     BasicBlock parent = blockStack.isEmpty() ? null : blockStack.peek();
     blockStack.push(new BasicBlock(parent, n));
   }
@@ -165,6 +346,14 @@ class ReferenceCollectingCallback implements ScopedCallback,
    */
   public void exitScope(NodeTraversal t) {
     blockStack.pop();
+    if (globalBlock != null) {
+      // The references of the other scripts are still being collected.
+      return;
+    }
+    notifyBehavior(t);
+  }
+
+  private void notifyBehavior(NodeTraversal t) {
     if (t.getScope().isGlobal()) {
       // Update global scope reference lists when we are done with it.
       compiler.updateGlobalVarReferences(referenceMap, t.getScopeRoot());
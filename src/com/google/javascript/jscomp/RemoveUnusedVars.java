@@ -141,8 +141,7 @@ class RemoveUnusedVars
 
     if (modifyCallSites) {
       // For testing, allow the SimpleDefinitionFinder to be build now.
-      defFinder = new SimpleDefinitionFinder(compiler);
-      defFinder.process(externs, root);
+      defFinder = compiler.getDefinitionFinder(externs, root);
     }
     process(externs, root, defFinder);
   }
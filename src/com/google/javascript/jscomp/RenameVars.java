@@ -326,8 +326,11 @@ final class RenameVars implements CompilerPass {
     assignmentLog = new StringBuilder();
 
     // Do variable reference counting.
-    NodeTraversal.traverse(compiler, externs, new ProcessVars(true));
-    NodeTraversal.traverse(compiler, root, new ProcessVars(false));
+    ScopeCreator scopeCreator = compiler.getSyntacticScopeCreator();
+    new NodeTraversal(compiler, new ProcessVars(true), scopeCreator)
+        .traverse(externs);
+    new NodeTraversal(compiler, new ProcessVars(false), scopeCreator)
+        .traverse(root);
 
     // Make sure that new names don't overlap with extern names.
     reservedNames.addAll(externNames);
@@ -22,6 +22,7 @@ import com.google.javascript.rhino.EvaluatorException;
 import com.google.javascript.rhino.ScriptRuntime;
 import com.google.javascript.jscomp.CheckLevel;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.regex.Pattern;
@@ -60,6 +61,10 @@ class RhinoErrorReporter {
 
   private final AbstractCompiler compiler;
 
+  // If non-null, errors are collected here instead of being reported to
+  // the compiler.
+  private final List<JSError> buffer;
+
   /**
    * For each message such as "Not a good use of {0}", replace the place
    * holder {0} with a wild card that matches all possible strings.
@@ -70,8 +75,9 @@ class RhinoErrorReporter {
     return Pattern.compile(s.replaceAll("\\{\\d+\\}", "\\\\E.*\\\\Q"));
   }
 
-  private RhinoErrorReporter(AbstractCompiler compiler) {
+  private RhinoErrorReporter(AbstractCompiler compiler, List<JSError> buffer) {
     this.compiler = compiler;
+    this.buffer = buffer;
     typeMap = ImmutableMap.of(
 
         // Extra @fileoverview
@@ -102,7 +108,17 @@ class RhinoErrorReporter {
 
   public static com.google.javascript.jscomp.mozilla.rhino.ErrorReporter
       forNewRhino(AbstractCompiler compiler) {
-    return new NewRhinoErrorReporter(compiler);
+    return new NewRhinoErrorReporter(compiler, null);
+  }
+
+  /**
+   * Creates a reporter that appends errors to {@code buffer} instead of
+   * reporting them, for parsers that run off the compiler thread. The caller
+   * is responsible for reporting the buffered errors later.
+   */
+  static com.google.javascript.jscomp.mozilla.rhino.ErrorReporter
+      forNewRhino(List<JSError> buffer) {
+    return new NewRhinoErrorReporter(null, buffer);
   }
 
   public static ErrorReporter forOldRhino(AbstractCompiler compiler) {
@@ -111,16 +127,24 @@ class RhinoErrorReporter {
 
   public void warning(String message, String sourceName, int line,
       String lineSource, int lineOffset) {
-    compiler.report(
+    report(
         makeError(message, sourceName, line, lineOffset, CheckLevel.WARNING));
   }
 
   public void error(String message, String sourceName, int line,
       String lineSource, int lineOffset) {
-    compiler.report(
+    report(
         makeError(message, sourceName, line, lineOffset, CheckLevel.ERROR));
   }
 
+  private void report(JSError error) {
+    if (buffer != null) {
+      buffer.add(error);
+    } else {
+      compiler.report(error);
+    }
+  }
+
   private JSError makeError(String message, String sourceName, int line,
       int lineOffset, CheckLevel defaultLevel) {
 
@@ -141,7 +165,7 @@ class RhinoErrorReporter {
       implements ErrorReporter {
 
     private OldRhinoErrorReporter(AbstractCompiler compiler) {
-      super(compiler);
+      super(compiler, null);
     }
 
     public EvaluatorException runtimeError(String message, String sourceName,
@@ -154,8 +178,9 @@ class RhinoErrorReporter {
   private static class NewRhinoErrorReporter extends RhinoErrorReporter
       implements com.google.javascript.jscomp.mozilla.rhino.ErrorReporter {
 
-    private NewRhinoErrorReporter(AbstractCompiler compiler) {
-      super(compiler);
+    private NewRhinoErrorReporter(
+        AbstractCompiler compiler, List<JSError> buffer) {
+      super(compiler, buffer);
     }
 
     public com.google.javascript.jscomp.mozilla.rhino.EvaluatorException
@@ -17,6 +17,7 @@
 package com.google.javascript.jscomp;
 
 import com.google.common.base.Predicate;
+import com.google.common.collect.Lists;
 import com.google.debugging.sourcemap.FilePosition;
 import com.google.debugging.sourcemap.SourceMapFormat;
 import com.google.debugging.sourcemap.SourceMapGenerator;
@@ -24,6 +25,7 @@ import com.google.debugging.sourcemap.SourceMapGeneratorFactory;
 import com.google.javascript.rhino.Node;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Collects information mapping the generated (compiled) source back to
@@ -34,7 +36,7 @@ import java.io.IOException;
  * @see CodePrinter
  *
  */
-public class SourceMap {
+public class SourceMap implements MappingSink {
 
   public static enum Format {
      V1 {
@@ -96,6 +98,7 @@ public class SourceMap {
     this.generator = generator;
   }
 
+  @Override
   public void addMapping(
       Node node,
       FilePosition outputStartPosition,
@@ -135,4 +138,41 @@ public class SourceMap {
   public void validate(boolean validate) {
     generator.validate(validate);
   }
+
+  /**
+   * Records the mappings added to it, so that code can be printed apart from
+   * the output it ends up in. The mappings are passed on to the source map
+   * by {@link #addMappingsTo} once the starting position of the code is
+   * known.
+   */
+  static class MappingBuffer implements MappingSink {
+    private final List<BufferedMapping> mappings = Lists.newArrayList();
+
+    private static class BufferedMapping {
+      final Node node;
+      final FilePosition outputStartPosition;
+      final FilePosition outputEndPosition;
+
+      BufferedMapping(Node node,
+          FilePosition outputStartPosition, FilePosition outputEndPosition) {
+        this.node = node;
+        this.outputStartPosition = outputStartPosition;
+        this.outputEndPosition = outputEndPosition;
+      }
+    }
+
+    @Override
+    public void addMapping(Node node,
+        FilePosition outputStartPosition, FilePosition outputEndPosition) {
+      mappings.add(new BufferedMapping(
+          node, outputStartPosition, outputEndPosition));
+    }
+
+    /** Adds the recorded mappings to the given sink, in order. */
+    void addMappingsTo(MappingSink sink) {
+      for (BufferedMapping m : mappings) {
+        sink.addMapping(m.node, m.outputStartPosition, m.outputEndPosition);
+      }
+    }
+  }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Maps;
+import com.google.javascript.rhino.Node;
+
+import java.util.Map;
+
+/**
+ * A syntactic scope creator that shares the scopes it creates between
+ * traversals, until a code change that may affect them is reported.
+ *
+ * Unlike {@link MemoizedScopeCreator}, this is owned by the compiler, which
+ * tells it about code changes. The scope of a function is kept until a
+ * change to the outermost function that contains it is reported, and the
+ * scope of a global root is kept until a change outside of all functions is
+ * reported. A child scope is only reused if its parent is the scope it was
+ * created in, so a rebuilt scope never has a stale parent.
+ *
+ * The scopes must not be modified by the traversals that use them, and this
+ * is not thread-safe.
+ *
+ * @see AbstractCompiler#getSyntacticScopeCreator
+ */
+class SyntacticScopeCache implements ScopeCreator {
+
+  private final AbstractCompiler compiler;
+  private final ScopeCreator delegate;
+
+  // The scopes of functions, and the change stamps they were created at.
+  private final Map<Node, Scope> functionScopes = Maps.newIdentityHashMap();
+  private final Map<Node, Integer> functionScopeStamps =
+      Maps.newIdentityHashMap();
+
+  // The scopes of global roots.
+  private final Map<Node, Scope> globalScopes = Maps.newIdentityHashMap();
+
+  SyntacticScopeCache(AbstractCompiler compiler) {
+    this.compiler = compiler;
+    this.delegate = new SyntacticScopeCreator(compiler);
+  }
+
+  @Override
+  public Scope createScope(Node n, Scope parent) {
+    if (parent == null) {
+      Scope scope = globalScopes.get(n);
+      if (scope == null) {
+        scope = delegate.createScope(n, null);
+        globalScopes.put(n, scope);
+      }
+      return scope;
+    }
+
+    Scope scope = functionScopes.get(n);
+    if (scope == null || scope.getParent() != parent ||
+        compiler.hasFunctionChangedSince(n, functionScopeStamps.get(n))) {
+      scope = delegate.createScope(n, parent);
+      functionScopes.put(n, scope);
+      functionScopeStamps.put(n, compiler.getChangeStamp());
+    }
+    return scope;
+  }
+
+  /**
+   * Forgets the scopes of all global roots, after a change outside of all
+   * functions.
+   */
+  void invalidateGlobalScopes() {
+    globalScopes.clear();
+  }
+
+  /**
+   * Forgets all scopes, after a change that may have been anywhere.
+   */
+  void clear() {
+    globalScopes.clear();
+    functionScopes.clear();
+    functionScopeStamps.clear();
+  }
+}
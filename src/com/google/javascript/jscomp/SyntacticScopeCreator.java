@@ -198,7 +198,7 @@ class SyntacticScopeCreator implements ScopeCreator {
         boolean allowDupe = hasDuplicateDeclarationSuppression(n, origVar);
 
         if (!allowDupe) {
-          compiler.report(
+          report(
               JSError.make(sourceName, n,
                            VAR_MULTIPLY_DECLARED_ERROR,
                            name,
@@ -209,13 +209,20 @@ class SyntacticScopeCreator implements ScopeCreator {
       } else if (name.equals(ARGUMENTS) && !NodeUtil.isVarDeclaration(n)) {
         // Disallow shadowing "arguments" as we can't handle with our current
         // scope modeling.
-        compiler.report(
+        report(
             JSError.make(sourceName, n,
                 VAR_ARGUMENTS_SHADOWED_ERROR));
       }
     }
   }
 
+  /**
+   * Reports an error found while creating a scope.
+   */
+  void report(JSError error) {
+    compiler.report(error);
+  }
+
   /**
    * Declares a variable.
    *
@@ -105,8 +105,9 @@ class VarCheck extends AbstractPostOrderCallback implements
       NodeTraversal.traverse(compiler, externs, new NameRefInExternsCheck());
     }
 
-    NodeTraversal.traverseRoots(
-        compiler, Lists.newArrayList(externs, root), this);
+    NodeTraversal t = new NodeTraversal(
+        compiler, this, compiler.getSyntacticScopeCreator());
+    t.traverseRoots(Lists.newArrayList(externs, root));
     for (String varName : varsToDeclareInExterns) {
       createSynthesizedExternVar(varName);
     }
@@ -169,6 +170,8 @@ class VarCheck extends AbstractPostOrderCallback implements
         if (sanityCheck) {
           throw new IllegalStateException("Unexpected variable " + varName);
         } else {
+          // This reports a code change, so the global scope is no longer
+          // shared with other passes by the time it is added to.
           createSynthesizedExternVar(varName);
           scope.getGlobalScope().declare(varName, n,
               null, getSynthesizedExternsInput());
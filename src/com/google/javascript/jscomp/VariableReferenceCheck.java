@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.base.Predicates;
 import com.google.common.collect.Sets;
 import com.google.javascript.jscomp.ReferenceCollectingCallback.BasicBlock;
 import com.google.javascript.jscomp.ReferenceCollectingCallback.Behavior;
@@ -54,20 +55,35 @@ class VariableReferenceCheck implements HotSwapCompilerPass {
   private final AbstractCompiler compiler;
   private final CheckLevel checkLevel;
 
+  // Maximum number of threads collecting references at once.
+  private final int numThreads;
+
   // NOTE(nicksantos): It's a lot faster to use a shared Set that
   // we clear after each method call, because the Set never gets too big.
   private final Set<BasicBlock> blocksWithDeclarations = Sets.newHashSet();
 
   public VariableReferenceCheck(AbstractCompiler compiler,
       CheckLevel checkLevel) {
+    this(compiler, checkLevel, 1);
+  }
+
+  /**
+   * Constructor that collects the references of each script on up to
+   * {@code numThreads} threads at once. The checks themselves are done on
+   * the thread that runs the pass.
+   */
+  public VariableReferenceCheck(AbstractCompiler compiler,
+      CheckLevel checkLevel, int numThreads) {
     this.compiler = compiler;
     this.checkLevel = checkLevel;
+    this.numThreads = numThreads;
   }
 
   @Override
   public void process(Node externs, Node root) {
     ReferenceCollectingCallback callback = new ReferenceCollectingCallback(
-        compiler, new ReferenceCheckingBehavior());
+        compiler, new ReferenceCheckingBehavior(),
+        Predicates.<Var>alwaysTrue(), numThreads);
     callback.process(externs, root);
   }
 
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.deps;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A file that keeps the dependency information of source files across runs
+ * of {@link DepsGenerator}, so that unchanged files do not have to be read
+ * again.
+ *
+ * Entries are keyed by the absolute path of the source file, and are only
+ * used if the file still has the same modification time and length. Only
+ * files that were scanned without errors or warnings are cached, because
+ * the cache does not record the messages. When the cache is saved, it only
+ * keeps the entries of the files that were looked up or added since it was
+ * loaded.
+ *
+ * This class is thread-safe.
+ */
+class DepsCache {
+
+  private static final int VERSION = 1;
+
+  private static final Logger logger =
+      Logger.getLogger(DepsCache.class.getName());
+
+  /** The dependency information of one source file. */
+  static class Entry {
+    final long lastModified;
+    final long length;
+    final List<String> provides;
+    final List<String> requires;
+    // Whether the file may contain goog.addDependency calls.
+    final boolean hasDependencyCalls;
+
+    Entry(long lastModified, long length, List<String> provides,
+        List<String> requires, boolean hasDependencyCalls) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.provides = provides;
+      this.requires = requires;
+      this.hasDependencyCalls = hasDependencyCalls;
+    }
+  }
+
+  private final File file;
+  private final Map<String, Entry> loaded;
+  private final Map<String, Entry> used = Maps.newHashMap();
+
+  private DepsCache(File file, Map<String, Entry> loaded) {
+    this.file = file;
+    this.loaded = loaded;
+  }
+
+  /**
+   * Loads the cache from the given file. A missing or unreadable file gives
+   * an empty cache.
+   */
+  static DepsCache load(File file) {
+    Map<String, Entry> entries = Maps.newHashMap();
+    if (file.isFile()) {
+      DataInputStream in = null;
+      try {
+        in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file)));
+        if (in.readInt() == VERSION) {
+          for (int i = in.readInt(); i > 0; i--) {
+            String path = in.readUTF();
+            long lastModified = in.readLong();
+            long length = in.readLong();
+            List<String> provides = readStrings(in);
+            List<String> requires = readStrings(in);
+            entries.put(path, new Entry(lastModified, length, provides,
+                requires, in.readBoolean()));
+          }
+        }
+      } catch (IOException e) {
+        logger.warning("Ignoring unreadable deps cache " + file + ": " + e);
+        entries.clear();
+      } finally {
+        closeQuietly(in);
+      }
+    }
+    return new DepsCache(file, entries);
+  }
+
+  /**
+   * Returns the entry of the file at the given path, or null if there is
+   * none for the given modification time and length.
+   */
+  synchronized Entry get(String path, long lastModified, long length) {
+    Entry entry = loaded.get(path);
+    if (entry == null || entry.lastModified != lastModified ||
+        entry.length != length) {
+      return null;
+    }
+    used.put(path, entry);
+    return entry;
+  }
+
+  synchronized void put(String path, Entry entry) {
+    used.put(path, entry);
+  }
+
+  /**
+   * Writes the cache back to its file. Failures are logged, since the
+   * cache only saves time.
+   */
+  synchronized void save() {
+    // Write to a temporary file first, so that a concurrent run never
+    // sees a partially written cache.
+    DataOutputStream out = null;
+    File tmp = null;
+    try {
+      File directory = file.getAbsoluteFile().getParentFile();
+      directory.mkdirs();
+      tmp = File.createTempFile("deps", ".tmp", directory);
+      out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmp)));
+      out.writeInt(VERSION);
+      out.writeInt(used.size());
+      for (Map.Entry<String, Entry> e : used.entrySet()) {
+        Entry entry = e.getValue();
+        out.writeUTF(e.getKey());
+        out.writeLong(entry.lastModified);
+        out.writeLong(entry.length);
+        writeStrings(out, entry.provides);
+        writeStrings(out, entry.requires);
+        out.writeBoolean(entry.hasDependencyCalls);
+      }
+      out.close();
+      out = null;
+      // renameTo does not replace an existing file on every platform.
+      file.delete();
+      if (!tmp.renameTo(file)) {
+        tmp.delete();
+      }
+    } catch (IOException e) {
+      logger.warning("Could not write deps cache " + file + ": " + e);
+      if (tmp != null) {
+        tmp.delete();
+      }
+    } finally {
+      closeQuietly(out);
+    }
+  }
+
+  private static List<String> readStrings(DataInputStream in)
+      throws IOException {
+    int count = in.readInt();
+    List<String> strings = Lists.newArrayListWithCapacity(count);
+    for (int i = 0; i < count; i++) {
+      strings.add(in.readUTF());
+    }
+    return strings;
+  }
+
+  private static void writeStrings(DataOutputStream out,
+      Collection<String> strings) throws IOException {
+    out.writeInt(strings.size());
+    for (String s : strings) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException ignore) {
+        // ignore
+      }
+    }
+  }
+}
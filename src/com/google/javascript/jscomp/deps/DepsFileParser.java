@@ -25,7 +25,6 @@ import com.google.javascript.jscomp.ErrorManager;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -106,7 +105,10 @@ public class DepsFileParser extends JsFileLineParser {
    * @return A list of DependencyInfo objects.
    */
   public List<DependencyInfo> parseFile(String filePath, String fileContents) {
-    return parseFileReader(filePath, new StringReader(fileContents));
+    depInfos = Lists.newArrayList();
+    logger.info("Parsing Dep: " + filePath);
+    doParse(filePath, fileContents);
+    return depInfos;
   }
 
 
@@ -125,6 +127,11 @@ public class DepsFileParser extends JsFileLineParser {
     return depInfos;
   }
 
+  @Override
+  boolean lineMayMatch(CharSequence line, int start, int end) {
+    return contains(line, start, end, "addDependency");
+  }
+
   /**
    * Extracts dependency information from lines that look like
    *   goog.addDependency('pathRelativeToClosure', ['provides'], ['requires']);
@@ -23,6 +23,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
+import com.google.javascript.jscomp.BasicErrorManager;
 import com.google.javascript.jscomp.CheckLevel;
 import com.google.javascript.jscomp.DiagnosticType;
 import com.google.javascript.jscomp.ErrorManager;
@@ -38,6 +39,11 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -63,6 +69,8 @@ public class DepsGenerator {
   private final String closurePathAbs;
   private final InclusionStrategy mergeStrategy;
   final ErrorManager errorManager;
+  private int scanThreads = 1;
+  private File cacheFile = null;
 
   static final DiagnosticType SAME_FILE_WARNING = DiagnosticType.warning(
       "DEPS_SAME_FILE",
@@ -104,6 +112,21 @@ public class DepsGenerator {
     this.errorManager = errorManager;
   }
 
+  /**
+   * Sets the number of threads used to read and scan the source files.
+   */
+  public void setScanThreads(int scanThreads) {
+    this.scanThreads = scanThreads;
+  }
+
+  /**
+   * Sets a file in which the dependency information of the source files is
+   * kept between runs, so that unchanged source files are not read again.
+   */
+  public void setCacheFile(File cacheFile) {
+    this.cacheFile = cacheFile;
+  }
+
   /**
    * Performs the parsing inputs and writing of outputs.
    * @throws IOException Occurs upon an IO error.
@@ -111,12 +134,15 @@ public class DepsGenerator {
    *     the dependency graph. Returns null if there was an error.
    */
   public String computeDependencyCalls() throws IOException {
+    // Find all goog.provides & goog.requires in src files
+    List<SourceScan> scans = scanSources();
+
     // Build a map of closure-relative path -> DepInfo.
-    Map<String, DependencyInfo> depsFiles = parseDepsFiles();
+    Map<String, DependencyInfo> depsFiles = parseDepsFiles(scans);
     logger.fine("preparsedFiles: " + depsFiles);
 
-    // Find all goog.provides & goog.requires in src files
-    Map<String, DependencyInfo> jsFiles = parseSources(depsFiles.keySet());
+    Map<String, DependencyInfo> jsFiles =
+        parseSources(depsFiles.keySet(), scans);
 
     // Check if there were any parse errors.
     if (errorManager.getErrorCount() > 0) {
@@ -271,7 +297,8 @@ public class DepsGenerator {
    * Parses all deps.js files in the deps list and creates a map of
    * closure-relative path -> DependencyInfo.
    */
-  private Map<String, DependencyInfo> parseDepsFiles() throws IOException {
+  private Map<String, DependencyInfo> parseDepsFiles(List<SourceScan> scans)
+      throws IOException {
     DepsFileParser depsParser = createDepsFileParser();
     Map<String, DependencyInfo> depsFiles = Maps.newHashMap();
     for (SourceFile file : deps) {
@@ -291,9 +318,11 @@ public class DepsGenerator {
 
     // If a deps file also appears in srcs, our build tools will move it
     // into srcs.  So we need to scan all the src files for addDependency
-    // calls as well.
+    // calls as well. The scan tells us which files can contain them.
+    int i = 0;
     for (SourceFile src : srcs) {
-      if ((new File(src.getName())).exists() &&
+      if (scans.get(i++).hasDependencyCalls &&
+          (new File(src.getName())).exists() &&
           !shouldSkipDepsFile(src)) {
         List<DependencyInfo> srcInfos =
             depsParser.parseFileReader(src.getName(), src.getCodeReader());
@@ -307,40 +336,189 @@ public class DepsGenerator {
   }
 
   /**
-   * Parses all source files for dependency information.
+   * Collects the dependency information of the scanned source files.
    * @param preparsedFiles A set of closure-relative paths.
-   *     Files in this set are not parsed if they are encountered in srcs.
+   *     Files in this set are skipped if they are encountered in srcs.
    * @return Returns a map of closure-relative paths -> DependencyInfo for the
    *     newly parsed files.
-   * @throws IOException Occurs upon an IO error.
    */
   private Map<String, DependencyInfo> parseSources(
-      Set<String> preparsedFiles) throws IOException {
+      Set<String> preparsedFiles, List<SourceScan> scans) {
     Map<String, DependencyInfo> parsedFiles = Maps.newHashMap();
-    JsFileParser jsParser = new JsFileParser(errorManager);
 
-    for (SourceFile file : srcs) {
-      String closureRelativePath =
-          PathUtil.makeRelative(
-              closurePathAbs, PathUtil.makeAbsolute(file.getName()));
+    for (SourceScan scan : scans) {
+      String closureRelativePath = scan.closureRelativePath;
       logger.fine("Closure-relative path: " + closureRelativePath);
 
       if (InclusionStrategy.WHEN_IN_SRCS == mergeStrategy ||
           !preparsedFiles.contains(closureRelativePath)) {
-        DependencyInfo depInfo =
-            jsParser.parseFile(
-                file.getName(), closureRelativePath,
-                file.getCode());
-
-        // Kick the source out of memory.
-        file.clearCachedSource();
-        parsedFiles.put(closureRelativePath, depInfo);
+        if (scan.errors != null) {
+          scan.errors.replayTo(errorManager);
+        }
+        parsedFiles.put(closureRelativePath, scan.depInfo);
       }
     }
 
     return parsedFiles;
   }
 
+  /**
+   * Scans all source files for goog.provide and goog.require calls, on
+   * {@code scanThreads} threads. Files that are unchanged since they were
+   * put in the cache are not read.
+   * @return The scan of each source file, in the order of srcs.
+   * @throws IOException Occurs upon an IO error.
+   */
+  private List<SourceScan> scanSources() throws IOException {
+    final DepsCache cache =
+        cacheFile == null ? null : DepsCache.load(cacheFile);
+    List<Callable<SourceScan>> tasks = Lists.newArrayList();
+    for (final SourceFile file : srcs) {
+      tasks.add(new Callable<SourceScan>() {
+        @Override
+        public SourceScan call() throws IOException {
+          return scanSource(file, cache);
+        }
+      });
+    }
+
+    List<SourceScan> scans = Lists.newArrayList();
+    if (scanThreads <= 1 || tasks.size() <= 1) {
+      for (Callable<SourceScan> task : tasks) {
+        try {
+          scans.add(task.call());
+        } catch (IOException e) {
+          throw e;
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    } else {
+      // There is no Compiler, and so no worker pool, to share here. The
+      // scan runs once per generated deps file, and its pool is shut down as
+      // soon as the scan is done, so no threads outlive this call.
+      ExecutorService executor = Executors.newFixedThreadPool(
+          Math.min(scanThreads, tasks.size()));
+      try {
+        for (Future<SourceScan> future : executor.invokeAll(tasks)) {
+          scans.add(future.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new RuntimeException(e.getCause());
+      } finally {
+        executor.shutdown();
+      }
+    }
+
+    if (cache != null) {
+      cache.save();
+    }
+    return scans;
+  }
+
+  private SourceScan scanSource(SourceFile file, DepsCache cache)
+      throws IOException {
+    String absolutePath = PathUtil.makeAbsolute(file.getName());
+    String closureRelativePath =
+        PathUtil.makeRelative(closurePathAbs, absolutePath);
+
+    // Look at the file before reading it, so that a change made while we
+    // read it invalidates the entry.
+    File diskFile = new File(file.getName());
+    boolean cacheable = cache != null && diskFile.isFile();
+    long lastModified = cacheable ? diskFile.lastModified() : 0;
+    long length = cacheable ? diskFile.length() : 0;
+    if (cacheable) {
+      DepsCache.Entry entry = cache.get(absolutePath, lastModified, length);
+      if (entry != null) {
+        return new SourceScan(closureRelativePath,
+            new SimpleDependencyInfo(closureRelativePath, file.getName(),
+                entry.provides, entry.requires),
+            entry.hasDependencyCalls, null);
+      }
+    }
+
+    ErrorBuffer errors = new ErrorBuffer();
+    String code = file.getCode();
+    DependencyInfo depInfo = new JsFileParser(errors).parseFile(
+        file.getName(), closureRelativePath, code);
+    // DepsFileParser only looks at lines that contain this.
+    boolean hasDependencyCalls = code.contains("addDependency");
+
+    // Kick the source out of memory.
+    file.clearCachedSource();
+
+    if (cacheable && errors.isEmpty()) {
+      cache.put(absolutePath, new DepsCache.Entry(lastModified, length,
+          Lists.newArrayList(depInfo.getProvides()),
+          Lists.newArrayList(depInfo.getRequires()),
+          hasDependencyCalls));
+    }
+    return new SourceScan(
+        closureRelativePath, depInfo, hasDependencyCalls, errors);
+  }
+
+  /** The result of scanning one source file. */
+  private static class SourceScan {
+    final String closureRelativePath;
+    final DependencyInfo depInfo;
+    final boolean hasDependencyCalls;
+    // The errors found while scanning, or null if the file was not read.
+    final ErrorBuffer errors;
+
+    SourceScan(String closureRelativePath, DependencyInfo depInfo,
+        boolean hasDependencyCalls, ErrorBuffer errors) {
+      this.closureRelativePath = closureRelativePath;
+      this.depInfo = depInfo;
+      this.hasDependencyCalls = hasDependencyCalls;
+      this.errors = errors;
+    }
+  }
+
+  /**
+   * Holds the errors reported while scanning one file, so that they can be
+   * reported in the order of the source files once all files are scanned.
+   */
+  private static class ErrorBuffer extends BasicErrorManager {
+    // BasicErrorManager sorts and merges what it keeps, so the reports are
+    // also kept here in the order they were made.
+    private final List<CheckLevel> levels = Lists.newArrayList();
+    private final List<JSError> errors = Lists.newArrayList();
+
+    @Override
+    public void report(CheckLevel level, JSError error) {
+      super.report(level, error);
+      levels.add(level);
+      errors.add(error);
+    }
+
+    boolean isEmpty() {
+      return errors.isEmpty();
+    }
+
+    void replayTo(ErrorManager errorManager) {
+      for (int i = 0; i < errors.size(); i++) {
+        errorManager.report(levels.get(i), errors.get(i));
+      }
+    }
+
+    @Override
+    public void println(CheckLevel level, JSError error) {
+      // Nothing is printed, the errors are printed by the error manager
+      // they are replayed to.
+    }
+
+    @Override
+    protected void printSummary() {
+    }
+  }
+
   /**
    * Creates the content to put into the output deps.js file. If mergeDeps is
    * true, then all of the dependency information in the providedDeps will be
@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp.deps;
 
+import com.google.common.base.CharMatcher;
 import com.google.common.collect.Lists;
 import com.google.javascript.jscomp.CheckLevel;
 import com.google.javascript.jscomp.DiagnosticType;
@@ -82,6 +83,16 @@ public abstract class JsFileLineParser {
   ErrorManager errorManager;
   /** Did our parse succeed. */
   boolean parseSucceeded;
+  /** Whether the current line starts inside a multi-line comment. */
+  private boolean inMultilineComment;
+  /**
+   * The current line without comments: either the range
+   * [revisedStart, revisedEnd) of the line, or revisedLine if the comments
+   * split it into several parts.
+   */
+  private int revisedStart;
+  private int revisedEnd;
+  private final StringBuilder revisedLine = new StringBuilder();
 
   /**
    * Constructor.
@@ -117,74 +128,17 @@ public abstract class JsFileLineParser {
    * @param fileContents A reader for the contents of the file.
    */
   void doParse(String filePath, Reader fileContents) {
-    this.filePath = filePath;
-    parseSucceeded = true;
+    startParse(filePath);
 
     BufferedReader lineBuffer = new BufferedReader(fileContents);
 
     // Parse all lines.
     String line = null;
-    lineNum = 0;
-    boolean inMultilineComment = false;
-
     try {
       while (null != (line = lineBuffer.readLine())) {
         ++lineNum;
-        try {
-          String revisedLine = line;
-          if (inMultilineComment) {
-            int endOfComment = revisedLine.indexOf("*/");
-            if (endOfComment != -1) {
-              revisedLine = revisedLine.substring(endOfComment + 2);
-              inMultilineComment = false;
-            } else {
-              revisedLine = "";
-            }
-          }
-
-          if (!inMultilineComment) {
-            while (true) {
-              int startOfLineComment = revisedLine.indexOf("//");
-              int startOfMultilineComment = revisedLine.indexOf("/*");
-              if (startOfLineComment != -1 &&
-                  (startOfMultilineComment == -1 ||
-                   startOfLineComment < startOfMultilineComment)) {
-                revisedLine = revisedLine.substring(0, startOfLineComment);
-                break;
-              } else if (startOfMultilineComment != -1) {
-                int endOfMultilineComment = revisedLine.indexOf("*/",
-                    startOfMultilineComment + 2);
-                if (endOfMultilineComment == -1) {
-                  revisedLine = revisedLine.substring(
-                      0, startOfMultilineComment);
-                  inMultilineComment = true;
-                  break;
-                } else {
-                  revisedLine =
-                      revisedLine.substring(0, startOfMultilineComment) +
-                      revisedLine.substring(endOfMultilineComment + 2);
-                }
-              } else {
-                break;
-              }
-            }
-          }
-
-          if (!revisedLine.isEmpty()) {
-            // This check for shortcut mode should be redundant, but
-            // it's done for safety reasons.
-            if (!parseLine(revisedLine) && shortcutMode) {
-              break;
-            }
-          }
-        } catch (ParseException e) {
-          // Inform the error handler of the exception.
-          errorManager.report(
-              e.isFatal() ? CheckLevel.ERROR : CheckLevel.WARNING,
-              JSError.make(filePath, lineNum, 0 /* char offset */,
-                  e.isFatal() ? PARSE_ERROR : PARSE_WARNING,
-                  e.getMessage(), line));
-          parseSucceeded = parseSucceeded && !e.isFatal();
+        if (!parseLine(line, 0, line.length())) {
+          break;
         }
       }
     } catch (IOException e) {
@@ -195,6 +149,190 @@ public abstract class JsFileLineParser {
     }
   }
 
+  /**
+   * Performs the line-by-line parsing of the given fileContents, like
+   * {@link #doParse(String, Reader)}. Lines are scanned in place, and only
+   * copied if {@link #lineMayMatch} does not rule them out.
+   *
+   * @param filePath The path to the file being parsed. Used for reporting parse
+   *     exceptions.
+   * @param fileContents The contents of the file.
+   */
+  void doParse(String filePath, CharSequence fileContents) {
+    startParse(filePath);
+
+    // Split the lines the way BufferedReader.readLine() does.
+    int length = fileContents.length();
+    int start = 0;
+    while (start < length) {
+      int end = start;
+      char c = 0;
+      while (end < length &&
+          (c = fileContents.charAt(end)) != '\n' && c != '\r') {
+        end++;
+      }
+      ++lineNum;
+      if (!parseLine(fileContents, start, end)) {
+        break;
+      }
+      start = end + 1;
+      if (c == '\r' && start < length && fileContents.charAt(start) == '\n') {
+        start++;
+      }
+    }
+  }
+
+  private void startParse(String filePath) {
+    this.filePath = filePath;
+    parseSucceeded = true;
+    lineNum = 0;
+    inMultilineComment = false;
+  }
+
+  /**
+   * Strips the comments from the line text[start, end) and passes what is
+   * left to parseLine().
+   *
+   * @return false to stop parsing.
+   */
+  private boolean parseLine(CharSequence text, int start, int end) {
+    revisedStart = -1;
+    revisedLine.setLength(0);
+    int pos = start;
+    if (inMultilineComment) {
+      int endOfComment = indexOf(text, "*/", start, end);
+      if (endOfComment != -1) {
+        pos = endOfComment + 2;
+        inMultilineComment = false;
+      } else {
+        pos = end;
+      }
+    }
+
+    // Collect the parts of the line outside of comments.
+    while (!inMultilineComment && pos < end) {
+      int startOfComment = pos;
+      while (startOfComment < end - 1 &&
+          !(text.charAt(startOfComment) == '/' &&
+            (text.charAt(startOfComment + 1) == '/' ||
+             text.charAt(startOfComment + 1) == '*'))) {
+        startOfComment++;
+      }
+      if (startOfComment == end - 1) {
+        addRevisedPart(text, pos, end);
+        break;
+      }
+      addRevisedPart(text, pos, startOfComment);
+      if (text.charAt(startOfComment + 1) == '/') {
+        break;
+      }
+      int endOfMultilineComment =
+          indexOf(text, "*/", startOfComment + 2, end);
+      if (endOfMultilineComment == -1) {
+        inMultilineComment = true;
+      } else {
+        pos = endOfMultilineComment + 2;
+      }
+    }
+
+    if (revisedStart == -1) {
+      return true;
+    }
+    CharSequence revised = text;
+    int revisedEnd = this.revisedEnd;
+    if (revisedLine.length() > 0) {
+      revised = revisedLine;
+      revisedStart = 0;
+      revisedEnd = revisedLine.length();
+    }
+
+    if (!lineMayMatch(revised, revisedStart, revisedEnd)) {
+      return !shortcutMode ||
+          isWhitespace(revised, revisedStart, revisedEnd);
+    }
+    try {
+      // This check for shortcut mode should be redundant, but
+      // it's done for safety reasons.
+      return parseLine(
+          revised.subSequence(revisedStart, revisedEnd).toString()) ||
+          !shortcutMode;
+    } catch (ParseException e) {
+      // Inform the error handler of the exception.
+      errorManager.report(
+          e.isFatal() ? CheckLevel.ERROR : CheckLevel.WARNING,
+          JSError.make(filePath, lineNum, 0 /* char offset */,
+              e.isFatal() ? PARSE_ERROR : PARSE_WARNING,
+              e.getMessage(), text.subSequence(start, end).toString()));
+      parseSucceeded = parseSucceeded && !e.isFatal();
+      return true;
+    }
+  }
+
+  /**
+   * Adds text[start, end) to the revised line. The first part is only
+   * recorded by position; the line is copied if there is a second one.
+   */
+  private void addRevisedPart(CharSequence text, int start, int end) {
+    if (start == end) {
+      return;
+    }
+    if (revisedStart == -1) {
+      revisedStart = start;
+      revisedEnd = end;
+      return;
+    }
+    if (revisedLine.length() == 0) {
+      revisedLine.append(text, revisedStart, revisedEnd);
+    }
+    revisedLine.append(text, start, end);
+  }
+
+  /**
+   * Returns whether parseLine() could find anything in line[start, end).
+   * Lines that are ruled out are never copied or passed to parseLine(),
+   * which must then behave as if it found nothing: in shortcut mode, a line
+   * that is not blank ends the parse.
+   */
+  boolean lineMayMatch(CharSequence line, int start, int end) {
+    return true;
+  }
+
+  /**
+   * Returns whether text[start, end) contains the given string.
+   */
+  static boolean contains(
+      CharSequence text, int start, int end, String string) {
+    return indexOf(text, string, start, end) != -1;
+  }
+
+  private static int indexOf(
+      CharSequence text, String string, int start, int end) {
+    int last = end - string.length();
+    char first = string.charAt(0);
+    for (int i = start; i <= last; i++) {
+      if (text.charAt(i) == first) {
+        int j = 1;
+        while (j < string.length() &&
+            text.charAt(i + j) == string.charAt(j)) {
+          j++;
+        }
+        if (j == string.length()) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static boolean isWhitespace(CharSequence text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (!CharMatcher.WHITESPACE.matches(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Called for each line of the file being parsed.
    *
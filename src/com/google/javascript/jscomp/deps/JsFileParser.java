@@ -23,7 +23,6 @@ import com.google.javascript.jscomp.ErrorManager;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -86,24 +85,39 @@ public class JsFileParser extends JsFileLineParser {
    */
   public DependencyInfo parseFile(String filePath, String closureRelativePath,
       String fileContents) {
-    return parseReader(filePath, closureRelativePath,
-        new StringReader(fileContents));
+    startFile(filePath);
+    doParse(filePath, fileContents);
+    return finishFile(filePath, closureRelativePath);
   }
 
   private DependencyInfo parseReader(String filePath,
       String closureRelativePath, Reader fileContents) {
+    startFile(filePath);
+    doParse(filePath, fileContents);
+    return finishFile(filePath, closureRelativePath);
+  }
+
+  private void startFile(String filePath) {
     provides = Lists.newArrayList();
     requires = Lists.newArrayList();
 
     logger.fine("Parsing Source: " + filePath);
-    doParse(filePath, fileContents);
+  }
 
+  private DependencyInfo finishFile(String filePath,
+      String closureRelativePath) {
     DependencyInfo dependencyInfo = new SimpleDependencyInfo(
         closureRelativePath, filePath, provides, requires);
     logger.fine("DepInfo: " + dependencyInfo);
     return dependencyInfo;
   }
 
+  @Override
+  boolean lineMayMatch(CharSequence line, int start, int end) {
+    return contains(line, start, end, "provide") ||
+        contains(line, start, end, "require");
+  }
+
   /**
    * Parses a line of javascript, extracting goog.provide and goog.require
    * information.
@@ -20,8 +20,6 @@ import com.google.common.base.CharMatcher;
 import com.google.common.collect.Lists;
 import com.google.javascript.jscomp.ErrorManager;
 
-import java.io.Reader;
-import java.io.StringReader;
 import java.util.Collection;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -105,11 +103,6 @@ public class JsFunctionParser extends JsFileLineParser {
    */
   public Collection<SymbolInfo> parseFile(
       String filePath, String fileContents) {
-    return parseReader(filePath, new StringReader(fileContents));
-  }
-
-  private Collection<SymbolInfo> parseReader(
-      String filePath, Reader fileContents) {
     symbols = Lists.newArrayList();
 
     logger.fine("Parsing Source: " + filePath);
@@ -118,6 +111,16 @@ public class JsFunctionParser extends JsFileLineParser {
     return symbols;
   }
 
+  @Override
+  boolean lineMayMatch(CharSequence line, int start, int end) {
+    for (String function : functionsToParse) {
+      if (contains(line, start, end, function)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Parses a line of javascript, extracting dependency information.
    */
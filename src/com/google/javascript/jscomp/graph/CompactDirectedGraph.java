@@ -0,0 +1,610 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.graph;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable directed graph that stores its edges in compressed sparse row
+ * form: the nodes are numbered densely, and the edges are kept in arrays
+ * sorted by source node, with the offsets of each node's edges in a separate
+ * array. It is built as a copy of another graph once that graph is complete.
+ * <p>
+ * Edge lists and successor/predecessor lists are views over the arrays, so
+ * reading them does not allocate. Algorithms that work on node indices can
+ * use {@link #getSuccessor} and {@link #getPredecessor} directly. Nodes and
+ * edges can still be annotated, but the graph cannot be changed.
+ *
+ * @param <N> Value type that the graph node stores.
+ * @param <E> Value type that the graph edge stores.
+ */
+public final class CompactDirectedGraph<N, E> extends DiGraph<N, E> {
+
+  private final Map<N, CompactNode<N, E>> nodeMap;
+  private final CompactNode<N, E>[] nodes;
+  private final CompactEdge<N, E>[] edges;
+
+  /**
+   * The out edges of node i are edges[outStart[i]] to
+   * edges[outStart[i + 1] - 1]; succ holds the index of each edge's
+   * destination.
+   */
+  private final int[] outStart;
+  private final int[] succ;
+
+  /**
+   * The in edges of node i are the edges whose positions are inEdges[inStart[i]]
+   * to inEdges[inStart[i + 1] - 1]; pred holds the index of each one's source.
+   */
+  private final int[] inStart;
+  private final int[] inEdges;
+  private final int[] pred;
+
+  /**
+   * Copies the given graph. The nodes are numbered in the iteration order of
+   * {@link DiGraph#getDirectedGraphNodes}, and the order of each node's out
+   * edges is kept. The in edges of a node are ordered by source node.
+   * Annotations are not copied.
+   */
+  public static <N, E> CompactDirectedGraph<N, E> copyOf(DiGraph<N, E> graph) {
+    return new CompactDirectedGraph<N, E>(graph);
+  }
+
+  @SuppressWarnings("unchecked")
+  private CompactDirectedGraph(DiGraph<N, E> graph) {
+    List<DiGraphNode<N, E>> sourceNodes =
+        Lists.newArrayList(graph.getDirectedGraphNodes());
+    int nodeCount = sourceNodes.size();
+    nodeMap = Maps.newHashMapWithExpectedSize(nodeCount);
+    nodes = new CompactNode[nodeCount];
+    int edgeCount = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      N value = sourceNodes.get(i).getValue();
+      nodes[i] = new CompactNode<N, E>(this, i, value);
+      nodeMap.put(value, nodes[i]);
+      edgeCount += sourceNodes.get(i).getOutEdges().size();
+    }
+
+    edges = new CompactEdge[edgeCount];
+    outStart = new int[nodeCount + 1];
+    succ = new int[edgeCount];
+    int[] inDegree = new int[nodeCount];
+    int position = 0;
+    for (int i = 0; i < nodeCount; i++) {
+      outStart[i] = position;
+      for (DiGraphEdge<N, E> edge : sourceNodes.get(i).getOutEdges()) {
+        CompactNode<N, E> dest =
+            nodeMap.get(edge.getDestination().getValue());
+        edges[position] = new CompactEdge<N, E>(
+            nodes[i], edge.getValue(), dest);
+        succ[position] = dest.index;
+        inDegree[dest.index]++;
+        position++;
+      }
+    }
+    outStart[nodeCount] = position;
+
+    // Bucket the edges by destination.
+    inStart = new int[nodeCount + 1];
+    for (int i = 0; i < nodeCount; i++) {
+      inStart[i + 1] = inStart[i] + inDegree[i];
+    }
+    inEdges = new int[edgeCount];
+    pred = new int[edgeCount];
+    int[] next = Arrays.copyOf(inStart, nodeCount);
+    for (int i = 0; i < nodeCount; i++) {
+      for (int e = outStart[i]; e < outStart[i + 1]; e++) {
+        int slot = next[succ[e]]++;
+        inEdges[slot] = e;
+        pred[slot] = i;
+      }
+    }
+  }
+
+  /** Gets the number of nodes. Nodes are numbered from 0 to this - 1. */
+  public int getNodeCount() {
+    return nodes.length;
+  }
+
+  /** Gets the index of the node with the given value. */
+  public int getNodeIndex(N value) {
+    return this.<CompactNode<N, E>>getNodeOrFail(value).index;
+  }
+
+  /** Gets the node with the given index. */
+  public DiGraphNode<N, E> getNode(int index) {
+    return nodes[index];
+  }
+
+  /** Gets the value of the node with the given index. */
+  public N getNodeValue(int index) {
+    return nodes[index].value;
+  }
+
+  public int getOutDegree(int index) {
+    return outStart[index + 1] - outStart[index];
+  }
+
+  public int getInDegree(int index) {
+    return inStart[index + 1] - inStart[index];
+  }
+
+  /** Gets the index of the destination of the i-th out edge of a node. */
+  public int getSuccessor(int index, int i) {
+    return succ[outStart[index] + i];
+  }
+
+  /** Gets the index of the source of the i-th in edge of a node. */
+  public int getPredecessor(int index, int i) {
+    return pred[inStart[index] + i];
+  }
+
+  /** Gets the value of the i-th out edge of a node. */
+  public E getOutEdgeValue(int index, int i) {
+    return edges[outStart[index] + i].getValue();
+  }
+
+  /**
+   * Numbers the strongly connected components of the graph in topological
+   * order: if there is a path from a node in one component to a node in
+   * another, the first component has the lower number.
+   *
+   * @return the component number of each node, from 0 to the number of
+   *     components - 1.
+   */
+  public int[] getStronglyConnectedComponents() {
+    // Tarjan's algorithm, with an explicit stack for the depth-first search
+    // so that long paths do not overflow the call stack. It finds the
+    // components in reverse topological order.
+    int nodeCount = nodes.length;
+    int[] order = new int[nodeCount];
+    int[] lowLink = new int[nodeCount];
+    int[] component = new int[nodeCount];
+    Arrays.fill(order, -1);
+    Arrays.fill(component, -1);
+    int[] componentStack = new int[nodeCount];
+    int componentStackSize = 0;
+    int[] searchStack = new int[nodeCount];
+    int[] nextEdge = new int[nodeCount];
+    int visited = 0;
+    int componentCount = 0;
+
+    for (int root = 0; root < nodeCount; root++) {
+      if (order[root] != -1) {
+        continue;
+      }
+      order[root] = lowLink[root] = visited++;
+      componentStack[componentStackSize++] = root;
+      nextEdge[root] = outStart[root];
+      int depth = 0;
+      searchStack[0] = root;
+      while (depth >= 0) {
+        int node = searchStack[depth];
+        if (nextEdge[node] < outStart[node + 1]) {
+          int next = succ[nextEdge[node]++];
+          if (order[next] == -1) {
+            order[next] = lowLink[next] = visited++;
+            componentStack[componentStackSize++] = next;
+            nextEdge[next] = outStart[next];
+            searchStack[++depth] = next;
+          } else if (component[next] == -1) {
+            // Still on the component stack.
+            lowLink[node] = Math.min(lowLink[node], order[next]);
+          }
+          continue;
+        }
+
+        if (lowLink[node] == order[node]) {
+          int member;
+          do {
+            member = componentStack[--componentStackSize];
+            component[member] = componentCount;
+          } while (member != node);
+          componentCount++;
+        }
+        depth--;
+        if (depth >= 0) {
+          int parent = searchStack[depth];
+          lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+        }
+      }
+    }
+
+    for (int i = 0; i < nodeCount; i++) {
+      component[i] = componentCount - 1 - component[i];
+    }
+    return component;
+  }
+
+  @Override
+  public Iterable<DiGraphNode<N, E>> getDirectedGraphNodes() {
+    return Collections.<DiGraphNode<N, E>>unmodifiableList(
+        Arrays.asList(nodes));
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getOutEdges(N nodeValue) {
+    return this.<CompactNode<N, E>>getNodeOrFail(nodeValue).getOutEdges();
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getInEdges(N nodeValue) {
+    return this.<CompactNode<N, E>>getNodeOrFail(nodeValue).getInEdges();
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedPredNodes(DiGraphNode<N, E> n) {
+    return checkNode(n).getPredNodes();
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedSuccNodes(DiGraphNode<N, E> n) {
+    return checkNode(n).getSuccNodes();
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedPredNodes(N nodeValue) {
+    return getDirectedPredNodes(nodeMap.get(nodeValue));
+  }
+
+  @Override
+  public List<DiGraphNode<N, E>> getDirectedSuccNodes(N nodeValue) {
+    return getDirectedSuccNodes(nodeMap.get(nodeValue));
+  }
+
+  private CompactNode<N, E> checkNode(DiGraphNode<N, E> n) {
+    if (n == null) {
+      throw new IllegalArgumentException(n + " is null");
+    }
+    Preconditions.checkArgument(((CompactNode<N, E>) n).graph == this);
+    return (CompactNode<N, E>) n;
+  }
+
+  /**
+   * Returns the existing node for the value; new nodes cannot be added.
+   */
+  @Override
+  public DiGraphNode<N, E> createDirectedGraphNode(N nodeValue) {
+    CompactNode<N, E> node = nodeMap.get(nodeValue);
+    if (node == null) {
+      throw new UnsupportedOperationException("Graph is immutable");
+    }
+    return node;
+  }
+
+  @Override
+  public GraphNode<N, E> createNode(N value) {
+    return createDirectedGraphNode(value);
+  }
+
+  @Override
+  public DiGraphNode<N, E> getDirectedGraphNode(N nodeValue) {
+    return nodeMap.get(nodeValue);
+  }
+
+  @Override
+  public GraphNode<N, E> getNode(N value) {
+    return nodeMap.get(value);
+  }
+
+  @Override
+  public List<DiGraphEdge<N, E>> getDirectedGraphEdges(N n1, N n2) {
+    CompactNode<N, E> node1 = getNodeOrFail(n1);
+    CompactNode<N, E> node2 = getNodeOrFail(n2);
+    List<DiGraphEdge<N, E>> result = Lists.newArrayList();
+    for (int e = outStart[node1.index]; e < outStart[node1.index + 1]; e++) {
+      if (succ[e] == node2.index) {
+        result.add(edges[e]);
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public boolean isConnectedInDirection(N n1, N n2) {
+    return findEdge(n1, n2, false, null) != null;
+  }
+
+  @Override
+  public boolean isConnectedInDirection(N n1, E edgeValue, N n2) {
+    return findEdge(n1, n2, true, edgeValue) != null;
+  }
+
+  private CompactEdge<N, E> findEdge(
+      N n1, N n2, boolean matchValue, E edgeValue) {
+    CompactNode<N, E> node1 = getNodeOrFail(n1);
+    CompactNode<N, E> node2 = getNodeOrFail(n2);
+    for (int e = outStart[node1.index]; e < outStart[node1.index + 1]; e++) {
+      if (succ[e] == node2.index && (!matchValue ||
+          (edgeValue == null ? edges[e].getValue() == null :
+           edgeValue.equals(edges[e].getValue())))) {
+        return edges[e];
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<GraphEdge<N, E>> getEdges(N n1, N n2) {
+    List<GraphEdge<N, E>> result = Lists.newArrayList();
+    result.addAll(getDirectedGraphEdges(n1, n2));
+    result.addAll(getDirectedGraphEdges(n2, n1));
+    return result;
+  }
+
+  @Override
+  public GraphEdge<N, E> getFirstEdge(N n1, N n2) {
+    CompactEdge<N, E> edge = findEdge(n1, n2, false, null);
+    return edge != null ? edge : findEdge(n2, n1, false, null);
+  }
+
+  @Override
+  public Collection<GraphNode<N, E>> getNodes() {
+    return Collections.<GraphNode<N, E>>unmodifiableList(Arrays.asList(nodes));
+  }
+
+  @Override
+  public List<GraphEdge<N, E>> getEdges() {
+    return Collections.<GraphEdge<N, E>>unmodifiableList(Arrays.asList(edges));
+  }
+
+  @Override
+  public int getNodeDegree(N value) {
+    CompactNode<N, E> node = getNodeOrFail(value);
+    return getInDegree(node.index) + getOutDegree(node.index);
+  }
+
+  @Override
+  public List<GraphNode<N, E>> getNeighborNodes(N value) {
+    CompactNode<N, E> node = getNodeOrFail(value);
+    List<GraphNode<N, E>> result = Lists.newArrayList();
+    result.addAll(node.getPredNodes());
+    result.addAll(node.getSuccNodes());
+    return result;
+  }
+
+  @Override
+  public Iterator<GraphNode<N, E>> getNeighborNodesIterator(N value) {
+    return getNeighborNodes(value).iterator();
+  }
+
+  @Override
+  public SubGraph<N, E> newSubGraph() {
+    return new SimpleSubGraph<N, E>(this);
+  }
+
+  @Override
+  public void connect(N n1, E edge, N n2) {
+    throw new UnsupportedOperationException("Graph is immutable");
+  }
+
+  @Override
+  public void disconnect(N n1, N n2) {
+    throw new UnsupportedOperationException("Graph is immutable");
+  }
+
+  @Override
+  public void disconnectInDirection(N n1, N n2) {
+    throw new UnsupportedOperationException("Graph is immutable");
+  }
+
+  /**
+   * A node of a compact graph. Its edge and neighbor lists are views over
+   * the graph's arrays, created when first asked for.
+   */
+  private static final class CompactNode<N, E>
+      implements DiGraphNode<N, E> {
+    private final CompactDirectedGraph<N, E> graph;
+    private final int index;
+    private final N value;
+    private Annotation annotation;
+
+    private List<DiGraphEdge<N, E>> outEdges;
+    private List<DiGraphEdge<N, E>> inEdges;
+    private List<DiGraphNode<N, E>> succNodes;
+    private List<DiGraphNode<N, E>> predNodes;
+
+    CompactNode(CompactDirectedGraph<N, E> graph, int index, N value) {
+      this.graph = graph;
+      this.index = index;
+      this.value = value;
+    }
+
+    private void initLists() {
+      final CompactDirectedGraph<N, E> g = graph;
+      final int outOffset = g.outStart[index];
+      final int outCount = g.outStart[index + 1] - outOffset;
+      final int inOffset = g.inStart[index];
+      final int inCount = g.inStart[index + 1] - inOffset;
+      outEdges = new AbstractList<DiGraphEdge<N, E>>() {
+        @Override
+        public DiGraphEdge<N, E> get(int i) {
+          Preconditions.checkElementIndex(i, outCount);
+          return g.edges[outOffset + i];
+        }
+
+        @Override
+        public int size() {
+          return outCount;
+        }
+      };
+      inEdges = new AbstractList<DiGraphEdge<N, E>>() {
+        @Override
+        public DiGraphEdge<N, E> get(int i) {
+          Preconditions.checkElementIndex(i, inCount);
+          return g.edges[g.inEdges[inOffset + i]];
+        }
+
+        @Override
+        public int size() {
+          return inCount;
+        }
+      };
+      succNodes = new AbstractList<DiGraphNode<N, E>>() {
+        @Override
+        public DiGraphNode<N, E> get(int i) {
+          Preconditions.checkElementIndex(i, outCount);
+          return g.nodes[g.succ[outOffset + i]];
+        }
+
+        @Override
+        public int size() {
+          return outCount;
+        }
+      };
+      predNodes = new AbstractList<DiGraphNode<N, E>>() {
+        @Override
+        public DiGraphNode<N, E> get(int i) {
+          Preconditions.checkElementIndex(i, inCount);
+          return g.nodes[g.pred[inOffset + i]];
+        }
+
+        @Override
+        public int size() {
+          return inCount;
+        }
+      };
+    }
+
+    @Override
+    public N getValue() {
+      return value;
+    }
+
+    @Override
+    public List<DiGraphEdge<N, E>> getOutEdges() {
+      if (outEdges == null) {
+        initLists();
+      }
+      return outEdges;
+    }
+
+    @Override
+    public List<DiGraphEdge<N, E>> getInEdges() {
+      if (inEdges == null) {
+        initLists();
+      }
+      return inEdges;
+    }
+
+    List<DiGraphNode<N, E>> getSuccNodes() {
+      if (succNodes == null) {
+        initLists();
+      }
+      return succNodes;
+    }
+
+    List<DiGraphNode<N, E>> getPredNodes() {
+      if (predNodes == null) {
+        initLists();
+      }
+      return predNodes;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <A extends Annotation> A getAnnotation() {
+      return (A) annotation;
+    }
+
+    @Override
+    public void setAnnotation(Annotation data) {
+      annotation = data;
+    }
+
+    @Override
+    public String toString() {
+      return value != null ? value.toString() : "null";
+    }
+  }
+
+  /** An edge of a compact graph. */
+  private static final class CompactEdge<N, E> implements DiGraphEdge<N, E> {
+    private final CompactNode<N, E> source;
+    private final E value;
+    private final CompactNode<N, E> destination;
+    private Annotation annotation;
+
+    CompactEdge(CompactNode<N, E> source, E value,
+        CompactNode<N, E> destination) {
+      this.source = source;
+      this.value = value;
+      this.destination = destination;
+    }
+
+    @Override
+    public DiGraphNode<N, E> getSource() {
+      return source;
+    }
+
+    @Override
+    public DiGraphNode<N, E> getDestination() {
+      return destination;
+    }
+
+    @Override
+    public void setSource(DiGraphNode<N, E> node) {
+      throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public void setDestination(DiGraphNode<N, E> node) {
+      throw new UnsupportedOperationException("Graph is immutable");
+    }
+
+    @Override
+    public E getValue() {
+      return value;
+    }
+
+    @Override
+    public GraphNode<N, E> getNodeA() {
+      return source;
+    }
+
+    @Override
+    public GraphNode<N, E> getNodeB() {
+      return destination;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <A extends Annotation> A getAnnotation() {
+      return (A) annotation;
+    }
+
+    @Override
+    public void setAnnotation(Annotation data) {
+      annotation = data;
+    }
+
+    @Override
+    public String toString() {
+      return source + " -> " + destination;
+    }
+  }
+}
@@ -98,6 +98,12 @@ public final class FixedPointGraphTraversal<N, E> {
     // doesn't converge.
     long maxIterations = Math.max(nodeCount * nodeCount * nodeCount, 100);
 
+    if (graph instanceof CompactDirectedGraph) {
+      computeFixedPoint(
+          (CompactDirectedGraph<N, E>) graph, entrySet, maxIterations);
+      return;
+    }
+
     // Use a LinkedHashSet, so that the traversal is deterministic.
     LinkedHashSet<DiGraphNode<N, E>> workSet =
         Sets.newLinkedHashSet();
@@ -127,6 +133,49 @@ public final class FixedPointGraphTraversal<N, E> {
         NON_HALTING_ERROR_MSG);
   }
 
+  /**
+   * Computes the fixed point over the node indices of a compact graph. Nodes
+   * are visited in the same order as with the work set above: a node that
+   * is already waiting is not queued again.
+   */
+  private void computeFixedPoint(CompactDirectedGraph<N, E> graph,
+      Set<N> entrySet, long maxIterations) {
+    int nodeCount = graph.getNodeCount();
+    int[] queue = new int[Math.max(nodeCount, 1)];
+    boolean[] queued = new boolean[nodeCount];
+    int head = 0;
+    int size = 0;
+    for (N n : entrySet) {
+      int index = graph.getNodeIndex(n);
+      if (!queued[index]) {
+        queued[index] = true;
+        queue[size++] = index;
+      }
+    }
+
+    int cycleCount = 0;
+    for (; size > 0 && cycleCount < maxIterations; cycleCount++) {
+      int source = queue[head];
+      head = (head + 1) % queue.length;
+      size--;
+      queued[source] = false;
+      N sourceValue = graph.getNodeValue(source);
+
+      for (int i = 0, n = graph.getOutDegree(source); i < n; i++) {
+        int dest = graph.getSuccessor(source, i);
+        if (callback.traverseEdge(sourceValue,
+                graph.getOutEdgeValue(source, i), graph.getNodeValue(dest)) &&
+            !queued[dest]) {
+          queued[dest] = true;
+          queue[(head + size++) % queue.length] = dest;
+        }
+      }
+    }
+
+    Preconditions.checkState(cycleCount != maxIterations,
+        NON_HALTING_ERROR_MSG);
+  }
+
   public static interface EdgeCallback<Node, Edge> {
     /**
      * Update the state of the destination node when the given edge
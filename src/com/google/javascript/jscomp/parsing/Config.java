@@ -17,6 +17,7 @@
 package com.google.javascript.jscomp.parsing;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
 
 import java.util.Map;
 import java.util.Set;
@@ -81,6 +82,19 @@ public class Config {
     this.acceptConstKeyword = acceptConstKeyword;
   }
 
+  /**
+   * Returns a string that changes whenever a setting that affects the
+   * parsed AST changes, for use in keys of cached ASTs.
+   */
+  public String getFingerprint() {
+    return "mode=" + languageMode
+        + ";ide=" + isIdeMode
+        + ";docs=" + parseJsDocDocumentation
+        + ";const=" + acceptConstKeyword
+        + ";annotations=" + Sets.newTreeSet(annotationNames.keySet())
+        + ";suppressions=" + Sets.newTreeSet(suppressionNames);
+  }
+
   /**
    * Create the annotation names from the user-specified
    * annotation whitelist.
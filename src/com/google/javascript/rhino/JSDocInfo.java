@@ -39,6 +39,7 @@
 
 package com.google.javascript.rhino;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
@@ -149,6 +150,33 @@ public class JSDocInfo implements Serializable {
     public TypePosition type = null;
   }
 
+  /**
+   * Receives the fields of a {@link JSDocInfo} from {@link #encode}.
+   * Implemented by {@link NodeCodec}, which owns the format.
+   */
+  interface FieldWriter {
+    void writeVarint(int value);
+    void writeInt(int value);
+    void writeString(String value);
+    void writeStrings(Collection<String> values);
+    void writeTypeExpression(JSTypeExpression expr);
+    void writeTypeExpressions(List<JSTypeExpression> exprs);
+  }
+
+  /**
+   * Supplies the fields written by {@link #encode} to {@link #restore}.
+   * Implementations throw {@link IllegalArgumentException} for input that
+   * is not well formed.
+   */
+  interface FieldReader {
+    int readVarint();
+    int readInt();
+    String readString();
+    Set<String> readStrings();
+    JSTypeExpression readTypeExpression();
+    List<JSTypeExpression> readTypeExpressions();
+  }
+
   private LazilyInitializedInfo info = null;
 
   private LazilyInitializedDocumentation documentation = null;
@@ -1358,4 +1386,90 @@ public class JSDocInfo implements Serializable {
     }
     documentation.sourceComment = sourceComment;
   }
+
+  /**
+   * Writes the fields of this object for {@link NodeCodec}.
+   * @throws IllegalArgumentException if this object holds documentation,
+   *     which cannot be encoded.
+   */
+  void encode(FieldWriter out) {
+    Preconditions.checkArgument(documentation == null,
+        "JSDoc documentation is not supported");
+    out.writeVarint(includeDocumentation ? 1 : 0);
+    out.writeString(sourceName);
+    out.writeVarint(visibility == null ? 0 : visibility.ordinal() + 1);
+    out.writeInt(bitset);
+    out.writeTypeExpression(type);
+    out.writeTypeExpression(thisType);
+
+    out.writeVarint(info == null ? 0 : 1);
+    if (info != null) {
+      out.writeTypeExpression(info.baseType);
+      out.writeTypeExpressions(info.extendedInterfaces);
+      out.writeTypeExpressions(info.implementedInterfaces);
+      if (info.parameters == null) {
+        out.writeVarint(0);
+      } else {
+        out.writeVarint(info.parameters.size() + 1);
+        for (Map.Entry<String, JSTypeExpression> entry :
+                 info.parameters.entrySet()) {
+          out.writeString(entry.getKey());
+          out.writeTypeExpression(entry.getValue());
+        }
+      }
+      out.writeTypeExpressions(info.thrownTypes);
+      out.writeString(info.templateTypeName);
+      out.writeString(info.description);
+      out.writeString(info.meaning);
+      out.writeString(info.deprecated);
+      out.writeString(info.license);
+      out.writeStrings(info.suppressions);
+      out.writeStrings(info.modifies);
+      out.writeString(info.lendsName);
+    }
+  }
+
+  /**
+   * Restores the fields written by {@link #encode} into this newly created
+   * object, for {@link NodeCodec}.
+   * @throws IllegalArgumentException if the fields are not valid.
+   */
+  void restore(FieldReader in) {
+    includeDocumentation = in.readVarint() != 0;
+    sourceName = in.readString();
+    int visibilityIndex = in.readVarint();
+    Visibility[] visibilities = Visibility.values();
+    Preconditions.checkArgument(
+        visibilityIndex >= 0 && visibilityIndex <= visibilities.length,
+        "Unknown visibility %s", visibilityIndex);
+    visibility =
+        visibilityIndex == 0 ? null : visibilities[visibilityIndex - 1];
+    bitset = in.readInt();
+    type = in.readTypeExpression();
+    thisType = in.readTypeExpression();
+
+    if (in.readVarint() != 0) {
+      info = new LazilyInitializedInfo();
+      info.baseType = in.readTypeExpression();
+      info.extendedInterfaces = in.readTypeExpressions();
+      info.implementedInterfaces = in.readTypeExpressions();
+      int paramCount = in.readVarint();
+      if (paramCount != 0) {
+        info.parameters = new LinkedHashMap<String, JSTypeExpression>();
+        for (int i = 1; i < paramCount; i++) {
+          String name = in.readString();
+          info.parameters.put(name, in.readTypeExpression());
+        }
+      }
+      info.thrownTypes = in.readTypeExpressions();
+      info.templateTypeName = in.readString();
+      info.description = in.readString();
+      info.meaning = in.readString();
+      info.deprecated = in.readString();
+      info.license = in.readString();
+      info.suppressions = in.readStrings();
+      info.modifies = in.readStrings();
+      info.lendsName = in.readString();
+    }
+  }
 }
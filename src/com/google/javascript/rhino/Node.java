@@ -917,7 +917,7 @@ public class Node implements Cloneable, Serializable {
   }
 
   // Gets all the property types, in sorted order.
-  private int[] getSortedPropTypes() {
+  int[] getSortedPropTypes() {
     int count = 0;
     for (PropListItem x = propListHead; x != null; x = x.getNext()) {
       count++;
@@ -933,6 +933,24 @@ public class Node implements Cloneable, Serializable {
     return keys;
   }
 
+  /**
+   * Whether the given property is stored as an int rather than an object.
+   * Used by {@link NodeCodec}, which needs to see the raw property list.
+   */
+  boolean isIntProp(int propType) {
+    return lookupProperty(propType) instanceof IntPropListItem;
+  }
+
+  /** Whether this node was created by {@link #newString}. */
+  boolean isStringNode() {
+    return this instanceof StringNode;
+  }
+
+  /** Whether this node was created by {@link #newNumber}. */
+  boolean isNumberNode() {
+    return this instanceof NumberNode;
+  }
+
   public int getLineno() {
     return extractLineno(sourcePosition);
   }
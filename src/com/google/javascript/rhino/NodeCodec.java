@@ -0,0 +1,481 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Encodes freshly parsed ASTs into a compact binary format, and decodes them
+ * back. This is much smaller and faster than Java serialization of the
+ * {@link Node} and property list objects, and decoding works directly on a
+ * {@link ByteBuffer}, so a memory-mapped file can be read without copying.
+ *
+ * <p>Only what the parser produces is supported: plain, string and number
+ * nodes, without types, whose properties are ints, strings, booleans,
+ * string sets and {@link JSDocInfo} without documentation. Anything else
+ * makes {@link #encode} throw an {@link IllegalArgumentException}.
+ *
+ * <p>Strings and {@link JSDocInfo} objects are written once and referred to
+ * by index afterwards, so the sharing in the original tree is preserved.
+ */
+public final class NodeCodec {
+
+  private static final int MAGIC = 0x4A534143;  // "JSAC"
+
+  /** Must be incremented whenever the format changes. */
+  public static final int VERSION = 1;
+
+  // Node kinds.
+  private static final int PLAIN_NODE = 0;
+  private static final int STRING_NODE = 1;
+  private static final int NUMBER_NODE = 2;
+
+  // Property value tags.
+  private static final int INT_VALUE = 0;
+  private static final int STRING_VALUE = 1;
+  private static final int BOOLEAN_VALUE = 2;
+  private static final int STRING_SET_VALUE = 3;
+  private static final int JSDOC_VALUE = 4;
+
+  // Should never need to instantiate class of static methods.
+  private NodeCodec() {}
+
+  /**
+   * Encodes the tree rooted at {@code root}.
+   * @throws IllegalArgumentException if the tree contains nodes or
+   *     properties that the format cannot represent.
+   */
+  public static byte[] encode(Node root) {
+    Encoder encoder = new Encoder();
+    encoder.writeInt(MAGIC);
+    encoder.writeInt(VERSION);
+    encoder.writeNode(root);
+    return encoder.out.toByteArray();
+  }
+
+  /**
+   * Decodes a tree from the current position of {@code buffer}.
+   * @throws IllegalArgumentException if the buffer does not contain a tree
+   *     encoded in the current format.
+   */
+  public static Node decode(ByteBuffer buffer) {
+    try {
+      Preconditions.checkArgument(
+          buffer.getInt() == MAGIC && buffer.getInt() == VERSION,
+          "Not an encoded AST of version %s", VERSION);
+      return new Decoder(buffer).readNode();
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Truncated AST", e);
+    }
+  }
+
+  private static class Encoder implements JSDocInfo.FieldWriter {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final Map<String, Integer> strings = Maps.newHashMap();
+    final Map<JSDocInfo, Integer> docInfos =
+        new IdentityHashMap<JSDocInfo, Integer>();
+
+    void writeNode(Node n) {
+      Preconditions.checkArgument(n.getJSType() == null,
+          "Typed nodes are not supported");
+      Preconditions.checkArgument(n.getClass() == Node.class
+          || n.isStringNode() || n.isNumberNode(),
+          "Unsupported node class %s", n.getClass());
+
+      if (n.isStringNode()) {
+        writeVarint(STRING_NODE);
+        writeVarint(n.getType());
+        writeSignedVarint(n.getSourcePosition());
+        writeString(n.getString());
+      } else if (n.isNumberNode()) {
+        writeVarint(NUMBER_NODE);
+        writeVarint(n.getType());
+        writeSignedVarint(n.getSourcePosition());
+        writeLong(Double.doubleToRawLongBits(n.getDouble()));
+      } else {
+        writeVarint(PLAIN_NODE);
+        writeVarint(n.getType());
+        writeSignedVarint(n.getSourcePosition());
+      }
+
+      int[] propTypes = n.getSortedPropTypes();
+      writeVarint(propTypes.length);
+      for (int propType : propTypes) {
+        writeSignedVarint(propType);
+        if (n.isIntProp(propType)) {
+          writeVarint(INT_VALUE);
+          writeSignedVarint(n.getIntProp(propType));
+        } else {
+          writeObjectProp(propType, n.getProp(propType));
+        }
+      }
+
+      writeVarint(n.getChildCount());
+      for (Node c = n.getFirstChild(); c != null; c = c.getNext()) {
+        writeNode(c);
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    void writeObjectProp(int propType, Object value) {
+      if (value instanceof String) {
+        writeVarint(STRING_VALUE);
+        writeString((String) value);
+      } else if (value instanceof Boolean) {
+        writeVarint(BOOLEAN_VALUE);
+        writeVarint(((Boolean) value) ? 1 : 0);
+      } else if (value instanceof JSDocInfo) {
+        writeVarint(JSDOC_VALUE);
+        writeDocInfo((JSDocInfo) value);
+      } else if (propType == Node.DIRECTIVES) {
+        writeVarint(STRING_SET_VALUE);
+        writeStrings((Set<String>) value);
+      } else {
+        throw new IllegalArgumentException(
+            "Unsupported value for property " + propType + ": " + value);
+      }
+    }
+
+    void writeDocInfo(JSDocInfo info) {
+      Integer index = docInfos.get(info);
+      if (index != null) {
+        writeVarint(index + 1);
+        return;
+      }
+      docInfos.put(info, docInfos.size());
+      writeVarint(0);
+      info.encode(this);
+    }
+
+    @Override
+    public void writeTypeExpression(JSTypeExpression expr) {
+      if (expr == null) {
+        writeVarint(0);
+      } else {
+        writeVarint(1);
+        writeString(expr.getSourceName());
+        writeNode(expr.getRoot());
+      }
+    }
+
+    @Override
+    public void writeTypeExpressions(List<JSTypeExpression> exprs) {
+      if (exprs == null) {
+        writeVarint(0);
+      } else {
+        writeVarint(exprs.size() + 1);
+        for (JSTypeExpression expr : exprs) {
+          writeTypeExpression(expr);
+        }
+      }
+    }
+
+    @Override
+    public void writeStrings(Collection<String> values) {
+      if (values == null) {
+        writeVarint(0);
+      } else {
+        writeVarint(values.size() + 1);
+        for (String value : values) {
+          writeString(value);
+        }
+      }
+    }
+
+    /**
+     * Writes 0 for null, 1 followed by the characters for a string that has
+     * not been seen yet, or the index of the string plus 2.
+     */
+    @Override
+    public void writeString(String value) {
+      if (value == null) {
+        writeVarint(0);
+        return;
+      }
+      Integer index = strings.get(value);
+      if (index != null) {
+        writeVarint(index + 2);
+        return;
+      }
+      strings.put(value, strings.size());
+      writeVarint(1);
+      int length = value.length();
+      writeVarint(length);
+      // Chars are written one at a time, rather than as UTF-8, so that
+      // unpaired surrogates in string literals survive the round trip.
+      for (int i = 0; i < length; i++) {
+        writeVarint(value.charAt(i));
+      }
+    }
+
+    @Override
+    public void writeInt(int value) {
+      out.write(value >>> 24);
+      out.write(value >>> 16);
+      out.write(value >>> 8);
+      out.write(value);
+    }
+
+    void writeLong(long value) {
+      writeInt((int) (value >>> 32));
+      writeInt((int) value);
+    }
+
+    @Override
+    public void writeVarint(int value) {
+      while ((value & ~0x7F) != 0) {
+        out.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.write(value);
+    }
+
+    void writeSignedVarint(int value) {
+      writeVarint((value << 1) ^ (value >> 31));
+    }
+  }
+
+  private static class Decoder implements JSDocInfo.FieldReader {
+    final ByteBuffer in;
+    final List<String> strings = Lists.newArrayList();
+    final List<JSDocInfo> docInfos = Lists.newArrayList();
+
+    // Nodes whose only property is a given source name share one property
+    // list, as they do when the parser creates them.
+    final Map<String, Node> sourceNameTemplates = Maps.newHashMap();
+
+    Decoder(ByteBuffer in) {
+      this.in = in;
+    }
+
+    Node readNode() {
+      int kind = readVarint();
+      int type = readVarint();
+      int position = readSignedVarint();
+      int lineno = Node.extractLineno(position);
+      int charno = Node.extractCharno(position);
+
+      Node n;
+      switch (kind) {
+        case STRING_NODE:
+          n = Node.newString(type, readString(), lineno, charno);
+          break;
+        case NUMBER_NODE:
+          n = Node.newNumber(
+              Double.longBitsToDouble(in.getLong()), lineno, charno);
+          break;
+        case PLAIN_NODE:
+          n = new Node(type, lineno, charno);
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown node kind " + kind);
+      }
+
+      int propCount = readVarint();
+      checkCount(propCount);
+      for (int i = 0; i < propCount; i++) {
+        int propType = readSignedVarint();
+        int tag = readVarint();
+        if (propCount == 1 && propType == Node.SOURCENAME_PROP
+            && tag == STRING_VALUE) {
+          n.clonePropsFrom(getSourceNameTemplate(readString()));
+        } else if (tag == INT_VALUE) {
+          n.putIntProp(propType, readSignedVarint());
+        } else {
+          n.putProp(propType, readObjectProp(tag));
+        }
+      }
+
+      int childCount = readVarint();
+      checkCount(childCount);
+      for (int i = 0; i < childCount; i++) {
+        n.addChildToBack(readNode());
+      }
+      return n;
+    }
+
+    Node getSourceNameTemplate(String sourceName) {
+      Node template = sourceNameTemplates.get(sourceName);
+      if (template == null) {
+        template = new Node(Token.SCRIPT);
+        template.putProp(Node.SOURCENAME_PROP, sourceName);
+        sourceNameTemplates.put(sourceName, template);
+      }
+      return template;
+    }
+
+    Object readObjectProp(int tag) {
+      switch (tag) {
+        case STRING_VALUE:
+          return readString();
+        case BOOLEAN_VALUE:
+          return readVarint() != 0;
+        case STRING_SET_VALUE:
+          return readStrings();
+        case JSDOC_VALUE:
+          return readDocInfo();
+        default:
+          throw new IllegalArgumentException("Unknown property tag " + tag);
+      }
+    }
+
+    JSDocInfo readDocInfo() {
+      int index = readVarint();
+      if (index != 0) {
+        return getIndexed(docInfos, index - 1);
+      }
+
+      // Added before it is read, as the encoder numbers it before writing
+      // its type expressions.
+      JSDocInfo info = new JSDocInfo();
+      docInfos.add(info);
+      info.restore(this);
+      return info;
+    }
+
+    @Override
+    public JSTypeExpression readTypeExpression() {
+      if (readVarint() == 0) {
+        return null;
+      }
+      String sourceName = readString();
+      return new JSTypeExpression(readNode(), sourceName);
+    }
+
+    @Override
+    public List<JSTypeExpression> readTypeExpressions() {
+      int count = readVarint();
+      if (count == 0) {
+        return null;
+      }
+      checkCount(count - 1);
+      List<JSTypeExpression> exprs = Lists.newArrayListWithCapacity(count - 1);
+      for (int i = 1; i < count; i++) {
+        exprs.add(readTypeExpression());
+      }
+      return exprs;
+    }
+
+    @Override
+    public Set<String> readStrings() {
+      int count = readVarint();
+      if (count == 0) {
+        return null;
+      }
+      checkCount(count - 1);
+      Set<String> values = Sets.newHashSetWithExpectedSize(count - 1);
+      for (int i = 1; i < count; i++) {
+        values.add(readString());
+      }
+      return values;
+    }
+
+    @Override
+    public String readString() {
+      int index = readVarint();
+      if (index == 0) {
+        return null;
+      } else if (index != 1) {
+        return getIndexed(strings, index - 2);
+      }
+      int length = readVarint();
+      checkCount(length);
+      char[] chars = new char[length];
+      for (int i = 0; i < length; i++) {
+        chars[i] = (char) readVarint();
+      }
+      String value = new String(chars);
+      strings.add(value);
+      return value;
+    }
+
+    @Override
+    public int readVarint() {
+      int result = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        byte b = in.get();
+        result |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return result;
+        }
+      }
+      throw new IllegalArgumentException("Malformed varint");
+    }
+
+    @Override
+    public int readInt() {
+      return in.getInt();
+    }
+
+    int readSignedVarint() {
+      int value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Checks a count of items that are about to be read. Each item takes at
+     * least one byte, so a count larger than what is left must be corrupt.
+     */
+    void checkCount(int count) {
+      if (count < 0 || count > in.remaining()) {
+        throw new IllegalArgumentException("Invalid count " + count);
+      }
+    }
+
+    /** Returns the item that an index read from the input refers to. */
+    <T> T getIndexed(List<T> items, int index) {
+      if (index < 0 || index >= items.size()) {
+        throw new IllegalArgumentException("Invalid back-reference " + index);
+      }
+      return items.get(index);
+    }
+  }
+}
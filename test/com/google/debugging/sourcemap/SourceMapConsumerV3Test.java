@@ -0,0 +1,84 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.debugging.sourcemap;
+
+import com.google.debugging.sourcemap.proto.Mapping.OriginalMapping;
+
+import junit.framework.TestCase;
+
+public class SourceMapConsumerV3Test extends TestCase {
+
+  public SourceMapConsumerV3Test() {
+  }
+
+  public SourceMapConsumerV3Test(String name) {
+    super(name);
+  }
+
+  public void testEmptyMap() throws Exception {
+    SourceMapConsumerV3 sourceMap = new SourceMapConsumerV3();
+    sourceMap.parse(
+        "{\"version\":3,\"file\":\"testcode\",\"lineCount\":0," +
+        "\"mappings\":\"\",\"sources\":[],\"names\":[]}");
+    assertNull(sourceMap.getMappingForLine(1, 1));
+  }
+
+  public void testGetMappingForLine() throws Exception {
+    SourceMapConsumerV3 sourceMap = new SourceMapConsumerV3();
+    sourceMap.parse(
+        "{\"version\":3,\"file\":\"testcode\",\"lineCount\":3," +
+        "\"mappings\":\"AAAA,EAAEA;;IACA;\"," +
+        "\"sources\":[\"a.js\"],\"names\":[\"foo\"]}");
+
+    assertMapping(0, 0, null, sourceMap.getMappingForLine(1, 1));
+    assertMapping(0, 2, "foo", sourceMap.getMappingForLine(1, 3));
+    assertMapping(0, 2, "foo", sourceMap.getMappingForLine(1, 10));
+
+    // An empty line maps to the last entry of the previous lines.
+    assertMapping(0, 2, "foo", sourceMap.getMappingForLine(2, 1));
+
+    // So does a column before the first entry of a line.
+    assertMapping(0, 2, "foo", sourceMap.getMappingForLine(3, 1));
+    assertMapping(1, 2, null, sourceMap.getMappingForLine(3, 5));
+
+    assertNull(sourceMap.getMappingForLine(4, 1));
+  }
+
+  public void testUnmappedEntry() throws Exception {
+    SourceMapConsumerV3 sourceMap = new SourceMapConsumerV3();
+    sourceMap.parse(
+        "{\"version\":3,\"file\":\"testcode\",\"lineCount\":1," +
+        "\"mappings\":\"AAAA,E;\"," +
+        "\"sources\":[\"a.js\"],\"names\":[]}");
+
+    assertMapping(0, 0, null, sourceMap.getMappingForLine(1, 2));
+    assertNull(sourceMap.getMappingForLine(1, 3));
+  }
+
+  private static void assertMapping(
+      int line, int column, String identifier, OriginalMapping mapping) {
+    assertNotNull(mapping);
+    assertEquals("a.js", mapping.getOriginalFile());
+    assertEquals(line, mapping.getLineNumber());
+    assertEquals(column, mapping.getColumnPosition());
+    if (identifier == null) {
+      assertFalse(mapping.hasIdentifier());
+    } else {
+      assertEquals(identifier, mapping.getIdentifier());
+    }
+  }
+}
@@ -293,6 +293,68 @@ public class SourceMapGeneratorV3Test extends SourceMapTestCase {
         "}\n");
   }
 
+  public void testWrapperPrefix() throws Exception {
+    SourceMapGeneratorV3 generator = createGenerator();
+    StringBuilder out = new StringBuilder();
+    generator.appendTo(out, "out.js");
+    assertEquals(
+        "{\n" +
+        "\"version\":3,\n" +
+        "\"file\":\"out.js\",\n" +
+        "\"lineCount\":2,\n" +
+        "\"mappings\":\"AACAA,IAAS,GAATA,G;ACEEC;\",\n" +
+        "\"sources\":[\"a.js\",\"b.js\"],\n" +
+        "\"names\":[\"f\",\"g\"]\n" +
+        "}\n",
+        out.toString());
+
+    // A prefix on the same line shifts the first line, and the code before
+    // it is unmapped.
+    generator.setWrapperPrefix("/* x */");
+    out = new StringBuilder();
+    generator.appendTo(out, "out.js");
+    assertTrue(out.toString().contains(
+        "\"mappings\":\"A,OACAA,IAAS,GAATA,G;ACEEC;\""));
+
+    generator.setWrapperPrefix("x\nyy");
+    out = new StringBuilder();
+    generator.appendTo(out, "out.js");
+    assertTrue(out.toString().contains("\"lineCount\":3,"));
+    assertTrue(out.toString().contains(
+        "\"mappings\":\"A;EACAA,IAAS,GAATA,G;ACEEC;\""));
+  }
+
+  public void testAppendToBeforeAllMappingsAreAdded() throws Exception {
+    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+    generator.addMapping("a.js", "f", new FilePosition(1, 0),
+        new FilePosition(0, 0), new FilePosition(0, 10));
+    StringBuilder partial = new StringBuilder();
+    generator.appendTo(partial, "out.js");
+    assertTrue(partial.toString().contains("\"mappings\":\"AACAA;\""));
+
+    // Appending does not close the mappings that are still open.
+    generator.addMapping("a.js", null, new FilePosition(1, 9),
+        new FilePosition(0, 4), new FilePosition(0, 7));
+    generator.addMapping("b.js", "g", new FilePosition(3, 2),
+        new FilePosition(1, 0), new FilePosition(1, 5));
+    StringBuilder out = new StringBuilder();
+    generator.appendTo(out, "out.js");
+    StringBuilder expected = new StringBuilder();
+    createGenerator().appendTo(expected, "out.js");
+    assertEquals(expected.toString(), out.toString());
+  }
+
+  private SourceMapGeneratorV3 createGenerator() {
+    SourceMapGeneratorV3 generator = new SourceMapGeneratorV3();
+    generator.addMapping("a.js", "f", new FilePosition(1, 0),
+        new FilePosition(0, 0), new FilePosition(0, 10));
+    generator.addMapping("a.js", null, new FilePosition(1, 9),
+        new FilePosition(0, 4), new FilePosition(0, 7));
+    generator.addMapping("b.js", "g", new FilePosition(3, 2),
+        new FilePosition(1, 0), new FilePosition(1, 5));
+    return generator;
+  }
+
   public void testBasicDeterminism() throws Exception {
     RunResult result1 = compile("file1", "foo;", "file2", "bar;");
     RunResult result2 = compile("file2", "foo;", "file1", "bar;");
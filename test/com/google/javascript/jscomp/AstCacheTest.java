@@ -0,0 +1,135 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.jscomp.parsing.Config;
+import com.google.javascript.jscomp.parsing.ParserRunner;
+import com.google.javascript.jscomp.testing.TestErrorReporter;
+import com.google.javascript.rhino.Node;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.logging.Logger;
+
+/**
+ * Tests for {@link AstCache}.
+ *
+ */
+public class AstCacheTest extends TestCase {
+
+  private static final Logger logger =
+      Logger.getLogger(AstCacheTest.class.getName());
+
+  private File directory;
+  private final Config config = ParserRunner.createConfig(
+      false, Config.LanguageMode.ECMASCRIPT3, false);
+
+  @Override
+  protected void setUp() throws Exception {
+    directory = File.createTempFile("astcache", "");
+    directory.delete();
+    directory.mkdir();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    for (File file : directory.listFiles()) {
+      file.delete();
+    }
+    directory.delete();
+  }
+
+  public void testSecondParseIsCacheHit() throws Exception {
+    AstCache cache = new AstCache(directory);
+    String js = "/** @param {number} x */ function f(x) { return x + 1; }";
+    Node first = parse(cache, "a.js", js);
+    Node second = parse(cache, "a.js", js);
+
+    assertEquals(1, cache.getMissCount());
+    assertEquals(1, cache.getHitCount());
+    assertNull(first.checkTreeEquals(second));
+    assertNotNull(second.getFirstChild().getJSDocInfo());
+  }
+
+  public void testChangedSourceIsCacheMiss() throws Exception {
+    AstCache cache = new AstCache(directory);
+    parse(cache, "a.js", "var x = 1;");
+    parse(cache, "a.js", "var x = 2;");
+    parse(cache, "b.js", "var x = 1;");
+    assertEquals(3, cache.getMissCount());
+    assertEquals(0, cache.getHitCount());
+  }
+
+  public void testChangedConfigIsCacheMiss() throws Exception {
+    AstCache cache = new AstCache(directory);
+    parse(cache, "a.js", "var x = 1;");
+    cache.parse("a.js", "var x = 1;",
+        ParserRunner.createConfig(false, Config.LanguageMode.ECMASCRIPT5, false),
+        new TestErrorReporter(null, null), logger);
+    assertEquals(2, cache.getMissCount());
+  }
+
+  public void testParseWithWarningsIsNotCached() throws Exception {
+    AstCache cache = new AstCache(directory);
+    String js = "/** @fileoverview a */ /** @fileoverview b */ var x;";
+    String[] warnings = {"extra @fileoverview tag"};
+    for (int i = 0; i < 2; i++) {
+      TestErrorReporter reporter = new TestErrorReporter(null, warnings);
+      assertNotNull(cache.parse("a.js", js, config, reporter, logger));
+      assertTrue(reporter.hasEncounteredAllWarnings());
+    }
+    assertEquals(2, cache.getMissCount());
+  }
+
+  public void testCorruptEntryIsIgnored() throws Exception {
+    AstCache cache = new AstCache(directory);
+    parse(cache, "a.js", "var x = 1;");
+    for (File file : directory.listFiles()) {
+      file.delete();
+      file.createNewFile();
+    }
+    Node root = parse(cache, "a.js", "var x = 1;");
+    assertNotNull(root);
+    assertEquals(2, cache.getMissCount());
+  }
+
+  public void testCompilerUsesCache() throws Exception {
+    JSSourceFile[] inputs = {
+        JSSourceFile.fromCode("a.js", "var a = function(x) { return x; };"),
+        JSSourceFile.fromCode("b.js", "/** @const */ var b = a(1);")};
+    String expected = null;
+    for (int i = 0; i < 2; i++) {
+      CompilerOptions options = new CompilerOptions();
+      options.setAstCacheDirectory(directory.getPath());
+      Compiler compiler = new Compiler();
+      compiler.compile(new JSSourceFile[0], inputs, options);
+      assertEquals(i == 0 ? 0 : 2, compiler.getAstCache().getHitCount());
+      if (expected == null) {
+        expected = compiler.toSource();
+      } else {
+        assertEquals(expected, compiler.toSource());
+      }
+    }
+  }
+
+  private Node parse(AstCache cache, String name, String js)
+      throws Exception {
+    return cache.parse(
+        name, js, config, new TestErrorReporter(null, null), logger);
+  }
+}
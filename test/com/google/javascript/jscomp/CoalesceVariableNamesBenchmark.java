@@ -0,0 +1,76 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.javascript.jscomp;
+
+import java.util.logging.Level;
+
+/**
+ * Times a compile with {@link CoalesceVariableNames} of a generated function
+ * with many short-lived locals.
+ *
+ * <p>Usage, from the build directory:
+ * <pre>
+ * java -cp classes:test:lib/* \
+ *     com.google.javascript.jscomp.CoalesceVariableNamesBenchmark \
+ *     [pairs [runs]]
+ * </pre>
+ *
+ * <p>The output length and hash are printed so that runs before and after a
+ * change can be checked for identical output.
+ */
+public class CoalesceVariableNamesBenchmark {
+
+  private CoalesceVariableNamesBenchmark() {}
+
+  /**
+   * Generates a function with the given number of pairs of locals. Each pair
+   * is live together for one call, and is then dead.
+   */
+  static String generateFunction(int pairs) {
+    StringBuilder sb = new StringBuilder("function f(p1, p2) {\n");
+    for (int i = 0; i < pairs; i++) {
+      String prev = i > 0 ? "b" + (i - 1) : "p1";
+      sb.append("var a" + i + " = g(" + prev + ");\n");
+      sb.append("var b" + i + " = g(a" + i + ");\n");
+      sb.append("h(a" + i + ", b" + i + ");\n");
+    }
+    return sb.append("return p2;}\nwindow.f = f;\n").toString();
+  }
+
+  public static void main(String[] args) {
+    int pairs = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    Compiler.setLoggingLevel(Level.WARNING);
+
+    JSSourceFile externs = JSSourceFile.fromCode("externs.js", "");
+    JSSourceFile input = JSSourceFile.fromCode(
+        "input.js", generateFunction(pairs));
+    String source = null;
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < runs; run++) {
+      CompilerOptions options = new CompilerOptions();
+      options.coalesceVariableNames = true;
+      Compiler compiler = new Compiler();
+      long start = System.nanoTime();
+      compiler.compile(externs, input, options);
+      source = compiler.toSource();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.println(2 * pairs + " locals: best of " + runs + " runs "
+        + best / 1000000 + "ms, output length " + source.length()
+        + " hash " + source.hashCode());
+  }
+}
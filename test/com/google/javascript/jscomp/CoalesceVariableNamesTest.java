@@ -201,6 +201,34 @@ public class CoalesceVariableNamesTest extends CompilerTestCase {
          "function FUNC(x, y, z) {         y; y=0; y; x; x=0; x}");
   }
 
+  public void testParametersNeverMerge() {
+    // Parameters interfere with each other even when their live ranges do
+    // not overlap, but locals can still take their names.
+    test("function FUNC(a,b,c,d) {a = 1; a; b = 1; b; c = 1; c; d = 1; d}");
+    test("function FUNC(a,b,c) {var x = 1; x; c}",
+         "function FUNC(a,b,c) {    a = 1; a; c}");
+  }
+
+  public void testSharedLiveSets() {
+    // Many CFG nodes with the same live set.
+    inFunction("var x = 1; f(x); f(x); f(x); var y = 2; f(y); f(y); y",
+               "var x = 1; f(x); f(x); f(x);     x = 2; f(x); f(x); x");
+    inFunction("var x = 1, y = 2; f(x); f(y); f(x); f(y);" +
+               "var z = 3; f(z); z",
+               "var x = 1, y = 2; f(x); f(y); f(x); f(y);" +
+               "    x = 3; f(x); x");
+  }
+
+  public void testCrossingOnlyInDefinitionNode() {
+    // x and y are never live together on entry to or exit from a CFG node,
+    // but y is assigned while x is still needed later in the same VAR.
+    inFunction("var x = f(); var y = g(), z = x; f(y, z)",
+               "var x = f(); var y = g(), x = x; f(y, x)");
+    // x dies in the node that defines y, so they can share a name.
+    inFunction("var x = 1; var y = x + 1; y",
+               "var x = 1;     x = x + 1; x");
+  }
+
   public void testLiveRangeChangeWithinCfgNode() {
     inFunction("var x, y; x = 1, y = 2, y, x");
     inFunction("var x, y; x = 1,x; y");
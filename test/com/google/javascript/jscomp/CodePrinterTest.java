@@ -949,6 +949,31 @@ public class CodePrinterTest extends TestCase {
   private void assertLineLength(String js, String expected) {
     assertEquals(expected,
         parsePrint(js, false, true, 10));
+    assertEquals(expected,
+        parsePrintTo(js, false, true, 10));
+  }
+
+  public void testPrintToCodeBuilder() {
+    String js = "function f(a) { if (a) { return \"x;y\" } var b = a + 1;" +
+        " for (var i = 0; i < b; i++) { f(i); } return b; }" +
+        " var c = f(1), d = {a: 1, b: [2, 3]}; f(c); f(d);";
+    for (int threshold : new int[] {1, 5, 10, 30, 500}) {
+      for (boolean prettyprint : new boolean[] {false, true}) {
+        assertEquals(parsePrint(js, prettyprint, true, threshold),
+            parsePrintTo(js, prettyprint, true, threshold));
+        assertEquals(parsePrint(js, prettyprint, false, threshold),
+            parsePrintTo(js, prettyprint, false, threshold));
+      }
+    }
+  }
+
+  private String parsePrintTo(String js, boolean prettyprint,
+      boolean lineBreak, int lineThreshold) {
+    Compiler.CodeBuilder cb = new Compiler.CodeBuilder();
+    new CodePrinter.Builder(parse(js)).setPrettyPrint(prettyprint)
+        .setLineLengthThreshold(lineThreshold).setLineBreak(lineBreak)
+        .buildTo(cb);
+    return cb.toString();
   }
 
   public void testParsePrintParse() {
@@ -16,7 +16,11 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.collect.Lists;
 import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import java.util.Collections;
 
 import junit.framework.TestCase;
 
@@ -102,4 +106,261 @@ public class CompilerTest extends TestCase {
         "(function (undefined) { alert(undefined); })();");
     compiler.compile(externs, input, options);
   }
+
+  public void testParallelParseMatchesSerialParse() throws Exception {
+    JSSourceFile[] externs = {
+        JSSourceFile.fromCode("externs1.js", "var window;"),
+        JSSourceFile.fromCode("externs2.js", "var document;")};
+    JSSourceFile[] inputs = new JSSourceFile[20];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = JSSourceFile.fromCode("input" + i + ".js",
+          "var a" + i + " = function(x) { if (x) alert(x); return x; };");
+    }
+
+    Compiler serial = new Compiler();
+    serial.init(externs, inputs, new CompilerOptions());
+    Node serialRoot = serial.parseInputs();
+
+    CompilerOptions options = new CompilerOptions();
+    options.setParseThreads(4);
+    Compiler parallel = new Compiler();
+    parallel.init(externs, inputs, options);
+    Node parallelRoot = parallel.parseInputs();
+
+    assertNotNull(parallelRoot);
+    assertNull(serialRoot.checkTreeEquals(parallelRoot));
+    int i = 0;
+    for (Node script = parallel.jsRoot.getFirstChild(); script != null;
+         script = script.getNext()) {
+      assertEquals("input" + i++ + ".js",
+          script.getProp(Node.SOURCENAME_PROP));
+    }
+    assertEquals(inputs.length, i);
+  }
+
+  public void testParallelParseReportsErrorsInInputOrder() throws Exception {
+    JSSourceFile[] inputs = new JSSourceFile[8];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = JSSourceFile.fromCode("input" + i + ".js",
+          i % 3 == 0 ? "var x" + i + " = ;" : "var y" + i + " = 1;");
+    }
+
+    CompilerOptions options = new CompilerOptions();
+    options.setParseThreads(4);
+    Compiler compiler = new Compiler();
+    compiler.init(new JSSourceFile[0], inputs, options);
+    assertNull(compiler.parseInputs());
+
+    JSError[] errors = compiler.getErrors();
+    assertEquals(3, errors.length);
+    assertEquals("input0.js", errors[0].sourceName);
+    assertEquals("input3.js", errors[1].sourceName);
+    assertEquals("input6.js", errors[2].sourceName);
+  }
+
+  public void testParallelPrintMatchesSerialPrint() throws Exception {
+    CompilerOptions serialOptions = createPrintOptions();
+    CompilerOptions parallelOptions = createPrintOptions();
+    parallelOptions.setPrintThreads(4);
+
+    assertEquals(print(serialOptions), print(parallelOptions));
+  }
+
+  public void testPrintToOutput() throws Exception {
+    CompilerOptions options = createPrintOptions();
+    options.lineLengthThreshold(20);
+    JSSourceFile[] inputs = {
+        JSSourceFile.fromCode("a.js", "var a = function(x) { return x; };"),
+        JSSourceFile.fromCode("b.js", "var b = a(1) + a(2) + a(3) + a(4);")};
+    Compiler compiler = new Compiler();
+    compiler.compile(new JSSourceFile[0], inputs, options);
+
+    String expected = compiler.toSource();
+    StringBuilder expectedMap = new StringBuilder();
+    compiler.getSourceMap().appendTo(expectedMap, "out.js");
+    compiler.getSourceMap().reset();
+
+    StringBuilder out = new StringBuilder();
+    compiler.toSource(out);
+    assertEquals(expected, out.toString());
+    StringBuilder map = new StringBuilder();
+    compiler.getSourceMap().appendTo(map, "out.js");
+    assertEquals(expectedMap.toString(), map.toString());
+  }
+
+  private static CompilerOptions createPrintOptions() {
+    CompilerOptions options = new CompilerOptions();
+    options.printInputDelimiter = true;
+    options.sourceMapOutputPath = "out.js.map";
+    options.sourceMapFormat = SourceMap.Format.V3;
+    options.sourceMapDetailLevel = SourceMap.DetailLevel.ALL;
+    options.setLanguageIn(CompilerOptions.LanguageMode.ECMASCRIPT5_STRICT);
+    return options;
+  }
+
+  /**
+   * Compiles a few inputs and returns all the output and the source map
+   * that goes with it.
+   */
+  private static String print(CompilerOptions options) throws Exception {
+    JSSourceFile[] inputs = new JSSourceFile[10];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = JSSourceFile.fromCode("input" + i + ".js",
+          (i % 4 == 0 ? "/** @license Input " + i + " */\n" : "") +
+          "var a" + i + " = function(x) {\n  if (x) alert(x);\n" +
+          "  return x + " + i + ";\n};\n" + (i % 3 == 0 ? "a" + i : ""));
+    }
+    Compiler compiler = new Compiler();
+    compiler.compile(new JSSourceFile[0], inputs, options);
+    assertEquals(0, compiler.getErrorCount());
+
+    StringBuilder sb = new StringBuilder();
+    sb.append(compiler.toSource()).append("\n---\n");
+    compiler.getSourceMap().appendTo(sb, "out.js");
+    sb.append("\n---\n");
+    compiler.getSourceMap().reset();
+    for (String source : compiler.toSourceArray()) {
+      sb.append(source).append("\n---\n");
+    }
+    return sb.toString();
+  }
+
+  public void testFunctionChangeStamps() throws Exception {
+    Compiler compiler = new Compiler();
+    Node root = compiler.parseTestCode(
+        "function f() { function g() {} } function h() {}");
+    Node f = root.getFirstChild();
+    Node g = f.getLastChild().getFirstChild();
+    Node h = f.getNext();
+
+    int stamp = compiler.getChangeStamp();
+    assertFalse(compiler.hasFunctionChangedSince(f, stamp));
+
+    // A change to a nested function is a change to the outermost one.
+    compiler.reportChangeToFunction(g);
+    assertTrue(compiler.hasFunctionChangedSince(f, stamp));
+    assertTrue(compiler.hasFunctionChangedSince(g, stamp));
+    assertFalse(compiler.hasFunctionChangedSince(h, stamp));
+
+    // Changes outside of all functions do not change them.
+    stamp = compiler.getChangeStamp();
+    compiler.reportChangeToFunction(null);
+    assertFalse(compiler.hasFunctionChangedSince(f, stamp));
+    assertFalse(compiler.hasFunctionChangedSince(h, stamp));
+
+    // A change reported without a function may have been anywhere.
+    compiler.reportCodeChange();
+    assertTrue(compiler.hasFunctionChangedSince(h, stamp));
+    assertFalse(compiler.hasFunctionChangedSince(
+        h, compiler.getChangeStamp()));
+  }
+
+  public void testReplaceScript() throws Exception {
+    CompilerOptions options = new CompilerOptions();
+    options.ideMode = true;
+    options.checkTypes = true;
+    JSModule module = new JSModule("m");
+    module.add(JSSourceFile.fromCode("a.js",
+        "/** @param {number} x */ function f(x) {}"));
+    module.add(JSSourceFile.fromCode("b.js", "f(1);"));
+    Compiler compiler = new Compiler();
+    Result result = compiler.compileModules(
+        Collections.<JSSourceFile>emptyList(), Lists.newArrayList(module),
+        options);
+    assertTrue(result.success);
+    assertEquals(0, result.warnings.length);
+
+    result = compiler.replaceScript(
+        JSSourceFile.fromCode("b.js", "f('one');"));
+    assertEquals(1, result.warnings.length);
+    assertEquals(TypeValidator.TYPE_MISMATCH_WARNING,
+        result.warnings[0].getType());
+    assertEquals("b.js", result.warnings[0].sourceName);
+    assertTrue(compiler.toSource(module).endsWith("f(\"one\");"));
+    assertSame(compiler.getInput("b.js"), module.getInputs().get(1));
+
+    result = compiler.replaceScript(
+        JSSourceFile.fromCode("b.js", "f(2);"));
+    assertTrue(result.success);
+    assertEquals(0, result.warnings.length);
+    assertTrue(compiler.toSource(module).endsWith("f(2);"));
+  }
+
+  public void testReplaceScriptWithParseError() throws Exception {
+    CompilerOptions options = new CompilerOptions();
+    options.ideMode = true;
+    Compiler compiler = new Compiler();
+    compiler.compile(JSSourceFile.fromCode("externs.js", ""),
+        JSSourceFile.fromCode("a.js", "var a = 1;"), options);
+
+    Result result = compiler.replaceScript(
+        JSSourceFile.fromCode("a.js", "var a = ;"));
+    assertFalse(result.success);
+    assertEquals(1, result.errors.length);
+    assertEquals("a.js", result.errors[0].sourceName);
+
+    // The errors of an update are not kept by the compiler, and the old
+    // version of the script is.
+    assertEquals(0, compiler.getErrors().length);
+    assertEquals("var a=1;", compiler.toSource());
+  }
+
+  public void testDefinitionFinderIsSharedUntilCodeChanges() throws Exception {
+    Compiler compiler = new Compiler();
+    Node root = compiler.parseTestCode("function f() {} f();");
+    Node externs = new Node(Token.BLOCK);
+    Node otherRoot = compiler.parseTestCode("function g() {}");
+
+    SimpleDefinitionFinder defFinder =
+        compiler.getDefinitionFinder(externs, root);
+    assertEquals(1, defFinder.getDefinitionSites().size());
+    assertSame(defFinder, compiler.getDefinitionFinder(externs, root));
+    assertNotSame(defFinder, compiler.getDefinitionFinder(externs, otherRoot));
+
+    defFinder = compiler.getDefinitionFinder(externs, root);
+    compiler.reportChangeToFunction(null);
+    assertNotSame(defFinder, compiler.getDefinitionFinder(externs, root));
+
+    defFinder = compiler.getDefinitionFinder(externs, root);
+    compiler.reportCodeChange();
+    assertNotSame(defFinder, compiler.getDefinitionFinder(externs, root));
+  }
+
+  public void testSyntacticScopesAreSharedUntilCodeChanges() throws Exception {
+    Compiler compiler = new Compiler();
+    Node root = compiler.parseTestCode(
+        "function f() { function g() {} } function h() {}");
+    Node f = root.getFirstChild();
+    Node g = f.getLastChild().getFirstChild();
+    Node h = root.getLastChild();
+    ScopeCreator scopeCreator = compiler.getSyntacticScopeCreator();
+
+    Scope global = scopeCreator.createScope(root, null);
+    Scope fScope = scopeCreator.createScope(f, global);
+    Scope gScope = scopeCreator.createScope(g, fScope);
+    Scope hScope = scopeCreator.createScope(h, global);
+    assertTrue(fScope.isDeclared("g", false));
+    assertSame(global, scopeCreator.createScope(root, null));
+    assertSame(fScope, scopeCreator.createScope(f, global));
+    assertSame(gScope, scopeCreator.createScope(g, fScope));
+
+    // A change in g changes the scopes of the outermost function around it.
+    compiler.reportChangeToFunction(g);
+    assertSame(global, scopeCreator.createScope(root, null));
+    Scope newFScope = scopeCreator.createScope(f, global);
+    assertNotSame(fScope, newFScope);
+    assertNotSame(gScope, scopeCreator.createScope(g, newFScope));
+    assertSame(hScope, scopeCreator.createScope(h, global));
+
+    // A change outside of functions changes the global scope, and so the
+    // scopes inside of it.
+    compiler.reportChangeToFunction(null);
+    Scope newGlobal = scopeCreator.createScope(root, null);
+    assertNotSame(global, newGlobal);
+    assertNotSame(hScope, scopeCreator.createScope(h, newGlobal));
+
+    global = newGlobal;
+    compiler.reportCodeChange();
+    assertNotSame(global, scopeCreator.createScope(root, null));
+  }
 }
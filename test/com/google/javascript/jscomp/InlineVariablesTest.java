@@ -27,6 +27,7 @@ public class InlineVariablesTest extends CompilerTestCase {
 
   private boolean inlineAllStrings = false;
   private boolean inlineLocalsOnly = false;
+  private int numThreads = 1;
 
   public InlineVariablesTest() {
     enableNormalize();
@@ -44,13 +45,15 @@ public class InlineVariablesTest extends CompilerTestCase {
         (inlineLocalsOnly)
             ? InlineVariables.Mode.LOCALS_ONLY
             : InlineVariables.Mode.ALL,
-        inlineAllStrings);
+        inlineAllStrings,
+        numThreads);
   }
 
   @Override
   public void tearDown() {
     inlineAllStrings = false;
     inlineLocalsOnly = false;
+    numThreads = 1;
   }
 
   // Test respect for scopes and blocks
@@ -59,6 +62,15 @@ public class InlineVariablesTest extends CompilerTestCase {
     test("var x = 1; var z = x;", "var z = 1;");
   }
 
+  public void testInlineGlobalAcrossScriptsInParallel() {
+    numThreads = 2;
+    test(new String[] {"var x = 1;", "var z = x;"},
+         new String[] {"", "var z = 1;"});
+    test(new String[] {"var x = 1; x = 2;",
+                       "function f() { var y = x; g(y); }"},
+         new String[] {"var x = 1; x = 2;", "function f() { g(x); }"});
+  }
+
   public void testNoInlineExportedName() {
     testSame("var _x = 1; var z = _x;");
   }
@@ -89,6 +89,15 @@ public class JSModuleGraphTest extends TestCase {
     assertDeepestCommonDep(E, F, F);
   }
 
+  public void testDeepestCommonDepBreaksTiesByModuleOrder() {
+    JSModule G = new JSModule("G");
+    G.addDependency(B);
+    G.addDependency(C);
+    graph = new JSModuleGraph(new JSModule[] {A, B, C, D, E, F, G});
+    assertDeepestCommonDep(C, E, G);
+    assertDeepestCommonDep(C, G, E);
+  }
+
   public void testDeepestCommonDepInclusive() {
     assertDeepestCommonDepInclusive(A, A, A);
     assertDeepestCommonDepInclusive(A, A, B);
@@ -122,6 +131,39 @@ public class JSModuleGraphTest extends TestCase {
     assertTransitiveDepsDeepestFirst(F, E, C, B, A);
   }
 
+  public void testModulesNotInGraphAreRejected() {
+    JSModule unused = new JSModule("unused");
+    JSModule other = new JSModule("other");
+    new JSModuleGraph(new JSModule[] {other});
+    for (JSModule m : new JSModule[] {unused, other}) {
+      try {
+        graph.dependsOn(m, A);
+        fail("Expected IllegalArgumentException for " + m);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+      try {
+        graph.getDeepestCommonDependencyInclusive(B, m);
+        fail("Expected IllegalArgumentException for " + m);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  public void testDependencyFromAnotherGraphIsRejected() {
+    JSModule G = new JSModule("G");
+    JSModule H = new JSModule("H");
+    H.addDependency(G);
+    new JSModuleGraph(new JSModule[] {G});
+    try {
+      new JSModuleGraph(new JSModule[] {H, G});
+      fail("Expected ModuleDependenceException");
+    } catch (JSModuleGraph.ModuleDependenceException e) {
+      // expected
+    }
+  }
+
   public void testCoalesceDuplicateFiles() {
     A.add(JSSourceFile.fromCode("a.js", ""));
 
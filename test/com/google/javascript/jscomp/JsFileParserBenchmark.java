@@ -0,0 +1,94 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.javascript.jscomp.deps.JsFileParser;
+
+import java.util.List;
+
+/**
+ * Times how fast {@link JsFileParser} scans in-memory sources for
+ * goog.provide and goog.require calls.
+ *
+ * <p>Usage, from the build directory:
+ * <pre>
+ * java -cp classes:test:lib/* \
+ *     com.google.javascript.jscomp.JsFileParserBenchmark \
+ *     [files [kilobytesPerFile [runs]]]
+ * </pre>
+ *
+ * <p>The first runs warm up the JIT, so only the later ones are
+ * representative. The number of requires found is printed as a check
+ * that two versions of the parser agree.
+ */
+public class JsFileParserBenchmark {
+
+  private JsFileParserBenchmark() {}
+
+  /**
+   * Generates a file that provides one namespace and requires the one
+   * before it, followed by about the given number of kilobytes of code with
+   * block comments, line comments and strings.
+   */
+  static String generateFile(int index, int kilobytes) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("goog.provide('ns").append(index).append("');\n");
+    if (index > 0) {
+      sb.append("goog.require('ns").append(index - 1).append("');\n");
+    }
+    sb.append("/**\n * File ").append(index).append(".\n */\n");
+    for (int i = 0; sb.length() < kilobytes * 1024; i++) {
+      sb.append("\n// Handles case ").append(i)
+          .append(" of the example, see the \"require\" notes.\n")
+          .append("function f").append(i).append("(a, b) {\n")
+          .append("  /* Both arguments may be undefined. */\n")
+          .append("  var s = 'goog.require is only a string here';\n")
+          .append("  if (a && b) {\n")
+          .append("    return s + a.length * b.length;  // Weighted.\n")
+          .append("  }\n")
+          .append("  return null;\n")
+          .append("}\n");
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args) {
+    int files = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int kilobytes = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+    List<String> contents = Lists.newArrayList();
+    for (int i = 0; i < files; i++) {
+      contents.add(generateFile(i, kilobytes));
+    }
+
+    JsFileParser parser =
+        new JsFileParser(new PrintStreamErrorManager(System.err));
+    for (int run = 0; run < runs; run++) {
+      long start = System.nanoTime();
+      int requires = 0;
+      for (int i = 0; i < files; i++) {
+        String name = "file" + i + ".js";
+        requires += parser.parseFile(name, name, contents.get(i))
+            .getRequires().size();
+      }
+      long elapsed = System.nanoTime() - start;
+      System.out.println("run " + run + ": " + elapsed / 1000000 + "ms"
+          + ", requires " + requires);
+    }
+  }
+}
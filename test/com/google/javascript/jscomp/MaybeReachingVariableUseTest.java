@@ -109,6 +109,22 @@ public class MaybeReachingVariableUseTest extends TestCase {
     assertMatch("var x = [], foo; D: for (x in foo) { U:x }");
   }
 
+  public void testJoinReportsEachUseOnce() {
+    assertMatch("D: var x = 1; if (a) { f() } else { g() } U: x");
+    assertMatch("D: var x = 1; while (a) { U1: x } U2: x");
+  }
+
+  public void testKillOnlyAffectsItsVariable() {
+    assertMatch("D: var x = 1; var y = 2; U1: f(x, y); y = 3; U2: x");
+    assertMatch("D: var x = 1; var y = 2; U: f(x, y); y = 3; x = 4; f(x, y)");
+  }
+
+  public void testNoUses() {
+    computeUseDef("D: var x = 1; var z; U: x");
+    assertTrue(useDef.getUses("z", def).isEmpty());
+    assertTrue(useDef.getUses("undeclared", def).isEmpty());
+  }
+
   /**
    * The def of x at D: may be used by the read of x at U:.
    */
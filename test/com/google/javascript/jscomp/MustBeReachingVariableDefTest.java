@@ -149,6 +149,40 @@ public class MustBeReachingVariableDefTest extends TestCase {
     assertNotMatch("param1=1; var x; D:x=param1; var y=arguments; U:x");
   }
 
+  public void testJoinOfSameDefinition() {
+    assertMatch("D:var x=1; if(a){ f() } else { g() }; U:x");
+    assertMatch("D:var x=1; while(a) { f() }; U:x");
+  }
+
+  public void testJoinWithBottom() {
+    // Once x has more than one definition, no later join brings one back.
+    assertNoDef("D:var x; if(a){ x=1 } else { x=2 }; U:x");
+    assertNoDef("D:var x; if(a){ x=1 } else { x=2 }; if(b) { f() }; U:x");
+    assertNoDef(
+        "D:var x; if(a){ x=1 } else { x=2 }; if(b){ x=3 } else { x=4 }; U:x");
+    assertNotMatch("var x; if(a){ x=1 } else { x=2 }; if(b){ D:x=3 }; U:x");
+
+    // A new definition replaces BOTTOM.
+    assertMatch("var x; if(a){ x=1 } else { x=2 }; D:x=3; U:x");
+  }
+
+  public void testConditionalDefinitionIsBottom() {
+    assertNoDef("D:var x=0, y; y && (x=1); U:x");
+    assertMatch("var x=0, y; y && (x=1); D:x=2; U:x");
+  }
+
+  public void testTop() {
+    // Unreachable code keeps the initial TOP estimate, which has no
+    // definition.
+    assertNoDef("D:var x=1; return; U:x");
+  }
+
+  public void testNamesOutsideTheScope() {
+    computeDefUse("D:var x=1; U:x");
+    assertNull(defUse.getDef("undeclared", use));
+    assertNull(defUse.getDef("goog", use));
+  }
+
   /**
    * The use of x at U: is the definition of x at D:.
    */
@@ -165,6 +199,14 @@ public class MustBeReachingVariableDefTest extends TestCase {
     assertNotSame(def, defUse.getDef("x", use));
   }
 
+  /**
+   * The use of x at U: has no single reaching definition.
+   */
+  private void assertNoDef(String src) {
+    computeDefUse(src);
+    assertNull(defUse.getDef("x", use));
+  }
+
   /**
    * Computes reaching definition on given source.
    */
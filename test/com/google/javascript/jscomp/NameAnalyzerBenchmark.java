@@ -0,0 +1,112 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.rhino.Node;
+import com.google.javascript.rhino.Token;
+
+import java.util.Random;
+
+/**
+ * Times the phases of {@link NameAnalyzer} on a large synthetic program
+ * made of many namespaces whose members call each other.
+ *
+ * <p>Usage, from the build directory:
+ * <pre>
+ * java -cp classes:test:lib/* \
+ *     com.google.javascript.jscomp.NameAnalyzerBenchmark \
+ *     [namespaces [members [runs]]]
+ * </pre>
+ *
+ * <p>The first runs warm up the JIT, so only the later ones are
+ * representative. The length and hash of the output make it easy to check
+ * that two versions of the pass remove the same code.
+ */
+public class NameAnalyzerBenchmark {
+
+  private NameAnalyzerBenchmark() {}
+
+  /**
+   * Generates a program with the given number of namespaces, each with the
+   * given number of members that call three random members, a constructor
+   * and a prototype method. Members only call into namespaces of the same
+   * parity, and the first member of every fiftieth namespace is exported,
+   * so the odd namespaces are unreferenced.
+   */
+  static String generateProgram(int namespaces, int members, long seed) {
+    Random random = new Random(seed);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < namespaces; i++) {
+      String ns = "ns" + i;
+      sb.append("var ").append(ns).append(" = {};\n");
+      for (int j = 0; j < members; j++) {
+        sb.append(ns).append(".m").append(j).append(" = function() {");
+        for (int k = 0; k < 3; k++) {
+          int target = 2 * random.nextInt((namespaces + 1 - i % 2) / 2) + i % 2;
+          sb.append(" ns").append(target)
+              .append(".m").append(random.nextInt(members)).append("();");
+        }
+        sb.append(" };\n");
+      }
+      sb.append(ns).append(".C = function() {};\n");
+      sb.append(ns).append(".C.prototype.f = function() { return ")
+          .append(ns).append(".m0(); };\n");
+      if (i % 50 == 0) {
+        sb.append("window['e").append(i).append("'] = ")
+            .append(ns).append(".m1;\n");
+      }
+    }
+    return sb.toString();
+  }
+
+  public static void main(String[] args) {
+    int namespaces = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+    int members = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+    String source = generateProgram(namespaces, members, 42);
+
+    for (int run = 0; run < runs; run++) {
+      Compiler compiler = new Compiler();
+      compiler.initOptions(new CompilerOptions());
+      Node root = compiler.parseTestCode(source);
+      Node externs = new Node(Token.BLOCK);
+      new Node(Token.BLOCK, externs, root);
+
+      NameAnalyzer analyzer = new NameAnalyzer(compiler, true);
+      long start = System.nanoTime();
+      analyzer.findReferences(externs, root);
+      long found = System.nanoTime();
+      analyzer.calculateReferences();
+      long calculated = System.nanoTime();
+      analyzer.removeUnreferenced();
+      long removed = System.nanoTime();
+
+      String output = compiler.toSource(root);
+      System.out.println("run " + run
+          + ": find " + toMillis(found - start) + "ms"
+          + ", propagate " + toMillis(calculated - found) + "ms"
+          + ", remove " + toMillis(removed - calculated) + "ms"
+          + ", total " + toMillis(removed - start) + "ms"
+          + ", output length " + output.length()
+          + ", hash " + output.hashCode());
+    }
+  }
+
+  private static long toMillis(long nanos) {
+    return nanos / 1000000;
+  }
+}
@@ -133,6 +133,13 @@ public class NameAnalyzerTest extends CompilerTestCase {
     testSame("var o = {};o.f = function(){o.f()};o.f()");
   }
 
+  public void testReferencedThroughCycle() {
+    test("function a(){b()}function b(){c()}function c(){a()}" +
+         "function d(){a()}window.x = b",
+         "function a(){b()}function b(){c()}function c(){a()}" +
+         "window.x = b");
+  }
+
   public void testSideEffectClassification1() {
     test("foo();", "foo();");
   }
@@ -24,6 +24,10 @@ import com.google.javascript.rhino.Node;
 
 import junit.framework.TestCase;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Unit tests for {@link ParallelCompilerPass}.
  *
@@ -61,6 +65,81 @@ public class ParallelCompilerPassTest extends TestCase {
     replace(sb.toString());
   }
 
+  public void testErrorsReportedInWorkListOrder() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      sb.append("function f" + i + "(){}");
+    }
+    String input = sb.toString();
+
+    for (int threadCount : new int[]{1, 4}) {
+      final Compiler compiler = new Compiler();
+      Node tree = compiler.parseTestCode(input);
+      String expected = compiler.toSource(tree);
+      AstParallelizer splitter = AstParallelizer
+          .createNewFunctionLevelAstParallelizer(tree, false);
+      Supplier<Task> supplier = new Supplier<Task>() {
+        @Override
+        public Task get() {
+          return new ReportFunctionNames();
+        }
+      };
+      new ParallelCompilerPass(compiler, splitter, supplier, threadCount)
+          .process(null, tree);
+
+      JSError[] warnings = compiler.getWarnings();
+      assertEquals(50, warnings.length);
+      for (int i = 0; i < 50; i++) {
+        assertEquals("f" + i, warnings[i].description);
+      }
+      assertEquals(expected, compiler.toSource(tree));
+    }
+  }
+
+  public void testErrorOnCallingThreadWaitsForHelpers() {
+    final Compiler compiler = new Compiler();
+    Node tree = compiler.parseTestCode("function f1(){}function f2(){}");
+    AstParallelizer splitter = AstParallelizer
+        .createNewFunctionLevelAstParallelizer(tree, false);
+    final Thread callingThread = Thread.currentThread();
+    final CountDownLatch helperStarted = new CountDownLatch(1);
+    final AtomicBoolean helperFinished = new AtomicBoolean();
+    Supplier<Task> supplier = new Supplier<Task>() {
+      @Override
+      public Task get() {
+        return new Task() {
+          @Override
+          public Result processSubtree(Node subtree) {
+            if (Thread.currentThread() != callingThread) {
+              helperStarted.countDown();
+              try {
+                Thread.sleep(200);
+              } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+              }
+              helperFinished.set(true);
+              return new Result();
+            }
+            try {
+              helperStarted.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+              throw new RuntimeException(e);
+            }
+            throw new StackOverflowError();
+          }
+        };
+      }
+    };
+
+    try {
+      new ParallelCompilerPass(compiler, splitter, supplier, 2)
+          .process(null, tree);
+      fail("expected StackOverflowError");
+    } catch (StackOverflowError expected) {
+      assertTrue(helperFinished.get());
+    }
+  }
+
   private void replace(String input) {
     String replace = input.replaceAll("foo", "bar");
 
@@ -88,6 +167,22 @@ public class ParallelCompilerPassTest extends TestCase {
     }
   }
 
+  private static final DiagnosticType FUNCTION_NAME =
+      DiagnosticType.warning("JSC_FUNCTION_NAME", "{0}");
+
+  /**
+   * Reports the name of each function as a warning.
+   */
+  private static class ReportFunctionNames implements Task {
+    @Override
+    public Result processSubtree(Node subtree) {
+      Result result = new Result();
+      result.errors.add(JSError.make(
+          null, subtree, FUNCTION_NAME, subtree.getFirstChild().getString()));
+      return result;
+    }
+  }
+
   /**
    * Replace all occurrences of "foo" with "bar".
    */
@@ -16,12 +16,15 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.base.Supplier;
+
 /**
  * Tests for the interaction between multiple peephole passes.
  */
 public class PeepholeIntegrationTest extends CompilerTestCase {
 
   private boolean doCommaSplitting = true;
+  private int numThreads = 1;
 
   // TODO(user): Remove this when we no longer need to do string comparison.
   private PeepholeIntegrationTest(boolean compareAsTree) {
@@ -36,6 +39,7 @@ public class PeepholeIntegrationTest extends CompilerTestCase {
   public void setUp() throws Exception {
     super.setUp();
     this.doCommaSplitting = true;
+    this.numThreads = 1;
     enableLineNumberCheck(true);
 
     // TODO(nicksantos): Turn this on. There are some normalizations
@@ -45,6 +49,19 @@ public class PeepholeIntegrationTest extends CompilerTestCase {
 
   @Override
   public CompilerPass getProcessor(final Compiler compiler) {
+    if (numThreads > 1) {
+      return new PeepholeOptimizationsPass(compiler, numThreads,
+          new Supplier<AbstractPeepholeOptimization[]>() {
+            @Override
+            public AbstractPeepholeOptimization[] get() {
+              return new AbstractPeepholeOptimization[] {
+                  new PeepholeSubstituteAlternateSyntax(doCommaSplitting),
+                  new PeepholeRemoveDeadCode(),
+                  new PeepholeFoldConstants()};
+            }
+          }, new PeepholeOptimizationsPass.History());
+    }
+
     PeepholeOptimizationsPass peepholePass =
       new PeepholeOptimizationsPass(compiler,
         new PeepholeSubstituteAlternateSyntax(doCommaSplitting),
@@ -79,6 +96,25 @@ public class PeepholeIntegrationTest extends CompilerTestCase {
     scTest.test(js, expected);
   }
 
+  public void testFoldFunctionBodiesInParallel() {
+    numThreads = 4;
+
+    fold("function f(){if(x()){}}function g(){return 1+2}",
+         "function f(){x()}function g(){return 3}");
+    fold("if(true){f=function(){if(x){}}}else{g()}" +
+         "(function(){var a=!0;while(false){a()}})()",
+         "f=function(){};(function(){var a=!0})()");
+    fold("function f(){function g(){return 1+2}return g()+(3+4)}" +
+         "var h=function(){return void 0}",
+         "function f(){function g(){return 3}return g()+7}" +
+         "var h=function(){}");
+
+    // Errors found in function bodies are still reported.
+    test("function f(){return 1<<32}function g(){}",
+         "function f(){return 1<<32}function g(){}",
+         PeepholeFoldConstants.SHIFT_AMOUNT_OUT_OF_BOUNDS);
+  }
+
   /** Check that removing blocks with 1 child works */
   public void testFoldOneChildBlocksIntegration() {
      fold("function f(){switch(foo()){default:{break}}}",
@@ -16,6 +16,7 @@
 
 package com.google.javascript.jscomp;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -255,4 +256,42 @@ public class PeepholeOptimizationsPassTest extends CompilerTestCase {
 
     test("var y; var z;", "var z;");
   }
+
+  public void testSkipsUnchangedFunctions() {
+    final List<String> visitationLog = Lists.newArrayList();
+    Supplier<AbstractPeepholeOptimization[]> logNames =
+        new Supplier<AbstractPeepholeOptimization[]>() {
+      @Override
+      public AbstractPeepholeOptimization[] get() {
+        return new AbstractPeepholeOptimization[] {
+            new AbstractPeepholeOptimization() {
+              @Override
+              public Node optimizeSubtree(Node node) {
+                if (node.getType() == Token.NAME) {
+                  visitationLog.add(node.getString());
+                }
+                return node;
+              }
+            }};
+      }
+    };
+
+    Compiler compiler = new Compiler();
+    Node root = compiler.parseTestCode(
+        "var a; function f() { var b; } function g() { var c; }");
+    Node g = root.getLastChild();
+    PeepholeOptimizationsPass.History history =
+        new PeepholeOptimizationsPass.History();
+
+    new PeepholeOptimizationsPass(compiler, 1, logNames, history)
+        .process(null, root);
+    assertEquals(ImmutableList.of("b", "c", "a", "f", "g"), visitationLog);
+
+    // Only the function that changed and the global code are visited again.
+    visitationLog.clear();
+    compiler.reportChangeToFunction(g);
+    new PeepholeOptimizationsPass(compiler, 1, logNames, history)
+        .process(null, root);
+    assertEquals(ImmutableList.of("c", "a", "f", "g"), visitationLog);
+  }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.javascript.jscomp.PersistentHashMap.DifferenceVisitor;
+
+import junit.framework.TestCase;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for {@link PersistentHashMap}.
+ *
+ */
+public class PersistentHashMapTest extends TestCase {
+
+  public void testPlusAndGet() {
+    PersistentHashMap<String, Integer> empty = PersistentHashMap.empty();
+    PersistentHashMap<String, Integer> map = empty.plus("a", 1);
+    assertTrue(empty.isEmpty());
+    assertNull(empty.get("a"));
+    assertEquals(Integer.valueOf(1), map.get("a"));
+    assertNull(map.get("b"));
+    assertNull(map.get(null));
+
+    PersistentHashMap<String, Integer> map2 = map.plus("a", 2);
+    assertEquals(Integer.valueOf(1), map.get("a"));
+    assertEquals(Integer.valueOf(2), map2.get("a"));
+    assertSame(map2, map2.plus("a", map2.get("a")));
+  }
+
+  public void testCollidingKeys() {
+    // "Aa" and "BB" have the same hash code.
+    assertEquals("Aa".hashCode(), "BB".hashCode());
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    map = map.plus("Aa", 1).plus("BB", 2).plus("AaAa", 3).plus("BBBB", 4);
+    assertEquals(Integer.valueOf(1), map.get("Aa"));
+    assertEquals(Integer.valueOf(2), map.get("BB"));
+    assertEquals(Integer.valueOf(3), map.get("AaAa"));
+    assertEquals(Integer.valueOf(4), map.get("BBBB"));
+
+    map = map.plus("BB", 5);
+    assertEquals(Integer.valueOf(1), map.get("Aa"));
+    assertEquals(Integer.valueOf(5), map.get("BB"));
+    assertDifferences(PersistentHashMap.<String, Integer>empty(), map,
+        "Aa=null/1", "AaAa=null/3", "BB=null/5", "BBBB=null/4");
+  }
+
+  public void testRandomEntries() {
+    Random random = new Random(42);
+    Map<String, Integer> expected = Maps.newHashMap();
+    PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+    for (int i = 0; i < 5000; i++) {
+      String key = "k" + random.nextInt(2000);
+      Integer value = random.nextInt();
+      expected.put(key, value);
+      map = map.plus(key, value);
+    }
+    for (int i = 0; i < 2000; i++) {
+      assertEquals(expected.get("k" + i), map.get("k" + i));
+    }
+  }
+
+  public void testShapeDoesNotDependOnOrder() {
+    List<String> keys = Lists.newArrayList();
+    for (int i = 0; i < 300; i++) {
+      keys.add("key" + i);
+    }
+    PersistentHashMap<String, String> a = PersistentHashMap.empty();
+    for (String key : keys) {
+      a = a.plus(key, key);
+    }
+    Collections.shuffle(keys, new Random(7));
+    PersistentHashMap<String, String> b = PersistentHashMap.empty();
+    for (String key : keys) {
+      b = b.plus(key, key);
+    }
+    assertDifferences(a, b);
+  }
+
+  public void testVisitDifferences() {
+    PersistentHashMap<String, String> base = PersistentHashMap.empty();
+    for (int i = 0; i < 100; i++) {
+      base = base.plus("v" + i, "base");
+    }
+    PersistentHashMap<String, String> a =
+        base.plus("v1", "a").plus("onlyA", "a").plus("v2", "a");
+    PersistentHashMap<String, String> b =
+        base.plus("v1", "b").plus("onlyB", "b").plus("v3", "b");
+    assertDifferences(a, b,
+        "onlyA=a/null", "onlyB=null/b", "v1=a/b", "v2=a/base", "v3=base/b");
+    assertDifferences(base, base);
+  }
+
+  public void testVisitDifferencesStops() {
+    PersistentHashMap<String, Integer> a = PersistentHashMap.empty();
+    for (int i = 0; i < 10; i++) {
+      a = a.plus("x" + i, i);
+    }
+    final int[] visits = {0};
+    assertFalse(PersistentHashMap.visitDifferences(
+        a, PersistentHashMap.<String, Integer>empty(),
+        new DifferenceVisitor<String, Integer>() {
+          @Override
+          public boolean visit(String key, Integer valueA, Integer valueB) {
+            visits[0]++;
+            return false;
+          }
+        }));
+    assertEquals(1, visits[0]);
+  }
+
+  private static <V> void assertDifferences(PersistentHashMap<String, V> a,
+      PersistentHashMap<String, V> b, String... expected) {
+    final List<String> differences = Lists.newArrayList();
+    assertTrue(PersistentHashMap.visitDifferences(a, b,
+        new DifferenceVisitor<String, V>() {
+          @Override
+          public boolean visit(String key, V valueA, V valueB) {
+            differences.add(key + "=" + valueA + "/" + valueB);
+            return true;
+          }
+        }));
+    Collections.sort(differences);
+    assertEquals(Lists.newArrayList(expected), differences);
+  }
+}
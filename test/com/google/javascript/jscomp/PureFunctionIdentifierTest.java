@@ -1070,6 +1070,18 @@ public class PureFunctionIdentifierTest extends CompilerTestCase {
     checkMarkedCalls(source, ImmutableList.<String>of("A", "A", "f"));
   }
 
+  public void testRecursiveFunctions() throws Exception {
+    String source = "var x = 0;\n" +
+        "function f(n){ if (n) g(n - 1) }\n" +
+        "function g(n){ f(n) }\n" +
+        "function h(n){ h(n) }\n" +
+        "function i(){ j() }\n" +
+        "function j(){ i(); x = 1 }\n" +
+        "f(1); h(1); i()";
+
+    checkMarkedCalls(source, ImmutableList.<String>of("g", "f", "h", "f", "h"));
+  }
+
   public void testCallFunctionFOrG() throws Exception {
     String source = "function f(){}\n" +
         "function g(){}\n" +
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp;
+
+import com.google.javascript.rhino.Node;
+
+import java.util.Random;
+
+/**
+ * Times {@link MustBeReachingVariableDef} and
+ * {@link MaybeReachingVariableUse} on a large generated function.
+ *
+ * <p>Usage, from the build directory:
+ * <pre>
+ * java -cp classes:test:lib/* \
+ *     com.google.javascript.jscomp.ReachingVariableBenchmark \
+ *     [vars [statements [runs]]]
+ * </pre>
+ *
+ * <p>Both analyses run on the same control flow graph in every run, and the
+ * best run is reported, so JIT warm-up does not count.
+ */
+public class ReachingVariableBenchmark {
+
+  private ReachingVariableBenchmark() {}
+
+  /**
+   * Generates a function that declares the given number of variables,
+   * followed by the given number of random statements over them: plain
+   * assignments, branches that assign in both arms, loops, and calls that
+   * read variables.
+   */
+  static String generateFunction(int vars, int statements, long seed) {
+    Random random = new Random(seed);
+    StringBuilder sb = new StringBuilder("function f(p) {");
+    for (int i = 0; i < vars; i++) {
+      sb.append("var v").append(i).append(" = p;");
+    }
+    for (int i = 0; i < statements; i++) {
+      String x = "v" + random.nextInt(vars);
+      String y = "v" + random.nextInt(vars);
+      String z = "v" + random.nextInt(vars);
+      switch (random.nextInt(4)) {
+        case 0:
+          sb.append(x + " = " + y + " + " + z + ";");
+          break;
+        case 1:
+          sb.append("if (" + y + ") { " + x + " = " + z + "; } else { "
+              + z + " = " + x + "; }");
+          break;
+        case 2:
+          sb.append("while (" + x + "--) { " + y + " += " + z + "; }");
+          break;
+        default:
+          sb.append("print(" + x + ", " + y + ");");
+      }
+    }
+    return sb.append("}").toString();
+  }
+
+  public static void main(String[] args) {
+    int vars = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+    int statements = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+    int runs = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+    Compiler compiler = new Compiler();
+    compiler.initOptions(new CompilerOptions());
+    Node root = compiler.parseTestCode(generateFunction(vars, statements, 1));
+    Node function = root.getFirstChild();
+    SyntacticScopeCreator scopeCreator = new SyntacticScopeCreator(compiler);
+    Scope scope = scopeCreator.createScope(
+        function, scopeCreator.createScope(root, null));
+    ControlFlowAnalysis cfa = new ControlFlowAnalysis(compiler, false, true);
+    cfa.process(null, function);
+    ControlFlowGraph<Node> cfg = cfa.getCfg();
+
+    long best = Long.MAX_VALUE;
+    for (int run = 0; run < runs; run++) {
+      long start = System.nanoTime();
+      new MustBeReachingVariableDef(cfg, scope, compiler).analyze();
+      new MaybeReachingVariableUse(cfg, scope, compiler).analyze();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.println(vars + " vars, " + statements + " statements: "
+        + "best of " + runs + " runs " + best / 1000000 + "ms");
+  }
+}
@@ -29,6 +29,7 @@ public class VariableReferenceCheckTest extends CompilerTestCase {
       "var a = 1; var b = 2; var c = a + b, d = c;";
 
   private boolean enableAmbiguousFunctionCheck = false;
+  private int numThreads = 1;
 
   @Override
   public CompilerOptions getOptions() {
@@ -43,13 +44,15 @@ public class VariableReferenceCheckTest extends CompilerTestCase {
   @Override
   public CompilerPass getProcessor(Compiler compiler) {
     // Treats bad reads as errors, and reports bad write warnings.
-    return new VariableReferenceCheck(compiler, CheckLevel.WARNING);
+    return new VariableReferenceCheck(
+        compiler, CheckLevel.WARNING, numThreads);
   }
 
   @Override
   public void setUp() throws Exception {
     super.setUp();
     enableAmbiguousFunctionCheck = false;
+    numThreads = 1;
   }
 
   public void testCorrectCode() {
@@ -87,6 +90,13 @@ public class VariableReferenceCheckTest extends CompilerTestCase {
     assertUndeclared("function f() { a = 2; var a = 3; }");
   }
 
+  public void testEarlyReferenceAcrossScriptsInParallel() {
+    numThreads = 2;
+    String[] js = {"var b;", "function f() { a = 2; var a = b; }"};
+    test(js, js, null, VariableReferenceCheck.UNDECLARED_REFERENCE);
+    testSame(new String[] {"var a = 2;", "function f() { a = 3; }"});
+  }
+
   public void testCorrectEarlyReference() {
     assertNoWarning("var goog = goog || {}");
     assertNoWarning("function f() { a = 2; } var a = 2;");
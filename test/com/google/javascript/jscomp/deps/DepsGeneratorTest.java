@@ -0,0 +1,140 @@
+/*
+ * Copyright 2011 The Closure Compiler Authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.javascript.jscomp.deps;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.javascript.jscomp.CheckLevel;
+import com.google.javascript.jscomp.ErrorManager;
+import com.google.javascript.jscomp.JSError;
+import com.google.javascript.jscomp.PrintStreamErrorManager;
+import com.google.javascript.jscomp.SourceFile;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Tests for {@link DepsGenerator}.
+ */
+public class DepsGeneratorTest extends TestCase {
+
+  private File dir;
+
+  @Override
+  public void setUp() throws IOException {
+    dir = File.createTempFile("depsgen", "");
+    dir.delete();
+    dir.mkdir();
+  }
+
+  @Override
+  public void tearDown() {
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  public void testScanThreads() throws IOException {
+    List<SourceFile> srcs = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      srcs.add(SourceFile.fromCode(dir + "/f" + i + ".js",
+          "goog.provide('ns" + i + "');\n" +
+          (i > 0 ? "goog.require('ns" + (i - 1) + "');\n" : "")));
+    }
+
+    DepsGenerator serial = createGenerator(srcs);
+    DepsGenerator parallel = createGenerator(srcs);
+    parallel.setScanThreads(4);
+    String expected = serial.computeDependencyCalls();
+    assertNotNull(expected);
+    assertEquals(expected, parallel.computeDependencyCalls());
+  }
+
+  public void testScanErrorsAreReported() throws IOException {
+    // The files with errors are named in reverse, so that the sorting done
+    // by the error manager cannot hide the order in which they are reported.
+    List<SourceFile> srcs = Lists.newArrayList();
+    for (int i = 5; i >= 0; i--) {
+      srcs.add(SourceFile.fromCode(dir + "/f" + i + ".js",
+          "goog.provide('ns" + i + "');\n" +
+          (i % 2 == 1 ? "goog.require(ns" + i + ");\n" : "")));
+    }
+
+    final List<JSError> reported = Lists.newArrayList();
+    ErrorManager errorManager = new PrintStreamErrorManager(System.err) {
+      @Override
+      public void report(CheckLevel level, JSError error) {
+        reported.add(error);
+        super.report(level, error);
+      }
+    };
+    DepsGenerator generator = createGenerator(srcs, errorManager);
+    generator.setScanThreads(2);
+    assertNull(generator.computeDependencyCalls());
+    assertEquals(3, reported.size());
+    for (int i = 0; i < reported.size(); i++) {
+      assertEquals(JsFileLineParser.PARSE_ERROR, reported.get(i).getType());
+      assertEquals(dir + "/f" + (5 - 2 * i) + ".js",
+          reported.get(i).sourceName);
+    }
+  }
+
+  public void testCacheFile() throws IOException {
+    File cacheFile = new File(dir, "deps.cache");
+    File a = new File(dir, "a.js");
+    Files.write("goog.provide('a');\n", a, Charsets.UTF_8);
+    a.setLastModified(1000000L);
+
+    String first = computeWithCache(a, cacheFile);
+    assertTrue(first.contains("['a']"));
+    assertTrue(cacheFile.exists());
+
+    // Same length and modification time: the cached entry is used.
+    Files.write("goog.provide('b');\n", a, Charsets.UTF_8);
+    a.setLastModified(1000000L);
+    assertEquals(first, computeWithCache(a, cacheFile));
+
+    // A new modification time makes the file be read again.
+    a.setLastModified(2000000L);
+    assertTrue(computeWithCache(a, cacheFile).contains("['b']"));
+  }
+
+  private String computeWithCache(File file, File cacheFile)
+      throws IOException {
+    DepsGenerator generator =
+        createGenerator(ImmutableList.of(SourceFile.fromFile(file)));
+    generator.setCacheFile(cacheFile);
+    return generator.computeDependencyCalls();
+  }
+
+  private DepsGenerator createGenerator(List<SourceFile> srcs) {
+    return createGenerator(srcs, new PrintStreamErrorManager(System.err));
+  }
+
+  private DepsGenerator createGenerator(
+      List<SourceFile> srcs, ErrorManager errorManager) {
+    return new DepsGenerator(ImmutableList.<SourceFile>of(), srcs,
+        DepsGenerator.InclusionStrategy.ALWAYS, dir.getAbsolutePath(),
+        errorManager);
+  }
+}
@@ -79,9 +79,17 @@ public class JsFileLineParserTest extends TestCase {
     assertStrip("1 34", "1/** // 2 **/ 3\n4");
   }
 
+  public void testLineTerminators() {
+    assertStrip("123", "1\r2\r\n3\n");
+  }
+
   private void assertStrip(String expected, String input) {
     parser.doParse("file", new StringReader(input));
     assertEquals(expected, parser.toString());
+
+    TestParser contentsParser = new TestParser(errorManager);
+    contentsParser.doParse("file", input);
+    assertEquals(expected, contentsParser.toString());
   }
 
   private static class TestParser extends JsFileLineParser {
@@ -75,6 +75,29 @@ public class GraphReachabilityTest extends TestCase {
     assertReachable("D");
   }
 
+  public void testCompactGraph() {
+    DiGraph<String, String> source = LinkedDirectedGraph.create();
+    source.createNode("A");
+    source.createNode("B");
+    source.createNode("C");
+    source.createNode("D");
+    source.connect("A", "--->", "B");
+    source.connect("B", "--->", "A");
+    source.connect("C", "--->", "D");
+    source.connect("D", "--->", "D");
+
+    graph = CompactDirectedGraph.copyOf(source);
+    reachability = new GraphReachability<String, String>(graph);
+    reachability.compute("A");
+    assertReachable("A");
+    assertReachable("B");
+    assertNotReachable("C");
+    assertNotReachable("D");
+    reachability.recompute("C");
+    assertReachable("C");
+    assertReachable("D");
+  }
+
   public void assertReachable(String s) {
     assertSame(s + " should be reachable", graph.getNode(s).getAnnotation(),
         GraphReachability.REACHABLE);
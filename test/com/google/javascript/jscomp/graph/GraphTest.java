@@ -24,6 +24,7 @@ import com.google.javascript.jscomp.graph.Annotation;
 import com.google.javascript.jscomp.graph.GraphNode;
 import com.google.javascript.jscomp.graph.SubGraph;
 import com.google.javascript.jscomp.graph.DiGraph;
+import com.google.javascript.jscomp.graph.DiGraph.DiGraphEdge;
 import com.google.javascript.jscomp.graph.Graph.GraphEdge;
 import com.google.javascript.jscomp.graph.UndiGraph;
 
@@ -181,6 +182,85 @@ public class GraphTest extends TestCase {
     assertFalse(graph.isConnected("a", "b"));
   }
 
+  public void testCompactDirectedGraph() {
+    DiGraph<String, String> source = LinkedDirectedGraph.create();
+    source.createNode("a");
+    source.createNode("b");
+    source.createNode("c");
+    source.createNode("d");
+    source.connect("a", "->", "b");
+    source.connect("a", "-->", "b");
+    source.connect("a", "->", "c");
+    source.connect("c", "->", "d");
+    source.connect("d", "->", "d");
+
+    CompactDirectedGraph<String, String> graph =
+        CompactDirectedGraph.copyOf(source);
+    assertEquals(4, graph.getNodeCount());
+    assertTrue(graph.hasNode("a"));
+    assertFalse(graph.hasNode("e"));
+    assertTrue(graph.isConnectedInDirection("a", "b"));
+    assertTrue(graph.isConnectedInDirection("a", "-->", "b"));
+    assertFalse(graph.isConnectedInDirection("a", "-->", "c"));
+    assertFalse(graph.isConnectedInDirection("b", "a"));
+    assertTrue(graph.isConnected("b", "a"));
+    assertTrue(graph.isConnectedInDirection("d", "d"));
+    assertSetEquals(graph.getDirectedSuccNodes("a"), "b", "c");
+    assertListCount(graph.getDirectedSuccNodes("a"), "b", 2);
+    assertSetEquals(graph.getDirectedPredNodes("d"), "c", "d");
+    assertEquals(2, graph.getDirectedGraphEdges("a", "b").size());
+    assertEquals("->", graph.getFirstEdge("b", "a").getValue());
+    assertEquals(5, graph.getEdges().size());
+    assertEquals(3, graph.getNodeDegree("a"));
+
+    // The order of the edges is kept.
+    List<DiGraphEdge<String, String>> outEdges = graph.getOutEdges("a");
+    assertEquals("->", outEdges.get(0).getValue());
+    assertEquals("-->", outEdges.get(1).getValue());
+    assertEquals("c", outEdges.get(2).getDestination().getValue());
+
+    int a = graph.getNodeIndex("a");
+    assertEquals(3, graph.getOutDegree(a));
+    assertEquals("c", graph.getNodeValue(graph.getSuccessor(a, 2)));
+    assertEquals(0, graph.getInDegree(a));
+
+    checkAnnotations(graph, graph.getNode("a"), graph.getNode("b"));
+
+    try {
+      graph.connect("a", "->", "d");
+      fail();
+    } catch (UnsupportedOperationException expected) {}
+  }
+
+  public void testStronglyConnectedComponents() {
+    DiGraph<String, String> source = LinkedDirectedGraph.create();
+    source.createNode("a");
+    source.createNode("b");
+    source.createNode("c");
+    source.createNode("d");
+    source.createNode("e");
+    source.connect("a", "->", "b");
+    source.connect("b", "->", "a");
+    source.connect("b", "->", "c");
+    source.connect("c", "->", "d");
+    source.connect("d", "->", "d");
+    source.connect("e", "->", "a");
+
+    CompactDirectedGraph<String, String> graph =
+        CompactDirectedGraph.copyOf(source);
+    int[] component = graph.getStronglyConnectedComponents();
+    int a = component[graph.getNodeIndex("a")];
+    int b = component[graph.getNodeIndex("b")];
+    int c = component[graph.getNodeIndex("c")];
+    int d = component[graph.getNodeIndex("d")];
+    int e = component[graph.getNodeIndex("e")];
+    assertEquals(0, e);
+    assertEquals(1, a);
+    assertEquals(1, b);
+    assertEquals(2, c);
+    assertEquals(3, d);
+  }
+
   public void testUndirectedNeighbors() {
     UndiGraph<String, String> graph =
         LinkedUndirectedGraph.create();
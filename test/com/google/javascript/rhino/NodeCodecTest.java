@@ -0,0 +1,181 @@
+/*
+ *
+ * ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is Rhino code, released
+ * May 6, 1999.
+ *
+ * The Initial Developer of the Original Code is
+ * Netscape Communications Corporation.
+ * Portions created by the Initial Developer are Copyright (C) 1997-1999
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ *   Google Inc.
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * the GNU General Public License Version 2 or later (the "GPL"), in which
+ * case the provisions of the GPL are applicable instead of those above. If
+ * you wish to allow use of your version of this file only under the terms of
+ * the GPL and not to allow others to use your version of this file under the
+ * MPL, indicate your decision by deleting the provisions above and replacing
+ * them with the notice and other provisions required by the GPL. If you do
+ * not delete the provisions above, a recipient may use your version of this
+ * file under either the MPL or the GPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package com.google.javascript.rhino;
+
+import com.google.javascript.jscomp.parsing.Config.LanguageMode;
+import com.google.javascript.jscomp.parsing.ParserRunner;
+import com.google.javascript.jscomp.testing.TestErrorReporter;
+import com.google.javascript.rhino.jstype.JSTypeNative;
+import com.google.javascript.rhino.jstype.JSTypeRegistry;
+
+import junit.framework.TestCase;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+public class NodeCodecTest extends TestCase {
+
+  public void testRoundTripStatements() throws Exception {
+    assertRoundTrip(
+        "var x = 1, y = 'two\\u00e9\\ud800';\n" +
+        "function f(a, b) { return a + b * 3.25; }\n" +
+        "for (var i in {'a': 1, b: [,,3]}) { if (i) { break; } }\n" +
+        "label: while (x++) { continue label; }\n" +
+        "try { f(); } catch (e) { throw e; } finally { x = /ab+/gi; }");
+  }
+
+  public void testRoundTripDirectives() throws Exception {
+    Node root = assertRoundTrip(
+        "function f() { 'use strict'; return 1; }");
+    Node block = root.getFirstChild().getLastChild();
+    assertTrue(block.getDirectives().contains("use strict"));
+  }
+
+  public void testRoundTripJsDoc() throws Exception {
+    Node original = parse(
+        "/** @fileoverview Stuff. */\n" +
+        "/**\n" +
+        " * @constructor\n" +
+        " * @param {number} x\n" +
+        " * @param {string=} opt_y\n" +
+        " * @extends {Base}\n" +
+        " * @private\n" +
+        " * @suppress {visibility}\n" +
+        " */\n" +
+        "function Foo(x, opt_y) {}\n" +
+        "/** @return {!Array.<string>} */\n" +
+        "Foo.prototype.bar = function() { return []; };");
+    Node copy = roundTrip(original);
+    assertNull(original.checkTreeEquals(copy));
+
+    Node fn = copy.getFirstChild();
+    JSDocInfo info = fn.getJSDocInfo();
+    JSDocInfo originalInfo = original.getFirstChild().getJSDocInfo();
+    assertTrue(info.isConstructor());
+    assertEquals(JSDocInfo.Visibility.PRIVATE, info.getVisibility());
+    assertEquals(originalInfo.getParameterNames(), info.getParameterNames());
+    assertEquals(originalInfo.getParameterType("x"),
+        info.getParameterType("x"));
+    assertEquals(originalInfo.getParameterType("opt_y"),
+        info.getParameterType("opt_y"));
+    assertTrue(info.getParameterType("opt_y").isOptionalArg());
+    assertEquals(originalInfo.getBaseType(), info.getBaseType());
+
+    JSDocInfo methodInfo =
+        copy.getLastChild().getFirstChild().getJSDocInfo();
+    assertNotNull(methodInfo);
+    assertTrue(methodInfo.hasReturnType());
+    assertEquals(
+        original.getLastChild().getFirstChild().getJSDocInfo()
+            .getReturnType(),
+        methodInfo.getReturnType());
+
+    assertNotNull(copy.getJSDocInfo());
+    assertTrue(info.getSuppressions().contains("visibility"));
+  }
+
+  public void testSourceNamePropertiesAreShared() throws Exception {
+    Node copy = roundTrip(parse("a.b(c, d);"));
+    Node call = copy.getFirstChild().getFirstChild();
+    assertEquals("test.js", call.getProp(Node.SOURCENAME_PROP));
+    for (Node arg = call.getFirstChild(); arg != null; arg = arg.getNext()) {
+      assertSame(call.getProp(Node.SOURCENAME_PROP),
+          arg.getProp(Node.SOURCENAME_PROP));
+    }
+  }
+
+  public void testTypedNodesAreRejected() throws Exception {
+    Node n = Node.newString(Token.NAME, "x");
+    n.setJSType(new JSTypeRegistry(null).getNativeType(
+        JSTypeNative.NUMBER_TYPE));
+    try {
+      NodeCodec.encode(n);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testTruncatedInputIsRejected() throws Exception {
+    byte[] bytes = NodeCodec.encode(parse("var x = 1;"));
+    ByteBuffer truncated = ByteBuffer.wrap(bytes, 0, bytes.length - 3);
+    try {
+      NodeCodec.decode(truncated);
+      fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+
+  public void testCorruptInputIsRejected() throws Exception {
+    byte[] bytes = NodeCodec.encode(parse(
+        "/** @private @param {number} x @suppress {visibility} */\n" +
+        "function f(x) { return 'a' + x + 'a'; }\n" +
+        "/** @private */ var g = f;"));
+    // Damage each byte after the magic number and version in turn. The
+    // decoder may still produce some tree, but must not fail any other way.
+    for (int i = 8; i < bytes.length; i++) {
+      for (int value : new int[] {0x00, 0x01, 0x7F, 0x80, 0xFF}) {
+        byte[] corrupt = bytes.clone();
+        corrupt[i] = (byte) value;
+        try {
+          NodeCodec.decode(ByteBuffer.wrap(corrupt));
+        } catch (IllegalArgumentException expected) {
+        }
+      }
+    }
+  }
+
+  private Node assertRoundTrip(String js) throws Exception {
+    Node original = parse(js);
+    Node copy = roundTrip(original);
+    assertNull(original.checkTreeEquals(copy));
+    assertEquals(original.toStringTree(), copy.toStringTree());
+    return copy;
+  }
+
+  private static Node roundTrip(Node n) {
+    return NodeCodec.decode(ByteBuffer.wrap(NodeCodec.encode(n)));
+  }
+
+  private static Node parse(String js) throws Exception {
+    return ParserRunner.parse("test.js", js,
+        ParserRunner.createConfig(false, LanguageMode.ECMASCRIPT5, false),
+        new TestErrorReporter(null, null),
+        Logger.getAnonymousLogger());
+  }
+}